@@ -0,0 +1,97 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-order cost of placing and picking up a burst of orders one call at a time versus through
+ * placeOrders/pickupOrders. Scores are per order (BURST orders per invocation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BatchBenchmark {
+    private static final int BURST = 16;
+
+    @Param({"GLOBAL", "STRIPED"})
+    public Kitchen.LockingMode lockingMode;
+
+    Kitchen kitchen;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        kitchen = new Kitchen(() -> 0L, lockingMode);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadBursts {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+        private static final int BURSTS = 64;
+
+        List<List<Order>> orders = new ArrayList<>();
+        List<List<String>> ids = new ArrayList<>();
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int thread = THREADS.getAndIncrement();
+            Order.Temperature[] temperatures = Order.Temperature.values();
+            for (int b = 0; b < BURSTS; b++) {
+                List<Order> burst = new ArrayList<>(BURST);
+                List<String> burstIds = new ArrayList<>(BURST);
+                for (int i = 0; i < BURST; i++) {
+                    Order order = Workloads.order("t" + thread + "-" + b + "-" + i, temperatures[i % temperatures.length]);
+                    burst.add(order);
+                    burstIds.add(order.getId());
+                }
+                orders.add(burst);
+                ids.add(burstIds);
+            }
+        }
+
+        int nextBurst() {
+            int burst = next;
+            next = (next + 1) % BURSTS;
+            return burst;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void oneAtATime(ThreadBursts bursts) {
+        int burst = bursts.nextBurst();
+        for (Order order : bursts.orders.get(burst)) {
+            kitchen.placeOrder(order);
+        }
+        for (String id : bursts.ids.get(burst)) {
+            kitchen.pickupOrder(id);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void batched(ThreadBursts bursts) {
+        int burst = bursts.nextBurst();
+        kitchen.placeOrders(bursts.orders.get(burst));
+        kitchen.pickupOrders(bursts.ids.get(burst));
+    }
+}
@@ -0,0 +1,44 @@
+package com.kitchen;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the kitchen benchmarks once per thread count with the GC/allocation profiler attached.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar                       # everything, threads=1,2,4,8
+ * java -Dthreads=1,4 -Dinclude=KitchenBenchmark -jar target/benchmarks.jar
+ * java -Dquick=true -Dresult=target/results -jar target/benchmarks.jar
+ * </pre>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("include", "com\\.kitchen\\..*Benchmark");
+        String resultPrefix = System.getProperty("result", "target/jmh");
+        boolean quick = Boolean.parseBoolean(System.getProperty("quick", "false"));
+
+        for (String raw : System.getProperty("threads", "1,2,4,8").split(",")) {
+            int threads = Integer.parseInt(raw.trim());
+
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultPrefix + "-threads-" + threads + ".json");
+            if (quick) {
+                options.warmupIterations(1)
+                        .warmupTime(TimeValue.milliseconds(500))
+                        .measurementIterations(2)
+                        .measurementTime(TimeValue.milliseconds(500));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
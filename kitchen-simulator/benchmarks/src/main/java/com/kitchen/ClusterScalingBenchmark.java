@@ -0,0 +1,81 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of a KitchenCluster as the shard count grows. Run it at several thread counts
+ * (-Dthreads=1,2,4,8) on a machine with at least that many cores; shards only help once threads
+ * contend on a single kitchen. Clusters always lock each shard GLOBAL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ClusterScalingBenchmark {
+    private static final int RING_SIZE = 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    KitchenCluster cluster;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // Capacities are per cluster; scale them so every shard keeps the default storage.
+        List<Ledger> ledgers = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            ledgers.add(new ColumnarLedger());
+        }
+        cluster = new KitchenCluster(() -> 0L, ledgers, Kitchen.DEFAULT_IDEAL_CAPACITY * shards,
+                Kitchen.DEFAULT_SHELF_CAPACITY * shards);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadOrders {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        Order[] ring;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int thread = THREADS.getAndIncrement();
+            Order.Temperature[] temperatures = Order.Temperature.values();
+            ring = new Order[RING_SIZE];
+            for (int i = 0; i < RING_SIZE; i++) {
+                ring[i] = Workloads.order("t" + thread + "-" + i, temperatures[i % temperatures.length]);
+            }
+        }
+
+        Order next() {
+            Order order = ring[next];
+            next = (next + 1) & (RING_SIZE - 1);
+            return order;
+        }
+    }
+
+    @Benchmark
+    public void placeThenPickup(ThreadOrders orders) {
+        Order order = orders.next();
+        cluster.placeOrder(order);
+        cluster.pickupOrder(order.getId());
+    }
+}
@@ -0,0 +1,155 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waste against hot-path cost for each shelf discard policy. Every operation advances a virtual
+ * clock by one placement interval, picks up whatever is due and places the next order of a
+ * seeded trace that keeps the kitchen over capacity. The score is the cost per operation; the
+ * {@code discards} and {@code pickups} counters show what each policy buys with it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(1)
+public class DiscardPolicyBenchmark {
+    private static final long SECOND = 1_000_000L;
+    private static final long PLACE_INTERVAL_MICROS = 100_000L;
+    private static final int PICKUP_MIN_SECONDS = 4;
+    private static final int PICKUP_MAX_SECONDS = 8;
+    private static final int TRACE_LENGTH = 1 << 16;
+
+    @Param({"expiry", "value", "slack"})
+    public String policy;
+
+    // Smaller shelves discard more often.
+    @Param({"6", "12", "24"})
+    public int shelfCapacity;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long discards;
+        public long pickups;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            discards = 0;
+            pickups = 0;
+        }
+    }
+
+    private static final class Pickup implements Comparable<Pickup> {
+        private final long dueMicros;
+        private final String orderId;
+
+        private Pickup(long dueMicros, String orderId) {
+            this.dueMicros = dueMicros;
+            this.orderId = orderId;
+        }
+
+        @Override
+        public int compareTo(Pickup other) {
+            return Long.compare(dueMicros, other.dueMicros);
+        }
+    }
+
+    // Counts outcomes instead of storing entries, so long iterations do not grow the heap.
+    private static final class CountingLedger implements Ledger {
+        private Outcomes outcomes;
+        private long size;
+
+        @Override
+        public void append(long timestampMicros, String orderId, ActionType action, StorageType target) {
+            size++;
+            if (action == ActionType.DISCARD) {
+                outcomes.discards++;
+            } else if (action == ActionType.PICKUP) {
+                outcomes.pickups++;
+            }
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void forEach(long fromIndex, long toIndex, EntryVisitor visitor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void truncate(long newSize) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final Order[] trace = new Order[TRACE_LENGTH];
+    private final long[] pickupDelays = new long[TRACE_LENGTH];
+    private final PriorityQueue<Pickup> pickups = new PriorityQueue<>();
+    private final CountingLedger ledger = new CountingLedger();
+    private Kitchen kitchen;
+    private long nowMicros;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUpTrace() {
+        // Roughly 60 orders are in flight at any time, against 18 ideal slots plus the shelf.
+        SplittableRandom random = new SplittableRandom(42);
+        Order.Temperature[] temperatures = Order.Temperature.values();
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            Order.Temperature temperature = temperatures[random.nextInt(temperatures.length)];
+            trace[i] = new Order("o" + i, "o" + i, temperature, random.nextInt(5, 31), 0.25 + 0.75 * random.nextDouble());
+            pickupDelays[i] = random.nextInt(PICKUP_MIN_SECONDS, PICKUP_MAX_SECONDS + 1) * SECOND;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        long expectedPickupDelayMicros = (PICKUP_MIN_SECONDS + PICKUP_MAX_SECONDS) * SECOND / 2;
+        nowMicros = 0;
+        next = 0;
+        pickups.clear();
+        ledger.size = 0;
+        kitchen = new Kitchen(() -> nowMicros, Kitchen.LockingMode.GLOBAL, ledger,
+                Workloads.IDEAL_CAPACITY, shelfCapacity, DiscardPolicy.forName(policy, expectedPickupDelayMicros));
+    }
+
+    @Benchmark
+    public void placeAndPickup(Outcomes outcomes) {
+        ledger.outcomes = outcomes;
+        nowMicros += PLACE_INTERVAL_MICROS;
+
+        Pickup due;
+        while ((due = pickups.peek()) != null && due.dueMicros <= nowMicros) {
+            pickups.poll();
+            kitchen.pickupOrder(due.orderId);
+        }
+
+        int i = next;
+        next = (next + 1) & (TRACE_LENGTH - 1);
+        kitchen.placeOrder(trace[i]);
+        pickups.add(new Pickup(nowMicros + pickupDelays[i], trace[i].getId()));
+    }
+}
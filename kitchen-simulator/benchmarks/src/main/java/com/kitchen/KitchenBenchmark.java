@@ -0,0 +1,88 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Steady-state place/pickup cycles against a shared kitchen. Run with several thread counts
+ * (see {@link BenchmarkRunner}) to see how the kitchen behaves under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class KitchenBenchmark {
+    private static final int RING_SIZE = 1024;
+
+    @Param({"0.25", "0.75", "1.0"})
+    public double occupancy;
+
+    @Param({"HOT", "BALANCED", "ROOM_HEAVY"})
+    public String temperatureMix;
+
+    Kitchen kitchen;
+    Order.Temperature[] mix;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // A fresh kitchen per iteration keeps the ever-growing ledger out of the measurement window.
+        kitchen = new Kitchen(() -> 0L);
+        mix = Workloads.temperatureMix(temperatureMix);
+
+        int prefill = (int) Math.round(Workloads.TOTAL_CAPACITY * occupancy);
+        for (int i = 0; i < prefill; i++) {
+            kitchen.placeOrder(Workloads.order("prefill-" + i, mix[i % mix.length]));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadOrders {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        Order[] ring;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(KitchenBenchmark benchmark) {
+            int thread = THREADS.getAndIncrement();
+            Order.Temperature[] mix = Workloads.temperatureMix(benchmark.temperatureMix);
+            ring = new Order[RING_SIZE];
+            for (int i = 0; i < RING_SIZE; i++) {
+                ring[i] = Workloads.order("t" + thread + "-" + i, mix[i % mix.length]);
+            }
+        }
+
+        Order next() {
+            Order order = ring[next];
+            next = (next + 1) & (RING_SIZE - 1);
+            return order;
+        }
+    }
+
+    @Benchmark
+    public void placeThenPickup(ThreadOrders orders) {
+        Order order = orders.next();
+        kitchen.placeOrder(order);
+        kitchen.pickupOrder(order.getId());
+    }
+
+    @Benchmark
+    public void pickupMissing() {
+        kitchen.pickupOrder("missing");
+    }
+}
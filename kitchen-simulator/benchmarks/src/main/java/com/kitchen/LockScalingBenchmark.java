@@ -0,0 +1,77 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of GLOBAL vs STRIPED locking as the thread count grows. With the PINNED mix each
+ * thread only handles one temperature, which is the best case for striping; SPREAD gives every
+ * thread every temperature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LockScalingBenchmark {
+    private static final int RING_SIZE = 1024;
+
+    @Param({"GLOBAL", "STRIPED"})
+    public Kitchen.LockingMode lockingMode;
+
+    @Param({"PINNED", "SPREAD"})
+    public String threadMix;
+
+    Kitchen kitchen;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        kitchen = new Kitchen(() -> 0L, lockingMode);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadOrders {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        Order[] ring;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(LockScalingBenchmark benchmark) {
+            int thread = THREADS.getAndIncrement();
+            Order.Temperature[] temperatures = Order.Temperature.values();
+            ring = new Order[RING_SIZE];
+            for (int i = 0; i < RING_SIZE; i++) {
+                int t = benchmark.threadMix.equals("PINNED") ? thread : i;
+                ring[i] = Workloads.order("t" + thread + "-" + i, temperatures[t % temperatures.length]);
+            }
+        }
+
+        Order next() {
+            Order order = ring[next];
+            next = (next + 1) & (RING_SIZE - 1);
+            return order;
+        }
+    }
+
+    @Benchmark
+    public void placeThenPickup(ThreadOrders orders) {
+        Order order = orders.next();
+        kitchen.placeOrder(order);
+        kitchen.pickupOrder(order.getId());
+    }
+}
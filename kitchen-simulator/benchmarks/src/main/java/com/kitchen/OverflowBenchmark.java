@@ -0,0 +1,90 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placement when the ideal storage and the shelf are both full, so every call goes through
+ * the shelf move scan ({@code tryMoveShelfOrder}) or the shelf discard.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(1)
+public class OverflowBenchmark {
+    // HOT: every shelf order is a move candidate. MIXED: half the shelf is FROZEN and only
+    // HOT orders qualify, so the scan has to skip non-candidates.
+    @Param({"HOT", "MIXED"})
+    public String shelfMix;
+
+    private Kitchen kitchen;
+    private final ArrayDeque<String> shelfHot = new ArrayDeque<>();
+    private String heaterVictim;
+    private int counter;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        kitchen = new Kitchen(() -> 0L);
+        shelfHot.clear();
+        counter = 0;
+
+        for (int i = 0; i < Workloads.IDEAL_CAPACITY; i++) {
+            kitchen.placeOrder(Workloads.order("cold-" + i, Order.Temperature.COLD));
+            kitchen.placeOrder(Workloads.order("heater-" + i, Order.Temperature.HOT));
+            kitchen.placeOrder(Workloads.order("freezer-" + i, Order.Temperature.FROZEN));
+        }
+        heaterVictim = "heater-0";
+
+        for (int i = 0; i < Workloads.SHELF_CAPACITY; i++) {
+            if (shelfMix.equals("MIXED") && i % 2 == 1) {
+                kitchen.placeOrder(Workloads.order("shelf-frozen-" + i, Order.Temperature.FROZEN));
+            } else {
+                placeShelfHot();
+            }
+        }
+    }
+
+    // Shelf life grows with every placement, so the shelf HOT order that expires soonest is
+    // always the oldest one and we know which order the scan is going to move.
+    private void placeShelfHot() {
+        String id = "shelf-hot-" + counter;
+        kitchen.placeOrder(Workloads.order(id, Order.Temperature.HOT, 1_000 + counter));
+        shelfHot.addLast(id);
+        counter++;
+    }
+
+    @Benchmark
+    public void moveFromShelf() {
+        kitchen.pickupOrder(heaterVictim);
+
+        String cold = "cold-new-" + counter;
+        kitchen.placeOrder(Workloads.order(cold, Order.Temperature.COLD));
+        heaterVictim = shelfHot.pollFirst();
+
+        kitchen.pickupOrder(cold);
+        placeShelfHot();
+    }
+
+    @Benchmark
+    public void discardFromShelf() {
+        // Heater and cooler are full, so nothing on the shelf can move and placement has to discard.
+        kitchen.placeOrder(Workloads.order("frozen-new-" + counter++, Order.Temperature.FROZEN));
+    }
+}
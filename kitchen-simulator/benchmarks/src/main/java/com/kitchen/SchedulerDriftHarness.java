@@ -0,0 +1,78 @@
+package com.kitchen;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submits a burst of order lifecycles to each pickup scheduler and reports submit throughput,
+ * completion time and pickup drift. Not a JMH benchmark: drift only shows up with many lifecycles
+ * in flight at once, which is a single long run rather than a repeated operation.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.kitchen.SchedulerDriftHarness
+ * java -Dorders=100000 -Dmodes=POOL,VIRTUAL,WHEEL -DminDelayMillis=4000 -DmaxDelayMillis=8000 -DwheelTickMillis=10 \
+ *      -cp target/benchmarks.jar com.kitchen.SchedulerDriftHarness
+ * </pre>
+ */
+public class SchedulerDriftHarness {
+    public static void main(String[] args) throws InterruptedException {
+        int orders = Integer.getInteger("orders", 100_000);
+        long minDelayMillis = Long.getLong("minDelayMillis", 4_000);
+        long maxDelayMillis = Long.getLong("maxDelayMillis", 8_000);
+
+        for (String mode : System.getProperty("modes", "POOL,VIRTUAL,WHEEL").split(",")) {
+            mode = mode.trim().toUpperCase();
+            if (mode.equals("VIRTUAL") && !VirtualThreadPickupScheduler.isSupported()) {
+                System.out.println(mode + ": skipped, virtual threads need Java 21+ (running "
+                        + System.getProperty("java.version") + ")");
+                continue;
+            }
+            run(mode, orders, minDelayMillis, maxDelayMillis);
+        }
+    }
+
+    private static void run(String mode, int orders, long minDelayMillis, long maxDelayMillis) throws InterruptedException {
+        Kitchen kitchen = new Kitchen();
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(8);
+        PickupScheduler scheduler;
+        if (mode.equals("VIRTUAL")) {
+            scheduler = new VirtualThreadPickupScheduler();
+        } else if (mode.equals("WHEEL")) {
+            scheduler = new HashedWheelPickupScheduler(Long.getLong("wheelTickMillis", 10), TimeUnit.MILLISECONDS, 1024);
+        } else {
+            scheduler = new PooledPickupScheduler(executor);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        Order.Temperature[] temperatures = Order.Temperature.values();
+        CountDownLatch done = new CountDownLatch(orders);
+
+        try {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < orders; i++) {
+                Order order = Workloads.order("o" + i, temperatures[i % temperatures.length], 3_600);
+                long delayNanos = TimeUnit.MILLISECONDS.toNanos(random.nextLong(minDelayMillis, maxDelayMillis + 1));
+                scheduler.submit(() -> kitchen.placeOrder(order), () -> {
+                    kitchen.pickupOrder(order.getId());
+                    done.countDown();
+                }, delayNanos);
+            }
+            long submittedNanos = System.nanoTime() - startNanos;
+            done.await();
+            long totalNanos = System.nanoTime() - startNanos;
+
+            System.out.printf("%s: orders=%d submit=%.0f orders/s completed in %.2fs (%.0f pickups/s over the window) drift: %s%n",
+                    mode,
+                    orders,
+                    orders / (submittedNanos / 1e9),
+                    totalNanos / 1e9,
+                    orders / Math.max(1e-9, (totalNanos - TimeUnit.MILLISECONDS.toNanos(minDelayMillis)) / 1e9),
+                    scheduler.getDrift());
+        } finally {
+            scheduler.close();
+            executor.shutdownNow();
+        }
+    }
+}
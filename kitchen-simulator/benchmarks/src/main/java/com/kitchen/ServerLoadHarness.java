@@ -0,0 +1,164 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test of {@link KitchenServer} over localhost. Each client thread places one
+ * order per request and picks up the order it placed {@code -DpickupLag} requests earlier, so the
+ * kitchen stays at a steady occupancy. After a warmup it reports sustained requests per second and
+ * the p50/p99/p999/max round-trip latency of place and pickup requests. Not a JMH benchmark: the
+ * interesting numbers are tail latencies under a fixed concurrency, measured end to end.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.kitchen.ServerLoadHarness
+ * java -Dclients=16 -DserverThreads=1,4,8 -DwarmupSeconds=5 -DdurationSeconds=20 -DlockingMode=STRIPED \
+ *      -cp target/benchmarks.jar com.kitchen.ServerLoadHarness
+ * </pre>
+ *
+ * With {@code -Durl=http://host:port} the clients load an already running server
+ * ({@code mode=serve}) instead of an embedded one, and {@code -DserverThreads} is ignored. With
+ * {@code -DwalDir=/path} the embedded kitchen logs to a {@link WriteAheadLog} in a fresh
+ * subdirectory per run, and the harness also prints how many log records each {@code fsync}
+ * covered.
+ */
+public class ServerLoadHarness {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] TEMPERATURES = {"hot", "cold", "frozen"};
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("clients", 8);
+        int pickupLag = Integer.getInteger("pickupLag", 2);
+        long warmupSeconds = Long.getLong("warmupSeconds", 3);
+        long durationSeconds = Long.getLong("durationSeconds", 10);
+        String url = System.getProperty("url");
+        String walDir = System.getProperty("walDir");
+
+        if (url != null) {
+            run(URI.create(url), "external", clients, pickupLag, warmupSeconds, durationSeconds);
+            return;
+        }
+        Kitchen.LockingMode lockingMode = Kitchen.LockingMode.valueOf(System.getProperty("lockingMode", "STRIPED"));
+        for (String threads : System.getProperty("serverThreads", "1,4").split(",")) {
+            int serverThreads = Integer.parseInt(threads.trim());
+            long startNanos = System.nanoTime();
+            // Large capacities: the harness measures the server, not shelf overflow.
+            WriteAheadLog journal = null;
+            if (walDir != null) {
+                Path root = Files.createDirectories(Paths.get(walDir));
+                journal = new WriteAheadLog(Files.createTempDirectory(root, "serverThreads-" + serverThreads + "-"));
+            }
+            Kitchen kitchen = new Kitchen(() -> TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos),
+                    lockingMode, new ColumnarLedger(), 4 * clients * pickupLag, 4 * clients * pickupLag,
+                    DiscardPolicy.SOONEST_EXPIRY, Kitchen.DEFAULT_LATENCY_SAMPLE_RATE, journal);
+            ExecutorService executor = Executors.newFixedThreadPool(serverThreads);
+            try (KitchenServer server = new KitchenServer(kitchen, MAPPER.getFactory(),
+                    new InetSocketAddress("localhost", 0), executor)) {
+                server.start();
+                run(URI.create("http://localhost:" + server.getPort()), "serverThreads=" + serverThreads,
+                        clients, pickupLag, warmupSeconds, durationSeconds);
+            } finally {
+                executor.shutdownNow();
+                kitchen.closeJournal();
+            }
+            if (journal != null) {
+                System.out.printf("  wal    %d records, %d syncs (%.1f records per sync)%n", journal.getAppendedRecords(),
+                        journal.getSyncCount(), journal.getAppendedRecords() / (double) Math.max(1, journal.getSyncCount()));
+            }
+        }
+    }
+
+    private static void run(URI base, String label, int clients, int pickupLag, long warmupSeconds, long durationSeconds)
+            throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(2, r -> {
+                    Thread t = new Thread(r, "load-client-io");
+                    t.setDaemon(true);
+                    return t;
+                }))
+                .build();
+        LogHistogram placeNanos = new LogHistogram();
+        LogHistogram pickupNanos = new LogHistogram();
+        AtomicLong errors = new AtomicLong();
+        long measureFromNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            String prefix = label + "-c" + c + "-";
+            Thread thread = new Thread(() -> {
+                for (long i = 0; ; i++) {
+                    long started = System.nanoTime();
+                    if (started >= endNanos) {
+                        return;
+                    }
+                    boolean measured = started >= measureFromNanos;
+                    String id = prefix + i;
+                    String order = "[{\"id\":\"" + id + "\",\"name\":\"" + id + "\",\"temp\":\""
+                            + TEMPERATURES[(int) (i % TEMPERATURES.length)] + "\",\"price\":1,\"freshness\":600}]";
+                    send(http, HttpRequest.newBuilder(base.resolve("/orders"))
+                            .POST(HttpRequest.BodyPublishers.ofString(order)).build(), measured ? placeNanos : null, errors);
+                    if (i >= pickupLag) {
+                        send(http, HttpRequest.newBuilder(base.resolve("/orders/" + prefix + (i - pickupLag) + "/pickup"))
+                                .POST(HttpRequest.BodyPublishers.noBody()).build(), measured ? pickupNanos : null, errors);
+                    }
+                }
+            }, "load-client-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        double seconds = durationSeconds;
+        long requests = placeNanos.getCount() + pickupNanos.getCount();
+        System.out.printf("%s clients=%d: %.0f req/s (%d requests, %d errors)%n",
+                label, clients, requests / seconds, requests, errors.get());
+        System.out.println("  place  " + latency(placeNanos));
+        System.out.println("  pickup " + latency(pickupNanos));
+    }
+
+    private static void send(HttpClient http, HttpRequest request, LogHistogram latencyNanos, AtomicLong errors) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 204) {
+                errors.incrementAndGet();
+            }
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (latencyNanos != null) {
+            latencyNanos.record(System.nanoTime() - started);
+        }
+    }
+
+    private static String latency(LogHistogram nanos) {
+        return String.format("n=%d p50/p99/p999/max=%.0f/%.0f/%.0f/%.0fus",
+                nanos.getCount(),
+                nanos.getValueAtQuantile(0.50) / 1000.0,
+                nanos.getValueAtQuantile(0.99) / 1000.0,
+                nanos.getValueAtQuantile(0.999) / 1000.0,
+                nanos.getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,90 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(1)
+public class ShelfManagerBenchmark {
+    @Param({"12", "1000", "100000"})
+    public int occupancy;
+
+    @Param({"HOT", "BALANCED"})
+    public String temperatureMix;
+
+    private ShelfManager shelf;
+    private String[] liveIds;
+    private Order.Temperature[] mix;
+    private SplittableRandom random;
+    private int counter;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        shelf = new ShelfManager(Integer.MAX_VALUE, () -> 0L);
+        mix = Workloads.temperatureMix(temperatureMix);
+        random = new SplittableRandom(42);
+        liveIds = new String[occupancy];
+        counter = 0;
+
+        for (int i = 0; i < occupancy; i++) {
+            add(i);
+        }
+    }
+
+    private void add(int slot) {
+        int n = counter++;
+        String id = "shelf-" + n;
+        liveIds[slot] = id;
+        shelf.addOrder(stored(id, mix[n % mix.length]));
+    }
+
+    private StoredOrder stored(String id, Order.Temperature temperature) {
+        return new StoredOrder(Workloads.order(id, temperature, 60 + random.nextInt(600)), StorageType.SHELF, 0);
+    }
+
+    // Puts the polled order back under the same id with a new shelf life, so the shelf size and
+    // the live id slots stay stable.
+    private void refill(StoredOrder polled) {
+        Order order = polled.getOrder();
+        shelf.addOrder(stored(order.getId(), order.getTemperature()));
+    }
+
+    @Benchmark
+    public void pollNextToExpire(Blackhole bh) {
+        StoredOrder next = shelf.pollNextToExpire();
+        bh.consume(next);
+        refill(next);
+    }
+
+    @Benchmark
+    public void removeThenPoll(Blackhole bh) {
+        // Pickups remove arbitrary orders; the heap then has to cope with whatever removal leaves behind.
+        int slot = random.nextInt(occupancy);
+        shelf.removeOrder(liveIds[slot]);
+        add(slot);
+
+        StoredOrder next = shelf.pollNextToExpire();
+        bh.consume(next);
+        refill(next);
+    }
+}
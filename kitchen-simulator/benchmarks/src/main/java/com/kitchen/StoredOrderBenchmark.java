@@ -0,0 +1,72 @@
+package com.kitchen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(1)
+public class StoredOrderBenchmark {
+    private static final int ORDERS = 1024;
+
+    @Param({"HOT", "BALANCED"})
+    public String temperatureMix;
+
+    private StoredOrder[] orders;
+    private long nowMicros;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Order.Temperature[] mix = Workloads.temperatureMix(temperatureMix);
+        orders = new StoredOrder[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = Workloads.order("o" + i, mix[i % mix.length]);
+            // Alternate ideal storage and the shelf so both decay multipliers are exercised.
+            StorageType storage = (i % 2 == 0) ? StorageType.SHELF : StorageType.HEATER;
+            orders[i] = new StoredOrder(order, storage, 0);
+        }
+        nowMicros = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public double remainingFreshness() {
+        long now = ++nowMicros;
+        double sum = 0;
+        for (StoredOrder order : orders) {
+            sum += order.getRemainingFreshnessMicros(now);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public int isExpired() {
+        long now = ++nowMicros;
+        int expired = 0;
+        for (StoredOrder order : orders) {
+            if (order.isExpired(now)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+}
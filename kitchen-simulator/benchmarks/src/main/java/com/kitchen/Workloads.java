@@ -0,0 +1,43 @@
+package com.kitchen;
+
+final class Workloads {
+    static final int IDEAL_CAPACITY = 6;
+    static final int SHELF_CAPACITY = 12;
+    static final int TOTAL_CAPACITY = 3 * IDEAL_CAPACITY + SHELF_CAPACITY;
+
+    private Workloads() {
+    }
+
+    static Order.Temperature[] temperatureMix(String name) {
+        if (name.equals("HOT")) {
+            return new Order.Temperature[]{Order.Temperature.HOT};
+        }
+        if (name.equals("BALANCED")) {
+            return new Order.Temperature[]{
+                    Order.Temperature.HOT,
+                    Order.Temperature.COLD,
+                    Order.Temperature.ROOM,
+                    Order.Temperature.FROZEN
+            };
+        }
+        if (name.equals("ROOM_HEAVY")) {
+            return new Order.Temperature[]{
+                    Order.Temperature.ROOM,
+                    Order.Temperature.ROOM,
+                    Order.Temperature.ROOM,
+                    Order.Temperature.HOT,
+                    Order.Temperature.COLD,
+                    Order.Temperature.FROZEN
+            };
+        }
+        throw new IllegalArgumentException("Unknown temperature mix: " + name);
+    }
+
+    static Order order(String id, Order.Temperature temperature) {
+        return new Order(id, id, temperature, 300, 0.5);
+    }
+
+    static Order order(String id, Order.Temperature temperature, int shelfLifeSeconds) {
+        return new Order(id, id, temperature, shelfLifeSeconds, 1.0);
+    }
+}
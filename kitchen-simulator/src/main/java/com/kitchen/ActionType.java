@@ -0,0 +1,14 @@
+package com.kitchen;
+
+public enum ActionType {
+    PLACE,
+    MOVE,
+    PICKUP,
+    DISCARD;
+
+    private final String label = name().toLowerCase();
+
+    public String label() {
+        return label;
+    }
+}
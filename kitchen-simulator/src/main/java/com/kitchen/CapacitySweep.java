@@ -0,0 +1,306 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Capacity planning: replays order traces through the virtual-clock simulation for every
+// configuration in a grid (ideal/shelf capacity, pickup window and discard policy) and reports waste per
+// configuration. Each (configuration, trace) pair is an independent task on a ForkJoinPool.
+// Configured through system properties; see the README.
+public final class CapacitySweep {
+    private static final long MICROS_PER_MILLI = 1_000L;
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+
+    public static final class Configuration {
+        private final int idealCapacity;
+        private final int shelfCapacity;
+        private final int pickupMinSeconds;
+        private final int pickupMaxSeconds;
+        private final String discardPolicy;
+
+        public Configuration(int idealCapacity, int shelfCapacity, int pickupMinSeconds, int pickupMaxSeconds) {
+            this(idealCapacity, shelfCapacity, pickupMinSeconds, pickupMaxSeconds, "expiry");
+        }
+
+        // discardPolicy is a DiscardPolicy name; its expected pickup is the middle of the window.
+        public Configuration(int idealCapacity, int shelfCapacity, int pickupMinSeconds, int pickupMaxSeconds, String discardPolicy) {
+            if (idealCapacity < 0 || shelfCapacity < 0) {
+                throw new IllegalArgumentException("capacities must be >= 0");
+            }
+            if (pickupMinSeconds < 0 || pickupMaxSeconds < pickupMinSeconds) {
+                throw new IllegalArgumentException("pickup window must satisfy 0 <= min <= max");
+            }
+            this.idealCapacity = idealCapacity;
+            this.shelfCapacity = shelfCapacity;
+            this.pickupMinSeconds = pickupMinSeconds;
+            this.pickupMaxSeconds = pickupMaxSeconds;
+            this.discardPolicy = discardPolicy;
+            newDiscardPolicy(); // fails fast on unknown names
+        }
+
+        public int getIdealCapacity() {
+            return idealCapacity;
+        }
+
+        public int getShelfCapacity() {
+            return shelfCapacity;
+        }
+
+        public int getPickupMinSeconds() {
+            return pickupMinSeconds;
+        }
+
+        public int getPickupMaxSeconds() {
+            return pickupMaxSeconds;
+        }
+
+        public String getDiscardPolicy() {
+            return discardPolicy;
+        }
+
+        private DiscardPolicy newDiscardPolicy() {
+            return DiscardPolicy.forName(discardPolicy, (pickupMinSeconds + pickupMaxSeconds) * MICROS_PER_SECOND / 2);
+        }
+
+        @Override
+        public String toString() {
+            return "ideal=" + idealCapacity + " shelf=" + shelfCapacity
+                    + " pickup=" + pickupMinSeconds + "-" + pickupMaxSeconds + "s discard=" + discardPolicy;
+        }
+    }
+
+    // Totals for one configuration over every trace.
+    public static final class Result {
+        private final Configuration configuration;
+        private long orders;
+        private long pickups;
+        private long moves;
+        private long discards;
+
+        private Result(Configuration configuration) {
+            this.configuration = configuration;
+        }
+
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public long getPickups() {
+            return pickups;
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        public long getDiscards() {
+            return discards;
+        }
+
+        // Share of orders that were discarded instead of picked up.
+        public double getWasteRate() {
+            return orders == 0 ? 0 : (double) discards / orders;
+        }
+
+        private void add(Result other) {
+            orders += other.orders;
+            pickups += other.pickups;
+            moves += other.moves;
+            discards += other.discards;
+        }
+    }
+
+    private CapacitySweep() {
+    }
+
+    public static List<Configuration> grid(List<Integer> idealCapacities, List<Integer> shelfCapacities, List<int[]> pickupWindows) {
+        return grid(idealCapacities, shelfCapacities, pickupWindows, Collections.singletonList("expiry"));
+    }
+
+    public static List<Configuration> grid(
+            List<Integer> idealCapacities,
+            List<Integer> shelfCapacities,
+            List<int[]> pickupWindows,
+            List<String> discardPolicies
+    ) {
+        List<Configuration> grid = new ArrayList<>();
+        for (int ideal : idealCapacities) {
+            for (int shelf : shelfCapacities) {
+                for (int[] window : pickupWindows) {
+                    for (String discardPolicy : discardPolicies) {
+                        grid.add(new Configuration(ideal, shelf, window[0], window[1], discardPolicy));
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    // Results are in grid order.
+    public static List<Result> run(
+            List<Configuration> grid,
+            List<List<Order>> traces,
+            long placeIntervalMicros,
+            long seed,
+            boolean reapExpired,
+            ForkJoinPool pool
+    ) {
+        List<List<ForkJoinTask<Result>>> tasks = new ArrayList<>(grid.size());
+        for (Configuration configuration : grid) {
+            List<ForkJoinTask<Result>> perTrace = new ArrayList<>(traces.size());
+            for (List<Order> trace : traces) {
+                perTrace.add(pool.submit(() -> simulate(configuration, trace, placeIntervalMicros, seed, reapExpired)));
+            }
+            tasks.add(perTrace);
+        }
+
+        List<Result> results = new ArrayList<>(grid.size());
+        for (int i = 0; i < grid.size(); i++) {
+            Result total = new Result(grid.get(i));
+            for (ForkJoinTask<Result> task : tasks.get(i)) {
+                total.add(task.join());
+            }
+            results.add(total);
+        }
+        return results;
+    }
+
+    static Result simulate(Configuration configuration, List<Order> trace, long placeIntervalMicros, long seed, boolean reapExpired) {
+        EventSimulation simulation = new EventSimulation(
+                placeIntervalMicros,
+                configuration.pickupMinSeconds,
+                configuration.pickupMaxSeconds,
+                seed,
+                reapExpired,
+                configuration.idealCapacity,
+                configuration.shelfCapacity,
+                configuration.newDiscardPolicy()
+        );
+        Kitchen kitchen = simulation.run(trace.iterator(), Kitchen.LockingMode.GLOBAL, new ColumnarLedger());
+
+        Result result = new Result(configuration);
+        result.orders = trace.size();
+        kitchen.visitLedger(0, kitchen.getLedgerSize(), (timestampMicros, orderId, action, target) -> {
+            if (action == ActionType.PICKUP) {
+                result.pickups++;
+            } else if (action == ActionType.MOVE) {
+                result.moves++;
+            } else if (action == ActionType.DISCARD) {
+                result.discards++;
+            }
+        });
+        return result;
+    }
+
+    // Uniform temperatures, 5–30 s shelf life and decay rates between 0.25 and 1.0.
+    static List<Order> syntheticTrace(int orders, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Order.Temperature[] temperatures = Order.Temperature.values();
+        List<Order> trace = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            Order.Temperature temperature = temperatures[random.nextInt(temperatures.length)];
+            trace.add(new Order("s" + seed + "-" + i, temperature.name().toLowerCase() + "-" + i, temperature,
+                    random.nextInt(5, 31), 0.25 + 0.75 * random.nextDouble()));
+        }
+        return trace;
+    }
+
+    static List<Order> readTrace(String path, JsonFactory jsonFactory) throws IOException {
+        List<Order> trace = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(Paths.get(path).toFile())) {
+            OrderJson.readOrders(parser, trace::add);
+        }
+        return Collections.unmodifiableList(trace);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Configuration> grid = grid(
+                parseInts(System.getProperty("ideal", "4,6,8,12")),
+                parseInts(System.getProperty("shelf", "8,12,16,24")),
+                parseWindows(System.getProperty("pickupWindows", "2-6,4-8,6-10")),
+                parseNames(System.getProperty("discardPolicies", "expiry")));
+
+        List<List<Order>> traces = new ArrayList<>();
+        String traceFiles = System.getProperty("traces");
+        if (traceFiles != null && !traceFiles.isBlank()) {
+            JsonFactory jsonFactory = new JsonFactory();
+            for (String path : traceFiles.split(",")) {
+                traces.add(readTrace(path.trim(), jsonFactory));
+            }
+        } else {
+            int traceCount = Integer.getInteger("traceCount", 4);
+            int orders = Integer.getInteger("orders", 2_000);
+            long traceSeed = Long.getLong("traceSeed", 1L);
+            for (int i = 0; i < traceCount; i++) {
+                traces.add(syntheticTrace(orders, traceSeed + i));
+            }
+        }
+
+        long placeIntervalMicros = Long.getLong("placeEveryMillis", 500L) * MICROS_PER_MILLI;
+        long seed = Long.getLong("seed", 1L);
+        boolean reapExpired = Boolean.parseBoolean(System.getProperty("reap", "false"));
+        int parallelism = Integer.getInteger("parallelism", Runtime.getRuntime().availableProcessors());
+
+        long startNanos = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Result> results;
+        try {
+            results = run(grid, traces, placeIntervalMicros, seed, reapExpired, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.printf("%-6s %-6s %-8s %-8s %10s %10s %10s %10s %8s%n",
+                "ideal", "shelf", "pickup", "discard", "orders", "pickups", "moves", "discards", "waste");
+        for (Result r : results) {
+            Configuration c = r.getConfiguration();
+            System.out.printf("%-6d %-6d %-8s %-8s %10d %10d %10d %10d %7.2f%%%n",
+                    c.getIdealCapacity(), c.getShelfCapacity(), c.getPickupMinSeconds() + "-" + c.getPickupMaxSeconds() + "s",
+                    c.getDiscardPolicy(),
+                    r.getOrders(), r.getPickups(), r.getMoves(), r.getDiscards(), 100.0 * r.getWasteRate());
+        }
+        System.out.printf("%d configurations x %d traces in %.1fs on %d threads%n",
+                grid.size(), traces.size(), (System.nanoTime() - startNanos) / 1e9, parallelism);
+    }
+
+    private static List<Integer> parseInts(String csv) {
+        List<Integer> values = new ArrayList<>();
+        for (String raw : csv.split(",")) {
+            values.add(Integer.parseInt(raw.trim()));
+        }
+        return values;
+    }
+
+    private static List<String> parseNames(String csv) {
+        List<String> values = new ArrayList<>();
+        for (String raw : csv.split(",")) {
+            values.add(raw.trim());
+        }
+        return values;
+    }
+
+    private static List<int[]> parseWindows(String csv) {
+        List<int[]> windows = new ArrayList<>();
+        for (String raw : csv.split(",")) {
+            String[] bounds = raw.trim().split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Pickup window must look like min-max (got " + raw + ")");
+            }
+            windows.add(new int[]{Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim())});
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,358 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.zip.GZIPInputStream;
+
+// Local stand-in for the challenge server, so Main can be run end to end without the network:
+//   GET  .../new      streams a fresh synthetic test as {"orders": [...]} with an x-test-id header
+//   POST .../solve    takes the {"actions": [...]} solution (gzipped or not) for that x-test-id
+// Any path prefix is accepted (e.g. /interview/challenge/new) and query strings such as ?auth=
+// are ignored. Each test's orders come from the WorkloadGenerator the factory returns for its test
+// number and are written as they are generated, so a test of millions of orders needs no memory.
+// With a speedup the orders are paced by their arrival times (speedup 2 sends them twice as fast);
+// with 0 they go out as fast as the client reads. The solution is counted, not scored.
+public final class ChallengeStandIn implements AutoCloseable {
+    private static final String NEW = "/new";
+    private static final String SOLVE = "/solve";
+    private static final String TEST_ID = "x-test-id";
+
+    // One test from GET to solve.
+    public static final class Result {
+        private final String testId;
+        private final long servedNanos;
+        private volatile long orders;
+        private long actions;
+        private final long[] actionCounts = new long[ActionType.values().length];
+        private long solvedNanos;
+
+        private Result(String testId, long servedNanos) {
+            this.testId = testId;
+            this.servedNanos = servedNanos;
+        }
+
+        public String getTestId() {
+            return testId;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public long getActions() {
+            return actions;
+        }
+
+        public long getActionCount(ActionType action) {
+            return actionCounts[action.ordinal()];
+        }
+
+        // From the start of the GET response to the end of the solve body.
+        public long getElapsedNanos() {
+            return solvedNanos - servedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = getElapsedNanos() / 1e9;
+            return String.format("%s: %d orders, %d actions (place=%d move=%d pickup=%d discard=%d) in %.2fs, %.0f orders/s",
+                    testId, orders, actions, getActionCount(ActionType.PLACE), getActionCount(ActionType.MOVE),
+                    getActionCount(ActionType.PICKUP), getActionCount(ActionType.DISCARD), seconds,
+                    orders / Math.max(1e-9, seconds));
+        }
+    }
+
+    private final JsonFactory jsonFactory;
+    private final LongFunction<WorkloadGenerator> workloads;
+    private final double speedup;
+    private final Consumer<Result> onSolved;
+    private final HttpServer server;
+    private final AtomicLong nextTest = new AtomicLong();
+    private final Map<String, Result> pending = new ConcurrentHashMap<>();
+
+    public ChallengeStandIn(
+            InetSocketAddress address,
+            Executor executor,
+            JsonFactory jsonFactory,
+            LongFunction<WorkloadGenerator> workloads,
+            double speedup
+    ) throws IOException {
+        this(address, executor, jsonFactory, workloads, speedup, result -> {
+        });
+    }
+
+    // onSolved runs on the request thread once a solution has been read.
+    public ChallengeStandIn(
+            InetSocketAddress address,
+            Executor executor,
+            JsonFactory jsonFactory,
+            LongFunction<WorkloadGenerator> workloads,
+            double speedup,
+            Consumer<Result> onSolved
+    ) throws IOException {
+        if (address == null) {
+            throw new IllegalArgumentException("address cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (jsonFactory == null) {
+            throw new IllegalArgumentException("jsonFactory cannot be null");
+        }
+        if (workloads == null) {
+            throw new IllegalArgumentException("workloads cannot be null");
+        }
+        if (!(speedup >= 0) || Double.isInfinite(speedup)) {
+            throw new IllegalArgumentException("speedup must be >= 0");
+        }
+        if (onSolved == null) {
+            throw new IllegalArgumentException("onSolved cannot be null");
+        }
+        this.jsonFactory = jsonFactory;
+        this.workloads = workloads;
+        this.speedup = speedup;
+        this.onSolved = onSolved;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // The port actually bound, e.g. when the server was created on port 0.
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith(NEW)) {
+                drain(exchange.getRequestBody());
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    sendStatus(exchange, 405, "GET only");
+                } else {
+                    serveOrders(exchange);
+                }
+            } else if (path.endsWith(SOLVE)) {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    drain(exchange.getRequestBody());
+                    sendStatus(exchange, 405, "POST only");
+                } else {
+                    solve(exchange);
+                }
+            } else {
+                drain(exchange.getRequestBody());
+                sendStatus(exchange, 404, "Not found: " + path);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serveOrders(HttpExchange exchange) throws IOException {
+        long test = nextTest.getAndIncrement();
+        WorkloadGenerator workload = workloads.apply(test);
+        Result result = new Result("local-" + test, System.nanoTime());
+        pending.put(result.testId, result);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set(TEST_ID, result.testId);
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonGenerator generator = jsonFactory.createGenerator(
+                new BufferedOutputStream(exchange.getResponseBody(), 64 * 1024))) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("orders");
+            long orders = 0;
+            while (workload.hasNext()) {
+                Order order = workload.next();
+                if (speedup > 0) {
+                    long dueNanos = result.servedNanos + (long) (TimeUnit.MICROSECONDS.toNanos(workload.getArrivalMicros()) / speedup);
+                    if (dueNanos > System.nanoTime()) {
+                        // Everything generated so far has arrived; let the client have it while we wait.
+                        generator.flush();
+                        waitUntil(dueNanos);
+                    }
+                }
+                generator.writeStartObject();
+                generator.writeStringField("id", order.getId());
+                generator.writeStringField("name", order.getName());
+                generator.writeStringField("temp", order.getTemperature().name().toLowerCase());
+                generator.writeNumberField("freshness", order.getShelfLifeSeconds());
+                generator.writeNumberField("decayRate", order.getDecayRate());
+                generator.writeEndObject();
+                orders++;
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            result.orders = orders;
+        }
+    }
+
+    private void solve(HttpExchange exchange) throws IOException {
+        String testId = exchange.getRequestHeaders().getFirst(TEST_ID);
+        Result result = (testId == null) ? null : pending.remove(testId);
+        if (result == null) {
+            drain(exchange.getRequestBody());
+            sendStatus(exchange, 400, "Unknown or missing " + TEST_ID + ": " + testId);
+            return;
+        }
+
+        boolean gzip = false;
+        for (String encoding : exchange.getRequestHeaders().getOrDefault("Content-Encoding", List.of())) {
+            gzip |= encoding.toLowerCase().contains("gzip");
+        }
+        try (InputStream body = gzip ? new GZIPInputStream(exchange.getRequestBody(), 64 * 1024) : exchange.getRequestBody();
+             JsonParser parser = jsonFactory.createParser(body)) {
+            countActions(parser, result);
+        } catch (IOException | IllegalArgumentException e) {
+            // A solution that does not parse uses up the test, as with the real server.
+            sendStatus(exchange, 400, "Bad solution: " + e.getMessage());
+            return;
+        }
+        result.solvedNanos = System.nanoTime();
+        onSolved.accept(result);
+        sendStatus(exchange, 200, result.toString());
+    }
+
+    private static void countActions(JsonParser parser, Result result) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Solution must be {\"actions\": [...]}");
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            token = parser.nextToken();
+            if (!field.equals("actions")) {
+                parser.skipChildren();
+                continue;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("actions must be an array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String action = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if (name.equals("action")) {
+                        action = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                result.actionCounts[parseAction(action).ordinal()]++;
+                result.actions++;
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IllegalArgumentException("Solution must be {\"actions\": [...]}");
+        }
+    }
+
+    private static ActionType parseAction(String label) {
+        for (ActionType action : ActionType.values()) {
+            if (action.label().equals(label)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Unknown action: " + label);
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void drain(InputStream body) throws IOException {
+        try (body) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Serves until the process is stopped. Configured through system properties; see the README.
+    public static void main(String[] args) throws IOException {
+        long orders = Long.getLong("orders", 1_000);
+        WorkloadGenerator.Arrivals arrivals = WorkloadGenerator.Arrivals.forName(System.getProperty("arrivals", "poisson"));
+        double ordersPerSecond = Double.parseDouble(System.getProperty("ordersPerSecond", "2"));
+        int burstSize = Integer.getInteger("burstSize", 10);
+        double[] temperatureWeights = WorkloadGenerator.parseTemperatureWeights(
+                System.getProperty("temperatures", "hot=1,cold=1,room=1,frozen=1"));
+        int[] shelfLife = parseRange(System.getProperty("shelfLife", "5-30"));
+        String[] decay = System.getProperty("decayRate", "0.25-1.0").split("-");
+        if (decay.length != 2) {
+            throw new IllegalArgumentException("decayRate must look like min-max (got " + String.join("-", decay) + ")");
+        }
+        double minDecay = Double.parseDouble(decay[0].trim());
+        double maxDecay = Double.parseDouble(decay[1].trim());
+        long seed = Long.getLong("seed", 1L);
+        double speedup = Double.parseDouble(System.getProperty("speedup", "0"));
+        int port = Integer.getInteger("port", 8090);
+        // Fail fast on bad settings rather than on the first GET.
+        new WorkloadGenerator(seed, orders, arrivals, ordersPerSecond, burstSize, temperatureWeights,
+                shelfLife[0], shelfLife[1], minDecay, maxDecay);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Integer.getInteger("threads", 4));
+        ChallengeStandIn standIn = new ChallengeStandIn(new InetSocketAddress(System.getProperty("host", "localhost"), port),
+                executor, new JsonFactory(),
+                test -> new WorkloadGenerator(seed + test, orders, arrivals, ordersPerSecond, burstSize,
+                        temperatureWeights, shelfLife[0], shelfLife[1], minDecay, maxDecay),
+                speedup, System.out::println);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            standIn.close();
+            executor.shutdownNow();
+        }, "stand-in-shutdown"));
+        standIn.start();
+        String base = "http://" + System.getProperty("host", "localhost") + ":" + standIn.getPort();
+        System.out.println("Serving " + orders + " " + arrivals.name().toLowerCase() + " orders per test: ordersUrl="
+                + base + NEW + " solveUrl=" + base + SOLVE);
+    }
+
+    private static int[] parseRange(String raw) {
+        String[] bounds = raw.trim().split("-");
+        if (bounds.length != 2) {
+            throw new IllegalArgumentException("Range must look like min-max (got " + raw + ")");
+        }
+        return new int[]{Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim())};
+    }
+}
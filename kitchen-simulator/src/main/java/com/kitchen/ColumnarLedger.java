@@ -0,0 +1,102 @@
+package com.kitchen;
+
+import java.util.Arrays;
+
+// Append-only ledger stored as parallel columns: a timestamp, an action byte, a target byte and
+// a reference to the order's id string, which every entry for the order shares with the order
+// itself, so there are no per-entry objects. Action views are only built when the ledger is
+// exported. Not thread-safe; Kitchen guards it with the ledger lock.
+final class ColumnarLedger implements Ledger {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final ActionType[] ACTIONS = ActionType.values();
+    private static final StorageType[] TARGETS = StorageType.values();
+
+    private long[] timestamps;
+    private String[] orderIds;
+    private byte[] actions;
+    private byte[] targets;
+    private int size;
+
+    ColumnarLedger() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ColumnarLedger(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.timestamps = new long[capacity];
+        this.orderIds = new String[capacity];
+        this.actions = new byte[capacity];
+        this.targets = new byte[capacity];
+    }
+
+    @Override
+    public void append(long timestampMicros, String orderId, ActionType action, StorageType target) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        timestamps[size] = timestampMicros;
+        orderIds[size] = orderId;
+        actions[size] = (byte) action.ordinal();
+        targets[size] = (byte) target.ordinal();
+        size++;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void truncate(long newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("cannot truncate ledger of size " + size + " to " + newSize);
+        }
+        Arrays.fill(orderIds, (int) newSize, size, null);
+        size = (int) newSize;
+    }
+
+    @Override
+    public void forEach(long fromIndex, long toIndex, EntryVisitor visitor) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("range [" + fromIndex + ", " + toIndex + ") out of bounds for ledger size " + size);
+        }
+        for (int i = (int) fromIndex; i < toIndex; i++) {
+            visitor.visit(timestamps[i], orderIds[i], ACTIONS[actions[i]], TARGETS[targets[i]]);
+        }
+    }
+
+    long timestampAt(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    String orderIdAt(int index) {
+        return orderIds[checkIndex(index)];
+    }
+
+    ActionType actionAt(int index) {
+        return ACTIONS[actions[checkIndex(index)]];
+    }
+
+    StorageType targetAt(int index) {
+        return TARGETS[targets[checkIndex(index)]];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for ledger size " + size);
+        }
+        return index;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length;
+        int newCapacity = capacity + (capacity >> 1) + 1;
+        if (newCapacity < 0) {
+            throw new IllegalStateException("ledger is full (" + size + " entries)");
+        }
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        orderIds = Arrays.copyOf(orderIds, newCapacity);
+        actions = Arrays.copyOf(actions, newCapacity);
+        targets = Arrays.copyOf(targets, newCapacity);
+    }
+}
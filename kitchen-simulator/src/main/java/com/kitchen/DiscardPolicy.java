@@ -0,0 +1,61 @@
+package com.kitchen;
+
+import java.util.Locale;
+
+// Chooses which shelf order to discard when the shelf is full and nothing can be moved off it.
+// A policy ranks each order once, when it is put on the shelf, and the shelf discards the lowest
+// rank first. An order's shelf segment does not change while it stays on the shelf, so the rank
+// is fixed and the shelf can keep its orders in a sorted index (O(log n) per add, remove and
+// discard). Policies are stateless and can be shared by any number of shelves.
+@FunctionalInterface
+public interface DiscardPolicy {
+    // Discards the order that expires first; the shelf reuses its expiry index for this one.
+    DiscardPolicy SOONEST_EXPIRY = StoredOrder::getExpiresAtMicros;
+
+    double rank(StoredOrder storedOrder);
+
+    // Discards the order with the least freshness left at the time it is expected to be picked up,
+    // so orders that will be worthless by then go first. Unlike slack this is the absolute
+    // freshness, so a long-lived order that decays fast still ranks above a short-lived one.
+    static DiscardPolicy lowestValueAtPickup(long expectedPickupDelayMicros) {
+        requireNonNegative(expectedPickupDelayMicros);
+        return storedOrder -> storedOrder.getRemainingFreshnessMicros(
+                expectedPickupMicros(storedOrder, expectedPickupDelayMicros));
+    }
+
+    // Discards the order with the least time between its expected pickup and its expiry, whatever
+    // its placement time. Orders expected to expire before pickup have negative slack and go first.
+    static DiscardPolicy leastSlack(long expectedPickupDelayMicros) {
+        requireNonNegative(expectedPickupDelayMicros);
+        return storedOrder -> (double) storedOrder.getExpiresAtMicros()
+                - expectedPickupMicros(storedOrder, expectedPickupDelayMicros);
+    }
+
+    // Parses "expiry", "value" or "slack" (case-insensitive).
+    static DiscardPolicy forName(String name, long expectedPickupDelayMicros) {
+        if (name == null) {
+            throw new IllegalArgumentException("discard policy cannot be null");
+        }
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "expiry":
+                return SOONEST_EXPIRY;
+            case "value":
+                return lowestValueAtPickup(expectedPickupDelayMicros);
+            case "slack":
+                return leastSlack(expectedPickupDelayMicros);
+            default:
+                throw new IllegalArgumentException("Unknown discard policy: " + name + " (expected expiry, value or slack)");
+        }
+    }
+
+    // Placement time plus the expected delay, but never before the order reached the shelf.
+    private static long expectedPickupMicros(StoredOrder storedOrder, long expectedPickupDelayMicros) {
+        return Math.max(storedOrder.getSegmentStartMicros(), storedOrder.getPlacedTimeMicros() + expectedPickupDelayMicros);
+    }
+
+    private static void requireNonNegative(long expectedPickupDelayMicros) {
+        if (expectedPickupDelayMicros < 0) {
+            throw new IllegalArgumentException("expectedPickupDelayMicros must be >= 0");
+        }
+    }
+}
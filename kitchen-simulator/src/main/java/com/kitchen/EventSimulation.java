@@ -0,0 +1,159 @@
+package com.kitchen;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+// Discrete-event run of the placement/pickup schedule against a virtual clock. Instead of sleeping
+// between events the clock jumps straight to the next one, so a run takes as long as the kitchen
+// work itself. Placements follow the fixed interval of the wall-clock mode and each pickup is drawn
+// from the same whole-second window, using a seeded generator so runs are reproducible.
+public final class EventSimulation {
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+
+    private final long placeIntervalMicros;
+    private final int minPickupDelaySeconds;
+    private final int maxPickupDelaySeconds;
+    private final long seed;
+    private final boolean reapExpired;
+    private final int idealCapacity;
+    private final int shelfCapacity;
+    private final DiscardPolicy discardPolicy;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long nowMicros;
+    private long nextSequence;
+    private long eventCount;
+
+    private static final class Event implements Comparable<Event> {
+        private final long timeMicros;
+        private final long sequence;
+        private final Order order;
+        private final boolean pickup;
+
+        private Event(long timeMicros, long sequence, Order order, boolean pickup) {
+            this.timeMicros = timeMicros;
+            this.sequence = sequence;
+            this.order = order;
+            this.pickup = pickup;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(timeMicros, other.timeMicros);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public EventSimulation(long placeIntervalMicros, int minPickupDelaySeconds, int maxPickupDelaySeconds, long seed) {
+        this(placeIntervalMicros, minPickupDelaySeconds, maxPickupDelaySeconds, seed, false);
+    }
+
+    // With reapExpired, expired orders are discarded before every event, logged at their expiry
+    // instant. Anything that expired after the previous event is reaped at this one, so the ledger
+    // stays in timestamp order.
+    public EventSimulation(
+            long placeIntervalMicros,
+            int minPickupDelaySeconds,
+            int maxPickupDelaySeconds,
+            long seed,
+            boolean reapExpired
+    ) {
+        this(placeIntervalMicros, minPickupDelaySeconds, maxPickupDelaySeconds, seed, reapExpired,
+                Kitchen.DEFAULT_IDEAL_CAPACITY, Kitchen.DEFAULT_SHELF_CAPACITY);
+    }
+
+    public EventSimulation(
+            long placeIntervalMicros,
+            int minPickupDelaySeconds,
+            int maxPickupDelaySeconds,
+            long seed,
+            boolean reapExpired,
+            int idealCapacity,
+            int shelfCapacity
+    ) {
+        this(placeIntervalMicros, minPickupDelaySeconds, maxPickupDelaySeconds, seed, reapExpired,
+                idealCapacity, shelfCapacity, DiscardPolicy.SOONEST_EXPIRY);
+    }
+
+    public EventSimulation(
+            long placeIntervalMicros,
+            int minPickupDelaySeconds,
+            int maxPickupDelaySeconds,
+            long seed,
+            boolean reapExpired,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy
+    ) {
+        if (placeIntervalMicros < 0) {
+            throw new IllegalArgumentException("placeIntervalMicros must be >= 0");
+        }
+        if (minPickupDelaySeconds < 0 || maxPickupDelaySeconds < minPickupDelaySeconds) {
+            throw new IllegalArgumentException("pickup delay window must satisfy 0 <= min <= max");
+        }
+        this.placeIntervalMicros = placeIntervalMicros;
+        this.minPickupDelaySeconds = minPickupDelaySeconds;
+        this.maxPickupDelaySeconds = maxPickupDelaySeconds;
+        this.seed = seed;
+        this.reapExpired = reapExpired;
+        this.idealCapacity = idealCapacity;
+        this.shelfCapacity = shelfCapacity;
+        this.discardPolicy = discardPolicy;
+    }
+
+    // Places every order and picks each one up again, then returns the kitchen with the finished
+    // ledger. Orders are pulled from the iterator only when their placement is due.
+    public Kitchen run(Iterator<Order> orders, Kitchen.LockingMode lockingMode, Ledger ledger) {
+        Objects.requireNonNull(orders, "orders");
+        Kitchen kitchen = new Kitchen(this::currentMicros, lockingMode, ledger, idealCapacity, shelfCapacity, discardPolicy);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        events.clear();
+        nowMicros = 0;
+        nextSequence = 0;
+        eventCount = 0;
+        if (orders.hasNext()) {
+            schedule(0, orders.next(), false);
+        }
+
+        Event event;
+        while ((event = events.poll()) != null) {
+            nowMicros = event.timeMicros;
+            eventCount++;
+            if (reapExpired) {
+                kitchen.reapExpired();
+            }
+            if (event.pickup) {
+                kitchen.pickupOrder(event.order.getId());
+                continue;
+            }
+
+            kitchen.placeOrder(event.order);
+            long delaySeconds = random.nextInt(minPickupDelaySeconds, maxPickupDelaySeconds + 1);
+            schedule(nowMicros + delaySeconds * MICROS_PER_SECOND, event.order, true);
+            if (orders.hasNext()) {
+                schedule(nowMicros + placeIntervalMicros, orders.next(), false);
+            }
+        }
+        return kitchen;
+    }
+
+    // Virtual time of the last processed event.
+    public long getNowMicros() {
+        return nowMicros;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    private void schedule(long timeMicros, Order order, boolean pickup) {
+        events.add(new Event(timeMicros, nextSequence++, Objects.requireNonNull(order, "order"), pickup));
+    }
+
+    private long currentMicros() {
+        return nowMicros;
+    }
+}
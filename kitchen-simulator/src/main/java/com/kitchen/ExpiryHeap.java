@@ -0,0 +1,117 @@
+package com.kitchen;
+
+import java.util.Arrays;
+
+// Binary min-heap of stored orders keyed by their expiration deadline. Every order remembers its
+// own position in the heap, so removal is O(log n) and the heap only ever holds
+// live orders. An order can be in at most one ExpiryHeap at a time.
+final class ExpiryHeap {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private StoredOrder[] heap;
+    private int size;
+
+    ExpiryHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ExpiryHeap(int initialCapacity) {
+        this.heap = new StoredOrder[Math.max(1, initialCapacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(StoredOrder storedOrder) {
+        int i = storedOrder.heapIndex;
+        return i >= 0 && i < size && heap[i] == storedOrder;
+    }
+
+    void add(StoredOrder storedOrder) {
+        if (storedOrder.heapIndex >= 0) {
+            throw new IllegalStateException("order is already in a heap: " + storedOrder.getOrder().getId());
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        heap[size] = storedOrder;
+        storedOrder.heapIndex = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    StoredOrder peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    boolean remove(StoredOrder storedOrder) {
+        if (!contains(storedOrder)) {
+            return false;
+        }
+        removeAt(storedOrder.heapIndex);
+        return true;
+    }
+
+    private void removeAt(int i) {
+        StoredOrder removed = heap[i];
+        removed.heapIndex = -1;
+        size--;
+
+        if (i == size) {
+            heap[size] = null;
+            return;
+        }
+
+        StoredOrder last = heap[size];
+        heap[size] = null;
+        heap[i] = last;
+        last.heapIndex = i;
+        siftUp(i);
+        siftDown(last.heapIndex);
+    }
+
+    private void siftUp(int i) {
+        StoredOrder item = heap[i];
+        long key = item.getExpiresAtMicros();
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            StoredOrder p = heap[parent];
+            if (p.getExpiresAtMicros() <= key) {
+                break;
+            }
+            heap[i] = p;
+            p.heapIndex = i;
+            i = parent;
+        }
+        heap[i] = item;
+        item.heapIndex = i;
+    }
+
+    private void siftDown(int i) {
+        StoredOrder item = heap[i];
+        long key = item.getExpiresAtMicros();
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            StoredOrder c = heap[child];
+            int right = child + 1;
+            if (right < size && heap[right].getExpiresAtMicros() < c.getExpiresAtMicros()) {
+                child = right;
+                c = heap[right];
+            }
+            if (key <= c.getExpiresAtMicros()) {
+                break;
+            }
+            heap[i] = c;
+            c.heapIndex = i;
+            i = child;
+        }
+        heap[i] = item;
+        item.heapIndex = i;
+    }
+}
@@ -0,0 +1,147 @@
+package com.kitchen;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Open-addressing map from int order handles to values: parallel key/value arrays, linear
+// probing and backward-shift deletion, so there are no entry objects and no boxing. Sized by the
+// number of live entries, not by how many handles have ever been issued. Not thread-safe.
+final class HandleTable<V> {
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    HandleTable() {
+        this(16);
+    }
+
+    HandleTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int handle) {
+        for (int i = slot(handle); ; i = (i + 1) & mask) {
+            int key = keys[i];
+            if (key == handle) {
+                return (V) values[i];
+            }
+            if (key == FREE) {
+                return null;
+            }
+        }
+    }
+
+    // Returns the previous value for the handle, or null.
+    @SuppressWarnings("unchecked")
+    V put(int handle, V value) {
+        if (handle < 0) {
+            throw new IllegalArgumentException("handle must be >= 0");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        int i = slot(handle);
+        for (; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == handle) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = handle;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    // Returns the removed value, or null if the handle was not present.
+    @SuppressWarnings("unchecked")
+    V remove(int handle) {
+        for (int i = slot(handle); ; i = (i + 1) & mask) {
+            int key = keys[i];
+            if (key == FREE) {
+                return null;
+            }
+            if (key == handle) {
+                V previous = (V) values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    // Visits every value, in no particular order.
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                action.accept((V) values[i]);
+            }
+        }
+    }
+
+    // Removes the entry only while it still maps to the given value.
+    boolean remove(int handle, V value) {
+        if (get(handle) != value || value == null) {
+            return false;
+        }
+        remove(handle);
+        return true;
+    }
+
+    // Closes the gap at slot i by moving later entries of the same probe run back into it.
+    private void shiftBack(int i) {
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // Move j into the gap unless its home slot lies cyclically in (gap, j].
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = FREE;
+        values[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                while (keys[j] != FREE) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(int handle) {
+        int h = handle * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,149 @@
+package com.kitchen;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Hashed timing wheel for pickups. Pickup delays sit in a narrow band, so instead of a heap-ordered
+// delay queue each pickup is dropped into the wheel bucket of its due tick (plus how many full turns
+// of the wheel to wait). Submitting is a queue offer; a single worker thread moves new pickups into
+// their buckets once per tick and runs every pickup that is due in the current bucket as one batch.
+// Pickups run on the worker thread and fire at most one tick late.
+public final class HashedWheelPickupScheduler implements PickupScheduler {
+    private final long tickNanos;
+    private final int mask;
+    private final Timeout[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final SchedulingDrift drift = new SchedulingDrift();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    private static final class Timeout {
+        private final long deadlineNanos;
+        private final Runnable task;
+        private long remainingRounds;
+        private Timeout next;
+
+        private Timeout(long deadlineNanos, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+        }
+    }
+
+    public HashedWheelPickupScheduler(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        Objects.requireNonNull(unit, "unit");
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be > 0");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be within [1, 2^30]");
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Timeout[Math.max(1, size)];
+        this.mask = wheel.length - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::runWorker, "pickup-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void submit(Runnable placement, Runnable pickup, long pickupDelayNanos) {
+        placement.run();
+        if (!running) {
+            throw new IllegalStateException("Scheduler is closed");
+        }
+        long deadlineNanos = System.nanoTime() - startNanos + Math.max(0, pickupDelayNanos);
+        pending.offer(new Timeout(deadlineNanos, Objects.requireNonNull(pickup, "pickup")));
+    }
+
+    @Override
+    public SchedulingDrift getDrift() {
+        return drift;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    public int getTicksPerWheel() {
+        return wheel.length;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        if (Thread.currentThread() != worker) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            long tickDeadlineNanos = tickNanos * (tick + 1);
+            long sleepNanos;
+            while (running && (sleepNanos = tickDeadlineNanos - (System.nanoTime() - startNanos)) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            if (!running) {
+                return;
+            }
+            transferPending();
+            expire(tick & mask, tickDeadlineNanos);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            long dueTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            int bucket = (int) (Math.max(dueTick, tick) & mask);
+            timeout.next = wheel[bucket];
+            wheel[bucket] = timeout;
+        }
+    }
+
+    private void expire(long bucket, long tickDeadlineNanos) {
+        int index = (int) bucket;
+        Timeout previous = null;
+        Timeout timeout = wheel[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= tickDeadlineNanos) {
+                if (previous == null) {
+                    wheel[index] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+                fire(timeout);
+            } else {
+                timeout.remainingRounds--;
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        drift.record(System.nanoTime() - startNanos - timeout.deadlineNanos);
+        try {
+            timeout.task.run();
+        } catch (RuntimeException e) {
+            // Reported as if the pickup had run on a thread of its own, and the wheel keeps turning.
+            worker.getUncaughtExceptionHandler().uncaughtException(worker, e);
+        }
+    }
+}
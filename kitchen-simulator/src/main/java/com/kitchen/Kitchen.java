@@ -1,151 +1,612 @@
 package com.kitchen;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.function.LongSupplier;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class Kitchen {
-    private static final int IDEAL_CAPACITY = 6;
-    private static final int SHELF_CAPACITY = 12;
+public class Kitchen implements KitchenService {
+    public static final int DEFAULT_IDEAL_CAPACITY = 6;
+    public static final int DEFAULT_SHELF_CAPACITY = 12;
+    public static final int DEFAULT_LATENCY_SAMPLE_RATE = 8;
 
-    private final ReentrantLock lock = new ReentrantLock();
+    private static final int INDEX_STRIPES = 16;
+
+    public enum LockingMode {
+        // One lock guards every storage and the ledger.
+        GLOBAL,
+        // One lock per storage, one per index stripe and one for the ledger. Locks are always taken
+        // in StorageType declaration order (heater, cooler, freezer, shelf), then index stripes in
+        // order, and the ledger lock last.
+        STRIPED
+    }
+
+    public interface LedgerVisitor {
+        void visit(long timestampMicros, String orderId, ActionType action, StorageType target);
+    }
+
+    private final LockingMode lockingMode;
+    private final ReentrantLock[] storageLocks = new ReentrantLock[StorageType.values().length];
+    private final ReentrantLock ledgerLock;
     private final LongSupplier nowMicros;
 
-    private final List<StoredOrder> heater = new ArrayList<>();
-    private final List<StoredOrder> cooler = new ArrayList<>();
-    private final List<StoredOrder> freezer = new ArrayList<>();
+    private final SlotStorage heater;
+    private final SlotStorage cooler;
+    private final SlotStorage freezer;
+    // Expiry order of the heater, cooler and freezer contents (indexed by StorageType ordinal);
+    // the shelf keeps its own.
+    private final ExpiryHeap[] expiryHeaps = new ExpiryHeap[StorageType.values().length];
     private final ShelfManager shelf;
 
-    private final Map<String, StoredOrder> allOrders = new HashMap<>();
-    private final List<Action> ledger = new ArrayList<>();
-
-    private static String location(StorageType storageType) {
-        return storageType.name().toLowerCase();
-    }
+    // Every order in the kitchen by handle, striped by handle so operations on different orders
+    // rarely share an index lock (in GLOBAL mode every stripe uses the global lock). Ids are
+    // interned when an order is placed and released when it leaves, and the shelf shares the same
+    // handles.
+    private final IndexStripe[] index = new IndexStripe[INDEX_STRIPES];
+    private final OrderIds orderIds = new OrderIds();
+    private final Ledger ledger;
+
+    // Always on, but only calls for one in latencySampleRate order ids (picked by id hash) are timed,
+    // so most calls skip the clock reads and histogram updates. A timed uncontended call costs two
+    // System.nanoTime() reads. Only single placeOrder/pickupOrder calls are timed, not batches.
+    private final LockLatency placeLatency = new LockLatency();
+    private final LockLatency pickupLatency = new LockLatency();
+    private final int latencySampleMask;
+    private final KitchenMetrics metrics;
+
+    // Optional; every ledger entry is also appended to it under the ledger lock, and each public
+    // operation waits for it to be durable after releasing the kitchen locks.
+    private final WriteAheadLog journal;
+    private final Object snapshotLock = new Object();
 
     public Kitchen() {
         this(() -> TimeUnit.NANOSECONDS.toMicros(System.nanoTime()));
     }
 
     public Kitchen(LongSupplier nowMicros) {
+        this(nowMicros, LockingMode.GLOBAL);
+    }
+
+    public Kitchen(LongSupplier nowMicros, LockingMode lockingMode) {
+        this(nowMicros, lockingMode, new ColumnarLedger());
+    }
+
+    public Kitchen(LongSupplier nowMicros, LockingMode lockingMode, Ledger ledger) {
+        this(nowMicros, lockingMode, ledger, DEFAULT_IDEAL_CAPACITY, DEFAULT_SHELF_CAPACITY);
+    }
+
+    // idealCapacity applies to each of the heater, cooler and freezer.
+    public Kitchen(LongSupplier nowMicros, LockingMode lockingMode, Ledger ledger, int idealCapacity, int shelfCapacity) {
+        this(nowMicros, lockingMode, ledger, idealCapacity, shelfCapacity, DiscardPolicy.SOONEST_EXPIRY);
+    }
+
+    public Kitchen(
+            LongSupplier nowMicros,
+            LockingMode lockingMode,
+            Ledger ledger,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy
+    ) {
+        this(nowMicros, lockingMode, ledger, idealCapacity, shelfCapacity, discardPolicy, DEFAULT_LATENCY_SAMPLE_RATE);
+    }
+
+    // latencySampleRate is a power of two; 1 times every call.
+    public Kitchen(
+            LongSupplier nowMicros,
+            LockingMode lockingMode,
+            Ledger ledger,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy,
+            int latencySampleRate
+    ) {
+        this(nowMicros, lockingMode, ledger, idealCapacity, shelfCapacity, discardPolicy, latencySampleRate, null);
+    }
+
+    // With a journal, the kitchen first recovers whatever the journal's directory holds (its newest
+    // snapshot plus the log after it) and rolls the ledger forward or back to match, so pass the
+    // ledger the kitchen was writing before, e.g. a MappedLedger over the same ledger directory.
+    // Capacities must not shrink across a restart.
+    public Kitchen(
+            LongSupplier nowMicros,
+            LockingMode lockingMode,
+            Ledger ledger,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy,
+            int latencySampleRate,
+            WriteAheadLog journal
+    ) {
+        if (latencySampleRate <= 0 || Integer.bitCount(latencySampleRate) != 1) {
+            throw new IllegalArgumentException("latencySampleRate must be a power of two");
+        }
+        if (idealCapacity < 0 || shelfCapacity < 0) {
+            throw new IllegalArgumentException("capacities must be >= 0");
+        }
+        if (lockingMode == null) {
+            throw new IllegalArgumentException("lockingMode cannot be null");
+        }
+        if (ledger == null) {
+            throw new IllegalArgumentException("ledger cannot be null");
+        }
         this.nowMicros = nowMicros;
-        this.shelf = new ShelfManager(SHELF_CAPACITY, nowMicros);
+        this.lockingMode = lockingMode;
+        this.ledger = ledger;
+        this.latencySampleMask = latencySampleRate - 1;
+        this.metrics = new KitchenMetrics(idealCapacity, shelfCapacity);
+        this.heater = new SlotStorage(idealCapacity);
+        this.cooler = new SlotStorage(idealCapacity);
+        this.freezer = new SlotStorage(idealCapacity);
+        this.shelf = new ShelfManager(shelfCapacity, nowMicros, orderIds, discardPolicy);
+        for (StorageType storageType : StorageType.values()) {
+            if (storageType != StorageType.SHELF) {
+                expiryHeaps[storageType.ordinal()] = new ExpiryHeap(Math.min(idealCapacity, 1024));
+            }
+        }
+
+        ReentrantLock global = new ReentrantLock();
+        for (int i = 0; i < storageLocks.length; i++) {
+            storageLocks[i] = (lockingMode == LockingMode.GLOBAL) ? global : new ReentrantLock();
+        }
+        this.ledgerLock = (lockingMode == LockingMode.GLOBAL) ? global : new ReentrantLock();
+        int stripeSize = (int) Math.min((3L * idealCapacity + shelfCapacity) / INDEX_STRIPES + 1, 1024);
+        for (int i = 0; i < index.length; i++) {
+            index[i] = new IndexStripe((lockingMode == LockingMode.GLOBAL) ? global : new ReentrantLock(), stripeSize);
+        }
+
+        this.journal = journal;
+        if (journal != null) {
+            try {
+                journal.recover(new Recovery());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to recover the kitchen from " + journal.getDirectory(), e);
+            }
+        }
+    }
+
+    @Override
+    public long getLedgerSize() {
+        ledgerLock.lock();
+        try {
+            return ledger.size();
+        } finally {
+            ledgerLock.unlock();
+        }
     }
 
+    // Returns once every operation that was under way has logged its entries. Operations read the
+    // clock under the storage locks they log under, so anything logged later carries a timestamp
+    // no earlier than a clock read made before this call. KitchenCluster relies on it to merge.
+    void awaitLogged() {
+        lockOverflow(StorageType.FREEZER);
+        unlockOverflow(StorageType.FREEZER);
+    }
+
+    // Visits ledger entries [fromIndex, toIndex) without materializing Action objects. The ledger
+    // lock is held for the duration, so keep ranges short when other threads are still writing.
+    @Override
+    public void visitLedger(long fromIndex, long toIndex, LedgerVisitor visitor) {
+        ledgerLock.lock();
+        try {
+            ledger.forEach(fromIndex, toIndex, visitor::visit);
+        } finally {
+            ledgerLock.unlock();
+        }
+    }
+
+    public LockingMode getLockingMode() {
+        return lockingMode;
+    }
+
+    @Override
+    public KitchenMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public LockLatency getPlaceLatency() {
+        return placeLatency;
+    }
+
+    @Override
+    public LockLatency getPickupLatency() {
+        return pickupLatency;
+    }
+
+    @Override
     public List<Action> getLedgerSnapshot() {
-        lock.lock();
+        ledgerLock.lock();
         try {
-            return new ArrayList<>(ledger);
+            List<Action> actions = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, ledger.size()));
+            ledger.forEach(0, ledger.size(), (timestampMicros, orderId, action, target) ->
+                    actions.add(new Action(timestampMicros, orderId, action.label(), target.location())));
+            return actions;
         } finally {
-            lock.unlock();
+            ledgerLock.unlock();
         }
     }
 
+    @Override
     public void placeOrder(Order order) {
         if (order == null) {
             throw new IllegalArgumentException("order cannot be null");
         }
+        checkRecordable(order);
+
+        // Fast path: only the ideal storage's lock is taken, so placements into different storages
+        // do not contend in STRIPED mode.
+        StorageType idealStorage = idealStorageFor(order);
+        boolean timed = isTimed(order.getId());
+        ReentrantLock lock = lockFor(idealStorage);
+        long waitNanos = lock(lock, timed);
+        long acquiredNanos = nanoTimeIf(timed);
+        boolean placed;
+        try {
+            placed = tryPlaceIdeal(order, idealStorage);
+        } finally {
+            lock.unlock();
+        }
+        long releasedNanos = nanoTimeIf(timed);
+        long holdNanos = releasedNanos - acquiredNanos;
+        if (placed) {
+            if (timed) {
+                placeLatency.record(waitNanos, holdNanos, 0);
+            }
+            syncJournal();
+            return;
+        }
 
-        lock.lock();
+        lockOverflow(idealStorage);
+        long overflowAcquiredNanos = nanoTimeIf(timed);
+        int retries;
         try {
-            long nowMicros = nowMicros();
+            retries = placeLocked(order, idealStorage, nowMicros());
+        } finally {
+            unlockOverflow(idealStorage);
+        }
+        if (timed) {
+            placeLatency.record(
+                    waitNanos + (overflowAcquiredNanos - releasedNanos),
+                    holdNanos + (System.nanoTime() - overflowAcquiredNanos),
+                    retries);
+        }
+        syncJournal();
+    }
 
-            while (true) {
-                StorageType idealStorage = idealStorageFor(order);
-                if (idealStorage == StorageType.SHELF) {
-                    if (!shelf.isFull()) {
-                        StoredOrder storedOrder = new StoredOrder(order, StorageType.SHELF, nowMicros);
-                        shelf.addOrder(storedOrder);
-                        allOrders.put(order.getId(), storedOrder);
-                        ledger.add(new Action(nowMicros, order.getId(), "place", location(StorageType.SHELF)));
-                        return;
-                    }
-                } else {
-                    List<StoredOrder> idealList = storageList(idealStorage);
-
-                    if (idealList.size() < IDEAL_CAPACITY) {
-                        StoredOrder storedOrder = new StoredOrder(order, idealStorage, nowMicros);
-                        idealList.add(storedOrder);
-                        allOrders.put(order.getId(), storedOrder);
-                        ledger.add(new Action(nowMicros, order.getId(), "place", location(idealStorage)));
-                        return;
-                    }
+    // Places a batch of orders in caller order. Each run of consecutive orders with the same ideal
+    // storage takes that storage's lock once and reads the clock once; from the first order of a
+    // run that does not fit, the rest of the run goes through the overflow locks. The ledger is
+    // the same as calling placeOrder for each order in turn with the clock standing still.
+    public void placeOrders(List<Order> orders) {
+        if (orders == null) {
+            throw new IllegalArgumentException("orders cannot be null");
+        }
+        for (Order order : orders) {
+            if (order == null) {
+                throw new IllegalArgumentException("orders cannot contain null");
+            }
+            checkRecordable(order);
+        }
+        if (orders.isEmpty()) {
+            return;
+        }
 
-                    if (!shelf.isFull()) {
-                        StoredOrder storedOrder = new StoredOrder(order, StorageType.SHELF, nowMicros);
-                        shelf.addOrder(storedOrder);
-                        allOrders.put(order.getId(), storedOrder);
-                        ledger.add(new Action(nowMicros, order.getId(), "place", location(StorageType.SHELF)));
-                        return;
+        int start = 0;
+        while (start < orders.size()) {
+            StorageType idealStorage = idealStorageFor(orders.get(start));
+            int end = start + 1;
+            while (end < orders.size() && idealStorageFor(orders.get(end)) == idealStorage) {
+                end++;
+            }
+            int placed = start;
+            ReentrantLock lock = lockFor(idealStorage);
+            lock.lock();
+            try {
+                long nowMicros = nowMicros();
+                while (placed < end && tryPlaceIdeal(orders.get(placed), idealStorage, nowMicros)) {
+                    placed++;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (placed < end) {
+                lockOverflow(idealStorage);
+                try {
+                    long nowMicros = nowMicros();
+                    for (Order order : orders.subList(placed, end)) {
+                        placeLocked(order, idealStorage, nowMicros);
                     }
+                } finally {
+                    unlockOverflow(idealStorage);
+                }
+            }
+            start = end;
+        }
+        syncJournal();
+    }
+
+    // Overflow placement; the caller holds the overflow locks for idealStorage. Returns how many
+    // moves or discards it took to make room.
+    private int placeLocked(Order order, StorageType idealStorage, long nowMicros) {
+        for (int retries = 0; ; retries++) {
+            if (idealStorage == StorageType.SHELF) {
+                if (!shelf.isFull()) {
+                    placeOnShelf(order, nowMicros);
+                    return retries;
                 }
+            } else {
+                SlotStorage ideal = slotStorage(idealStorage);
 
-                if (!tryMoveShelfOrder(StorageType.HEATER)) {
-                    if (!tryMoveShelfOrder(StorageType.COOLER)) {
-                        discardFromShelf();
-                    }
+                if (!ideal.isFull()) {
+                    placeInSlot(order, idealStorage, ideal, nowMicros);
+                    return retries;
                 }
 
-                nowMicros = nowMicros();
+                if (!shelf.isFull()) {
+                    placeOnShelf(order, nowMicros);
+                    return retries;
+                }
             }
-        } finally {
-            lock.unlock();
+
+            if (!tryMoveShelfOrder(StorageType.HEATER, nowMicros)) {
+                if (!tryMoveShelfOrder(StorageType.COOLER, nowMicros)) {
+                    discardFromShelf(nowMicros);
+                }
+            }
+        }
+    }
+
+    // The caller holds the ideal storage's lock.
+    private boolean tryPlaceIdeal(Order order, StorageType idealStorage) {
+        return tryPlaceIdeal(order, idealStorage, nowMicros());
+    }
+
+    private boolean tryPlaceIdeal(Order order, StorageType idealStorage, long nowMicros) {
+        if (idealStorage == StorageType.SHELF) {
+            if (shelf.isFull()) {
+                return false;
+            }
+            placeOnShelf(order, nowMicros);
+            return true;
+        }
+
+        SlotStorage ideal = slotStorage(idealStorage);
+        if (ideal.isFull()) {
+            return false;
         }
+        placeInSlot(order, idealStorage, ideal, nowMicros);
+        return true;
     }
 
+    private void placeOnShelf(Order order, long nowMicros) {
+        StoredOrder storedOrder = new StoredOrder(order, StorageType.SHELF, nowMicros);
+        storedOrder.handle = orderIds.intern(order.getId());
+        shelf.addOrder(storedOrder);
+        index(storedOrder);
+        appendLedger(nowMicros, storedOrder, ActionType.PLACE, StorageType.SHELF);
+    }
+
+    private void placeInSlot(Order order, StorageType storageType, SlotStorage storage, long nowMicros) {
+        StoredOrder storedOrder = new StoredOrder(order, storageType, nowMicros);
+        storedOrder.handle = orderIds.intern(order.getId());
+        storage.add(storedOrder);
+        expiryHeaps[storageType.ordinal()].add(storedOrder);
+        index(storedOrder);
+        appendLedger(nowMicros, storedOrder, ActionType.PLACE, storageType);
+    }
+
+    @Override
     public void pickupOrder(String orderId) {
         if (orderId == null) {
             return;
         }
+        int handle = orderIds.handleOf(orderId);
+        if (handle < 0) {
+            return;
+        }
 
-        lock.lock();
-        try {
-            StoredOrder storedOrder = allOrders.get(orderId);
-            if (storedOrder == null) {
+        boolean timed = isTimed(orderId);
+        long waitNanos = 0;
+        long holdNanos = 0;
+        for (int retries = 0; ; retries++) {
+            StoredOrder storedOrder = lookup(handle);
+            // The handle may have been released and handed to another order since it was read.
+            if (storedOrder == null || !storedOrder.getOrder().getId().equals(orderId)) {
+                if (timed && retries > 0) {
+                    pickupLatency.record(waitNanos, holdNanos, retries);
+                }
                 return;
             }
 
-            long nowMicros = nowMicros();
             StorageType storageType = storedOrder.getStorageType();
+            ReentrantLock lock = lockFor(storageType);
+            waitNanos += lock(lock, timed);
+            long acquiredNanos = nanoTimeIf(timed);
+            boolean pickedUp = false;
+            try {
+                // The order may have been moved or removed while we were waiting for the lock.
+                if (lookup(handle) == storedOrder && storedOrder.getStorageType() == storageType) {
+                    pickupLocked(storedOrder, storageType, nowMicros());
+                    pickedUp = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            holdNanos += nanoTimeIf(timed) - acquiredNanos;
+            if (pickedUp) {
+                if (timed) {
+                    pickupLatency.record(waitNanos, holdNanos, retries);
+                }
+                syncJournal();
+                return;
+            }
+        }
+    }
 
-            storedOrder.updateFreshness(nowMicros);
-            boolean expired = !storedOrder.isActive();
+    // Picks up a batch of orders grouped by the storage they are in: each group takes that
+    // storage's lock once and reads the clock once. The ledger is the same as calling pickupOrder
+    // for the heater orders, then the cooler, freezer and shelf orders, each group in batch order.
+    // Orders moved by another thread in the meantime are picked up one at a time at the end.
+    // Unknown ids are skipped.
+    public void pickupOrders(Collection<String> orderIds) {
+        if (orderIds == null) {
+            throw new IllegalArgumentException("orderIds cannot be null");
+        }
+        if (orderIds.isEmpty()) {
+            return;
+        }
 
-            if (storageType == StorageType.SHELF) {
-                shelf.removeOrder(orderId);
-            } else {
-                removeFromListById(storageList(storageType), orderId);
+        // Resolved up front; null for ids not in the kitchen, which a pickup would ignore anyway.
+        List<StoredOrder> resolved = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            int handle = (orderId == null) ? -1 : this.orderIds.handleOf(orderId);
+            StoredOrder storedOrder = (handle < 0) ? null : lookup(handle);
+            boolean found = storedOrder != null && storedOrder.getOrder().getId().equals(orderId);
+            resolved.add(found ? storedOrder : null);
+        }
+        // Runs of consecutive orders in the same storage share its lock and one clock read. An
+        // order moved or removed since it was resolved ends the run and is picked up on its own,
+        // so the batch still leaves the ledger in caller order.
+        int next = 0;
+        while (next < resolved.size()) {
+            if (resolved.get(next) == null) {
+                next++;
+                continue;
             }
+            StorageType storageType = resolved.get(next).getStorageType();
+            StoredOrder stale = null;
+            ReentrantLock lock = lockFor(storageType);
+            lock.lock();
+            try {
+                long nowMicros = nowMicros();
+                for (; next < resolved.size(); next++) {
+                    StoredOrder storedOrder = resolved.get(next);
+                    if (storedOrder == null) {
+                        continue;
+                    }
+                    if (storedOrder.getStorageType() != storageType) {
+                        break;
+                    }
+                    if (lookup(storedOrder.handle) != storedOrder) {
+                        stale = storedOrder;
+                        next++;
+                        break;
+                    }
+                    pickupLocked(storedOrder, storageType, nowMicros);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (stale != null) {
+                pickupOrder(stale.getOrder().getId());
+            }
+        }
+        syncJournal();
+    }
 
-            allOrders.remove(orderId);
+    private void pickupLocked(StoredOrder storedOrder, StorageType storageType, long nowMicros) {
+        boolean expired = storedOrder.isExpired(nowMicros);
 
-            if (expired) {
-                ledger.add(new Action(nowMicros, orderId, "discard", location(storageType)));
-            } else {
-                ledger.add(new Action(nowMicros, orderId, "pickup", location(storageType)));
+        if (storageType == StorageType.SHELF) {
+            shelf.removeOrder(storedOrder);
+        } else {
+            removeFromSlot(slotStorage(storageType), storedOrder);
+            expiryHeaps[storageType.ordinal()].remove(storedOrder);
+        }
+
+        unindex(storedOrder);
+
+        if (expired) {
+            appendLedger(nowMicros, storedOrder, ActionType.DISCARD, storageType);
+        } else {
+            appendLedger(nowMicros, storedOrder, ActionType.PICKUP, storageType);
+        }
+        // Only once the departure is logged, so a write-ahead log never shows the handle's next
+        // order before it.
+        orderIds.release(storedOrder.handle);
+    }
+
+    @Override
+    public int reapExpired() {
+        int reaped = reapExpiredLocked();
+        if (reaped > 0) {
+            syncJournal();
+        }
+        return reaped;
+    }
+
+    private int reapExpiredLocked() {
+        lockOverflow(StorageType.FREEZER);
+        try {
+            long nowMicros = nowMicros();
+            int reaped = 0;
+            while (true) {
+                StorageType storageType = null;
+                StoredOrder next = null;
+                for (StorageType candidateStorage : StorageType.values()) {
+                    StoredOrder head = (candidateStorage == StorageType.SHELF)
+                            ? shelf.peekNextToExpire()
+                            : expiryHeaps[candidateStorage.ordinal()].peek();
+                    if (head != null && head.isExpired(nowMicros)
+                            && (next == null || head.getExpiresAtMicros() < next.getExpiresAtMicros())) {
+                        next = head;
+                        storageType = candidateStorage;
+                    }
+                }
+                if (next == null) {
+                    return reaped;
+                }
+
+                if (storageType == StorageType.SHELF) {
+                    shelf.removeOrder(next);
+                } else {
+                    removeFromSlot(slotStorage(storageType), next);
+                    expiryHeaps[storageType.ordinal()].remove(next);
+                }
+                unindex(next);
+                // Logged at the reap, not at the expiry instant, so the ledger stays in time order
+                // behind entries appended since the order expired.
+                appendLedger(nowMicros, next, ActionType.DISCARD, storageType);
+                orderIds.release(next.handle);
+                reaped++;
             }
         } finally {
-            lock.unlock();
+            unlockOverflow(StorageType.FREEZER);
         }
     }
 
-    private void discardFromShelf() {
-        long nowMicros = nowMicros();
-        StoredOrder discarded = shelf.pollNextToExpire();
+    private void discardFromShelf(long nowMicros) {
+        // Expired shelf orders go first and are logged like any other discard; otherwise the shelf
+        // would drop them unlogged while choosing a victim. If any went, a fresh order need not.
+        boolean freed = false;
+        StoredOrder expired;
+        while ((expired = shelf.peekNextToExpire()) != null && expired.isExpired(nowMicros)) {
+            shelf.removeOrder(expired);
+            unindex(expired);
+            appendLedger(nowMicros, expired, ActionType.DISCARD, StorageType.SHELF);
+            orderIds.release(expired.handle);
+            freed = true;
+        }
+        if (freed) {
+            return;
+        }
+
+        StoredOrder discarded = shelf.pollDiscardVictim(nowMicros);
         if (discarded == null) {
             return;
         }
 
-        allOrders.remove(discarded.getOrder().getId());
-        ledger.add(new Action(nowMicros, discarded.getOrder().getId(), "discard", location(StorageType.SHELF)));
+        unindex(discarded);
+        appendLedger(nowMicros, discarded, ActionType.DISCARD, StorageType.SHELF);
+        orderIds.release(discarded.handle);
     }
 
-    private boolean tryMoveShelfOrder(StorageType targetStorage) {
+    private boolean tryMoveShelfOrder(StorageType targetStorage, long nowMicros) {
         if (targetStorage == null) {
             return false;
         }
@@ -153,55 +614,33 @@ public class Kitchen {
             return false;
         }
 
-        List<StoredOrder> targetList = storageList(targetStorage);
-        if (targetList.size() >= IDEAL_CAPACITY) {
+        SlotStorage target = slotStorage(targetStorage);
+        if (target.isFull()) {
             return false;
         }
 
-        long nowMicros = nowMicros();
-
-        StoredOrder candidate = null;
-        for (StoredOrder storedOrder : allOrders.values()) {
-            if (!storedOrder.isActive()) {
-                continue;
-            }
-            if (storedOrder.getStorageType() != StorageType.SHELF) {
-                continue;
-            }
-            if (!targetStorage.isIdealFor(storedOrder.getOrder())) {
-                continue;
-            }
-
-            storedOrder.updateFreshness(nowMicros);
-            if (!storedOrder.isActive()) {
-                continue;
-            }
-
-            if (candidate == null || storedOrder.getRemainingFreshnessMicros() < candidate.getRemainingFreshnessMicros()) {
-                candidate = storedOrder;
-            }
-        }
-
+        StoredOrder candidate = shelf.peekMostUrgent(idealTemperatureFor(targetStorage), nowMicros);
         if (candidate == null) {
             return false;
         }
 
         Order order = candidate.getOrder();
-        String orderId = order.getId();
 
-        shelf.removeOrder(orderId);
+        shelf.removeOrder(candidate);
 
         StoredOrder moved = new StoredOrder(
                 order,
                 targetStorage,
                 candidate.getPlacedTimeMicros(),
                 nowMicros,
-                candidate.getRemainingFreshnessMicros()
+                candidate.getRemainingFreshnessMicros(nowMicros)
         );
+        moved.handle = candidate.handle;
 
-        targetList.add(moved);
-        allOrders.put(orderId, moved);
-        ledger.add(new Action(nowMicros, orderId, "move", location(targetStorage)));
+        target.add(moved);
+        expiryHeaps[targetStorage.ordinal()].add(moved);
+        index(moved);
+        appendLedger(nowMicros, moved, ActionType.MOVE, targetStorage);
         return true;
     }
 
@@ -218,7 +657,20 @@ public class Kitchen {
         return StorageType.FREEZER;
     }
 
-    private List<StoredOrder> storageList(StorageType storageType) {
+    private static Order.Temperature idealTemperatureFor(StorageType storageType) {
+        if (storageType == StorageType.HEATER) {
+            return Order.Temperature.HOT;
+        }
+        if (storageType == StorageType.COOLER) {
+            return Order.Temperature.COLD;
+        }
+        if (storageType == StorageType.FREEZER) {
+            return Order.Temperature.FROZEN;
+        }
+        return Order.Temperature.ROOM;
+    }
+
+    private SlotStorage slotStorage(StorageType storageType) {
         if (storageType == StorageType.HEATER) {
             return heater;
         }
@@ -228,21 +680,310 @@ public class Kitchen {
         if (storageType == StorageType.FREEZER) {
             return freezer;
         }
-        throw new IllegalArgumentException("No list for storageType=" + storageType);
+        throw new IllegalArgumentException("No slot storage for storageType=" + storageType);
     }
 
-    private static void removeFromListById(List<StoredOrder> list, String orderId) {
-        for (Iterator<StoredOrder> it = list.iterator(); it.hasNext(); ) {
-            StoredOrder so = it.next();
-            if (so.getOrder().getId().equals(orderId)) {
-                it.remove();
-                so.deactivate();
-                return;
+    private static void removeFromSlot(SlotStorage storage, StoredOrder storedOrder) {
+        if (storage.remove(storedOrder)) {
+            storedOrder.deactivate();
+        }
+    }
+
+    private IndexStripe stripe(int handle) {
+        return index[handle & (INDEX_STRIPES - 1)];
+    }
+
+    private StoredOrder lookup(int handle) {
+        IndexStripe stripe = stripe(handle);
+        stripe.lock.lock();
+        try {
+            return stripe.orders.get(handle);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void index(StoredOrder storedOrder) {
+        IndexStripe stripe = stripe(storedOrder.handle);
+        stripe.lock.lock();
+        try {
+            stripe.orders.put(storedOrder.handle, storedOrder);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void unindex(StoredOrder storedOrder) {
+        IndexStripe stripe = stripe(storedOrder.handle);
+        stripe.lock.lock();
+        try {
+            stripe.orders.remove(storedOrder.handle, storedOrder);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // Refuses an order the write-ahead log could not record, before it changes any kitchen state.
+    private void checkRecordable(Order order) {
+        ledger.checkOrderId(order.getId());
+        if (journal != null) {
+            WriteAheadLog.checkPlaceable(order);
+        }
+    }
+
+    private void appendLedger(long nowMicros, StoredOrder storedOrder, ActionType action, StorageType target) {
+        ledgerLock.lock();
+        try {
+            // Log first: if the log refuses the record, the ledger does not get an entry the log lacks.
+            if (journal != null) {
+                journal.append(nowMicros, storedOrder, action, target);
+            }
+            ledger.append(nowMicros, storedOrder.getOrder().getId(), action, target);
+        } finally {
+            ledgerLock.unlock();
+        }
+        metrics.record(action, target, storedOrder.getOrder());
+    }
+
+    private void syncJournal() {
+        if (journal != null) {
+            journal.sync();
+        }
+    }
+
+    // Writes a snapshot of every live order next to the write-ahead log and deletes the log files it
+    // covers, so recovery only replays what comes after it. All locks are held while the order
+    // references are copied, the ledger lock while the ledger is flushed, and none while writing.
+    public void snapshot() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("kitchen has no write-ahead log");
+        }
+        synchronized (snapshotLock) {
+            WriteAheadLog.Snapshot snapshot;
+            lockAll();
+            try {
+                snapshot = captureLocked();
+            } finally {
+                unlockAll();
             }
+            ledgerLock.lock();
+            try {
+                ledger.flush();
+            } finally {
+                ledgerLock.unlock();
+            }
+            journal.writeSnapshot(snapshot);
         }
     }
 
+    // Flushes and closes the write-ahead log; the kitchen cannot change state afterwards.
+    public void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private WriteAheadLog.Snapshot captureLocked() {
+        WriteAheadLog.Snapshot snapshot = new WriteAheadLog.Snapshot(ledger.size());
+        for (StorageType storageType : StorageType.values()) {
+            if (storageType == StorageType.SHELF) {
+                continue;
+            }
+            SlotStorage storage = slotStorage(storageType);
+            for (int slot = 0; slot < storage.capacity(); slot++) {
+                StoredOrder storedOrder = storage.get(slot);
+                if (storedOrder != null) {
+                    snapshot.add(storedOrder, stripe(storedOrder.handle).orders.get(storedOrder.handle) == storedOrder, true);
+                }
+            }
+        }
+        shelf.forEachInPlacementOrder(storedOrder ->
+                snapshot.add(storedOrder, stripe(storedOrder.handle).orders.get(storedOrder.handle) == storedOrder, true));
+        return snapshot;
+    }
+
+    // Rebuilds the kitchen from a write-ahead log during construction, before any other thread can
+    // see it. Logged events are applied as recorded rather than re-decided, so moves and discards
+    // land exactly where they did.
+    private final class Recovery implements WriteAheadLog.Replay {
+        @Override
+        public void restore(StoredOrder storedOrder, boolean indexed, boolean stored) {
+            // Each snapshot order holds a reference to its handle, as it did when it was placed.
+            if (!orderIds.internAt(storedOrder.handle, storedOrder.getOrder().getId())) {
+                throw new IllegalStateException("Snapshot gives " + storedOrder.getOrder().getId() + " handle "
+                        + storedOrder.handle + " but the id table disagrees");
+            }
+            StorageType storageType = storedOrder.getStorageType();
+            if (stored) {
+                if (storageType == StorageType.SHELF) {
+                    shelf.addOrder(storedOrder);
+                } else {
+                    slotStorage(storageType).add(storedOrder);
+                    expiryHeaps[storageType.ordinal()].add(storedOrder);
+                }
+            }
+            if (indexed) {
+                stripe(storedOrder.handle).orders.put(storedOrder.handle, storedOrder);
+            }
+            metrics.restore(storageType);
+        }
+
+        @Override
+        public void apply(long lsn, long timestampMicros, int handle, ActionType action, StorageType target, Order order) {
+            StoredOrder storedOrder;
+            if (action == ActionType.PLACE) {
+                if (!orderIds.internAt(handle, order.getId())) {
+                    throw new IllegalStateException("Log entry " + lsn + " places " + order.getId()
+                            + " under handle " + handle + " but the id table disagrees");
+                }
+                storedOrder = new StoredOrder(order, target, timestampMicros);
+                storedOrder.handle = handle;
+                if (target == StorageType.SHELF) {
+                    shelf.addOrder(storedOrder);
+                } else {
+                    slotStorage(target).add(storedOrder);
+                    expiryHeaps[target.ordinal()].add(storedOrder);
+                }
+                stripe(handle).orders.put(handle, storedOrder);
+            } else {
+                StoredOrder current = stripe(handle).orders.get(handle);
+                if (current == null) {
+                    throw new IllegalStateException("Log entry " + lsn + " " + action.label() + "s order handle "
+                            + handle + ", which is not in the kitchen");
+                }
+                StorageType storageType = current.getStorageType();
+                if (storageType == StorageType.SHELF) {
+                    shelf.removeOrder(current);
+                } else {
+                    removeFromSlot(slotStorage(storageType), current);
+                    expiryHeaps[storageType.ordinal()].remove(current);
+                }
+                if (action == ActionType.MOVE) {
+                    storedOrder = new StoredOrder(current.getOrder(), target, current.getPlacedTimeMicros(),
+                            timestampMicros, current.getRemainingFreshnessMicros(timestampMicros));
+                    storedOrder.handle = handle;
+                    slotStorage(target).add(storedOrder);
+                    expiryHeaps[target.ordinal()].add(storedOrder);
+                    stripe(handle).orders.put(handle, storedOrder);
+                } else {
+                    storedOrder = current;
+                    stripe(handle).orders.remove(handle, current);
+                }
+            }
+
+            if (lsn > ledger.size()) {
+                throw new IllegalStateException("Ledger has " + ledger.size() + " entries but the log continues from "
+                        + lsn + "; recover with the ledger the kitchen was writing");
+            }
+            if (lsn == ledger.size()) {
+                ledger.append(timestampMicros, storedOrder.getOrder().getId(), action, target);
+            }
+            if (action == ActionType.PICKUP || action == ActionType.DISCARD) {
+                orderIds.release(handle);
+            }
+            metrics.record(action, target, storedOrder.getOrder());
+        }
+
+        @Override
+        public void finish(long endLsn, boolean logExisted) {
+            if (!logExisted && ledger.size() > 0) {
+                throw new IllegalStateException("Ledger already has " + ledger.size()
+                        + " entries but the write-ahead log is empty; start both from empty directories");
+            }
+            if (ledger.size() < endLsn) {
+                throw new IllegalStateException("Ledger has " + ledger.size() + " entries but the write-ahead log reaches "
+                        + endLsn + "; recover with the ledger the kitchen was writing");
+            }
+            // Entries past the end of the log were never made durable by it, and their operations never returned.
+            if (ledger.size() > endLsn) {
+                ledger.truncate(endLsn);
+            }
+        }
+    }
+
+    private boolean isTimed(String orderId) {
+        return (orderId.hashCode() & latencySampleMask) == 0;
+    }
+
+    // Takes the lock and, for a timed call, returns how long the caller waited for it: 0, without
+    // reading the clock, when the lock was free.
+    private static long lock(ReentrantLock lock, boolean timed) {
+        if (!timed) {
+            lock.lock();
+            return 0;
+        }
+        if (lock.tryLock()) {
+            return 0;
+        }
+        long requestedNanos = System.nanoTime();
+        lock.lock();
+        return System.nanoTime() - requestedNanos;
+    }
+
+    private static long nanoTimeIf(boolean timed) {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    private ReentrantLock lockFor(StorageType storageType) {
+        return storageLocks[storageType.ordinal()];
+    }
+
+    // The overflow path may place on the shelf, move shelf orders into the heater or cooler and
+    // discard from the shelf, so it holds all of those plus the ideal storage.
+    private void lockOverflow(StorageType idealStorage) {
+        if (lockingMode == LockingMode.GLOBAL) {
+            lockFor(StorageType.SHELF).lock();
+            return;
+        }
+        lockFor(StorageType.HEATER).lock();
+        lockFor(StorageType.COOLER).lock();
+        if (idealStorage == StorageType.FREEZER) {
+            lockFor(StorageType.FREEZER).lock();
+        }
+        lockFor(StorageType.SHELF).lock();
+    }
+
+    private void unlockOverflow(StorageType idealStorage) {
+        if (lockingMode == LockingMode.GLOBAL) {
+            lockFor(StorageType.SHELF).unlock();
+            return;
+        }
+        lockFor(StorageType.SHELF).unlock();
+        if (idealStorage == StorageType.FREEZER) {
+            lockFor(StorageType.FREEZER).unlock();
+        }
+        lockFor(StorageType.COOLER).unlock();
+        lockFor(StorageType.HEATER).unlock();
+    }
+
+    // Every storage lock plus the index and ledger locks, in lock order, for snapshots.
+    private void lockAll() {
+        lockOverflow(StorageType.FREEZER);
+        for (IndexStripe stripe : index) {
+            stripe.lock.lock();
+        }
+        ledgerLock.lock();
+    }
+
+    private void unlockAll() {
+        ledgerLock.unlock();
+        for (int i = index.length - 1; i >= 0; i--) {
+            index[i].lock.unlock();
+        }
+        unlockOverflow(StorageType.FREEZER);
+    }
+
     private long nowMicros() {
         return nowMicros.getAsLong();
     }
+
+    private static final class IndexStripe {
+        private final ReentrantLock lock;
+        private final HandleTable<StoredOrder> orders;
+
+        private IndexStripe(ReentrantLock lock, int expectedSize) {
+            this.lock = lock;
+            this.orders = new HandleTable<>(expectedSize);
+        }
+    }
 }
@@ -0,0 +1,411 @@
+package com.kitchen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+// Spreads orders over independent Kitchen shards by hashing the order id, so placements and
+// pickups of different orders rarely share a lock, map or capacity. The storage capacities are
+// for the whole cluster and split as evenly as possible over the shards, so a cluster never holds
+// more orders than one kitchen with the same settings would. Every shard needs at least one slot
+// of each storage the cluster has, so a capacity smaller than the shard count is refused.
+//
+// The shard ledgers are merged into one timestamp-ordered ledger on read (ties broken by shard
+// index, then by position in the shard ledger). That needs every shard ledger in timestamp order,
+// so shards use GLOBAL locking (a STRIPED fast path reads the clock before taking the ledger lock).
+// A shard can still log an entry after another shard has logged a later one, so the merge only
+// goes as far as a watermark: a clock reading taken before waiting for every shard's operations
+// in flight, which no entry logged afterwards can precede. The shard each merged position came
+// from is recorded as the merge advances, with the shard offsets checkpointed every
+// CHECKPOINT_INTERVAL positions, so a read starting anywhere costs at most one interval of
+// bookkeeping plus the range, and positions never change once read. The ledger size is the
+// number of positions merged so far.
+public class KitchenCluster implements KitchenService {
+    // Shard choices are recorded in a byte each.
+    public static final int MAX_SHARDS = 256;
+
+    private static final int MERGE_CHUNK = 256;
+    private static final int CHECKPOINT_INTERVAL = 4096;
+    private static final int CHOICE_CHUNK = 1 << 16;
+    private static final Kitchen.LedgerVisitor SKIP = (timestampMicros, orderId, action, target) -> { };
+
+    private final Kitchen[] shards;
+    private final LongSupplier nowMicros;
+    private final KitchenMetricsMBean metrics = new ClusterMetrics();
+    private final List<byte[]> choices = new ArrayList<>();
+    private final List<long[]> checkpoints = new ArrayList<>();
+    private final MergeCursor frontier;
+
+    public KitchenCluster(int shardCount, LongSupplier nowMicros) {
+        this(nowMicros, columnarLedgers(shardCount));
+    }
+
+    public KitchenCluster(LongSupplier nowMicros, List<Ledger> shardLedgers) {
+        this(nowMicros, shardLedgers, Kitchen.DEFAULT_IDEAL_CAPACITY, Kitchen.DEFAULT_SHELF_CAPACITY);
+    }
+
+    // Capacities are for the whole cluster: shard i gets capacity / shards, plus one while
+    // i < capacity % shards.
+    public KitchenCluster(LongSupplier nowMicros, List<Ledger> shardLedgers, int idealCapacity, int shelfCapacity) {
+        this(nowMicros, shardLedgers, idealCapacity, shelfCapacity, DiscardPolicy.SOONEST_EXPIRY);
+    }
+
+    public KitchenCluster(
+            LongSupplier nowMicros,
+            List<Ledger> shardLedgers,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy
+    ) {
+        if (shardLedgers == null || shardLedgers.isEmpty()) {
+            throw new IllegalArgumentException("shardLedgers cannot be null or empty");
+        }
+        if (shardLedgers.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("at most " + MAX_SHARDS + " shards (got " + shardLedgers.size() + ")");
+        }
+        if (idealCapacity < 0 || shelfCapacity < 0) {
+            throw new IllegalArgumentException("capacities must be >= 0");
+        }
+        checkShareable("idealCapacity", idealCapacity, shardLedgers.size());
+        checkShareable("shelfCapacity", shelfCapacity, shardLedgers.size());
+        this.nowMicros = nowMicros;
+        this.shards = new Kitchen[shardLedgers.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Kitchen(nowMicros, Kitchen.LockingMode.GLOBAL, shardLedgers.get(i),
+                    shareOf(idealCapacity, i), shareOf(shelfCapacity, i), discardPolicy);
+        }
+        this.frontier = new MergeCursor();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    Kitchen shard(int index) {
+        return shards[index];
+    }
+
+    private static void checkShareable(String name, int capacity, int shardCount) {
+        if (capacity > 0 && capacity < shardCount) {
+            throw new IllegalArgumentException(name + " " + capacity + " leaves some of the " + shardCount
+                    + " shards without room; use at least one per shard");
+        }
+    }
+
+    private int shareOf(int capacity, int shard) {
+        return capacity / shards.length + (shard < capacity % shards.length ? 1 : 0);
+    }
+
+    int shardIndexFor(String orderId) {
+        int h = orderId.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.length);
+    }
+
+    @Override
+    public void placeOrder(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("order cannot be null");
+        }
+        shards[shardIndexFor(order.getId())].placeOrder(order);
+    }
+
+    @Override
+    public void pickupOrder(String orderId) {
+        if (orderId == null) {
+            return;
+        }
+        shards[shardIndexFor(orderId)].pickupOrder(orderId);
+    }
+
+    // Each shard logs its discards at the time of its own reap, so its ledger stays in order.
+    @Override
+    public int reapExpired() {
+        int reaped = 0;
+        for (Kitchen shard : shards) {
+            reaped += shard.reapExpired();
+        }
+        return reaped;
+    }
+
+    // Merges as far as the watermark allows, so visitLedger(0, getLedgerSize()) visits every entry.
+    @Override
+    public synchronized long getLedgerSize() {
+        frontier.advanceTo(Long.MAX_VALUE, SKIP);
+        return frontier.position;
+    }
+
+    // Positions are in merged order. Positions already merged are replayed from the nearest
+    // checkpoint; the rest extend the merge.
+    @Override
+    public synchronized void visitLedger(long fromIndex, long toIndex, Kitchen.LedgerVisitor visitor) {
+        if (fromIndex < 0 || toIndex < fromIndex) {
+            throw new IndexOutOfBoundsException("range [" + fromIndex + ", " + toIndex + ")");
+        }
+        if (fromIndex < frontier.position) {
+            long replayEnd = Math.min(toIndex, frontier.position);
+            replay(fromIndex, replayEnd, visitor);
+            fromIndex = replayEnd;
+        }
+        if (fromIndex < toIndex) {
+            frontier.advanceTo(fromIndex, SKIP);
+            if (frontier.position == fromIndex) {
+                frontier.advanceTo(toIndex, visitor);
+            }
+        }
+    }
+
+    @Override
+    public List<Action> getLedgerSnapshot() {
+        List<Action> actions = new ArrayList<>();
+        visitLedger(0, Long.MAX_VALUE, (timestampMicros, orderId, action, target) ->
+                actions.add(new Action(timestampMicros, orderId, action.label(), target.location())));
+        return actions;
+    }
+
+    // Visits merged positions [fromIndex, toIndex), all below the frontier, in the recorded order.
+    private void replay(long fromIndex, long toIndex, Kitchen.LedgerVisitor visitor) {
+        long position = (fromIndex / CHECKPOINT_INTERVAL) * CHECKPOINT_INTERVAL;
+        long[] offsets = checkpoints.get((int) (fromIndex / CHECKPOINT_INTERVAL)).clone();
+        for (; position < fromIndex; position++) {
+            offsets[choice(position)]++;
+        }
+        ShardReader[] readers = new ShardReader[shards.length];
+        for (; position < toIndex; position++) {
+            int shard = choice(position);
+            ShardReader reader = readers[shard];
+            if (reader == null) {
+                reader = new ShardReader(shard, offsets[shard]);
+                readers[shard] = reader;
+            }
+            reader.fill();
+            int i = reader.head++;
+            visitor.visit(reader.timestamps[i], reader.orderIds[i], reader.actions[i], reader.targets[i]);
+        }
+    }
+
+    private int choice(long position) {
+        return choices.get((int) (position / CHOICE_CHUNK))[(int) (position % CHOICE_CHUNK)] & 0xFF;
+    }
+
+    private void recordChoice(long position, int shard, ShardReader[] readers) {
+        if (position % CHECKPOINT_INTERVAL == 0) {
+            long[] offsets = new long[shards.length];
+            for (ShardReader reader : readers) {
+                offsets[reader.shard] = reader.nextIndex - reader.buffered + reader.head;
+            }
+            checkpoints.add(offsets);
+        }
+        if (position % CHOICE_CHUNK == 0) {
+            choices.add(new byte[CHOICE_CHUNK]);
+        }
+        choices.get((int) (position / CHOICE_CHUNK))[(int) (position % CHOICE_CHUNK)] = (byte) shard;
+    }
+
+    // Sums the shard counters on every read.
+    @Override
+    public KitchenMetricsMBean getMetrics() {
+        return metrics;
+    }
+
+    // A copy summed over the shards.
+    @Override
+    public LockLatency getPlaceLatency() {
+        LockLatency total = new LockLatency();
+        for (Kitchen shard : shards) {
+            shard.getPlaceLatency().addTo(total);
+        }
+        return total;
+    }
+
+    @Override
+    public LockLatency getPickupLatency() {
+        LockLatency total = new LockLatency();
+        for (Kitchen shard : shards) {
+            shard.getPickupLatency().addTo(total);
+        }
+        return total;
+    }
+
+    private static List<Ledger> columnarLedgers(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be > 0");
+        }
+        List<Ledger> ledgers = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            ledgers.add(new ColumnarLedger());
+        }
+        return ledgers;
+    }
+
+    private final class ClusterMetrics implements KitchenMetricsMBean {
+        private long sum(ToLongFunction<KitchenMetrics> counter) {
+            long total = 0;
+            for (Kitchen shard : shards) {
+                total += counter.applyAsLong(shard.getMetrics());
+            }
+            return total;
+        }
+
+        @Override
+        public long getHeaterOccupancy() {
+            return sum(KitchenMetrics::getHeaterOccupancy);
+        }
+
+        @Override
+        public long getCoolerOccupancy() {
+            return sum(KitchenMetrics::getCoolerOccupancy);
+        }
+
+        @Override
+        public long getFreezerOccupancy() {
+            return sum(KitchenMetrics::getFreezerOccupancy);
+        }
+
+        @Override
+        public long getShelfOccupancy() {
+            return sum(KitchenMetrics::getShelfOccupancy);
+        }
+
+        @Override
+        public int getIdealCapacity() {
+            return (int) sum(KitchenMetrics::getIdealCapacity);
+        }
+
+        @Override
+        public int getShelfCapacity() {
+            return (int) sum(KitchenMetrics::getShelfCapacity);
+        }
+
+        @Override
+        public long getPlaced() {
+            return sum(KitchenMetrics::getPlaced);
+        }
+
+        @Override
+        public long getMoved() {
+            return sum(KitchenMetrics::getMoved);
+        }
+
+        @Override
+        public long getPickedUp() {
+            return sum(KitchenMetrics::getPickedUp);
+        }
+
+        @Override
+        public long getDiscarded() {
+            return sum(KitchenMetrics::getDiscarded);
+        }
+
+        @Override
+        public long getShelfOverflows() {
+            return sum(KitchenMetrics::getShelfOverflows);
+        }
+
+        @Override
+        public double getShelfOverflowRate() {
+            return KitchenMetrics.rate(getShelfOverflows(), getPlaced());
+        }
+
+        @Override
+        public double getWasteRate() {
+            return KitchenMetrics.rate(getDiscarded(), getPlaced());
+        }
+    }
+
+    // Buffered read position in one shard ledger.
+    private final class ShardReader implements Comparable<ShardReader> {
+        private final int shard;
+        private final long[] timestamps = new long[MERGE_CHUNK];
+        private final String[] orderIds = new String[MERGE_CHUNK];
+        private final ActionType[] actions = new ActionType[MERGE_CHUNK];
+        private final StorageType[] targets = new StorageType[MERGE_CHUNK];
+        private long nextIndex;
+        private int buffered;
+        private int head;
+        private boolean queued;
+
+        private ShardReader(int shard, long nextIndex) {
+            this.shard = shard;
+            this.nextIndex = nextIndex;
+        }
+
+        // Makes sure an entry is at the head; false once the shard ledger is exhausted.
+        private boolean fill() {
+            if (head < buffered) {
+                return true;
+            }
+            long end = Math.min(shards[shard].getLedgerSize(), nextIndex + MERGE_CHUNK);
+            head = 0;
+            buffered = 0;
+            if (end <= nextIndex) {
+                return false;
+            }
+            shards[shard].visitLedger(nextIndex, end, (timestampMicros, orderId, action, target) -> {
+                timestamps[buffered] = timestampMicros;
+                orderIds[buffered] = orderId;
+                actions[buffered] = action;
+                targets[buffered] = target;
+                buffered++;
+            });
+            nextIndex = end;
+            return buffered > 0;
+        }
+
+        @Override
+        public int compareTo(ShardReader other) {
+            int byTime = Long.compare(timestamps[head], other.timestamps[other.head]);
+            return byTime != 0 ? byTime : Integer.compare(shard, other.shard);
+        }
+    }
+
+    // The merge frontier: every position below it has its shard recorded.
+    private final class MergeCursor {
+        private final ShardReader[] readers = new ShardReader[shards.length];
+        private final PriorityQueue<ShardReader> heads = new PriorityQueue<>();
+        private long position;
+
+        private MergeCursor() {
+            for (int i = 0; i < shards.length; i++) {
+                readers[i] = new ShardReader(i, 0);
+            }
+        }
+
+        // Visits merged entries until position reaches untilPosition, every shard is exhausted or
+        // the next entry is past the watermark.
+        private void advanceTo(long untilPosition, Kitchen.LedgerVisitor visitor) {
+            if (position >= untilPosition) {
+                return;
+            }
+            long watermark = nowMicros.getAsLong();
+            for (Kitchen shard : shards) {
+                shard.awaitLogged();
+            }
+            // Shards that ran dry last time may have grown since.
+            for (ShardReader reader : readers) {
+                if (!reader.queued && reader.fill()) {
+                    reader.queued = true;
+                    heads.add(reader);
+                }
+            }
+            while (position < untilPosition) {
+                ShardReader reader = heads.peek();
+                if (reader == null || reader.timestamps[reader.head] > watermark) {
+                    return;
+                }
+                heads.poll();
+                recordChoice(position, reader.shard, readers);
+                int i = reader.head++;
+                visitor.visit(reader.timestamps[i], reader.orderIds[i], reader.actions[i], reader.targets[i]);
+                position++;
+                if (reader.fill()) {
+                    heads.add(reader);
+                } else {
+                    reader.queued = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.kitchen;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Counters of one kitchen, updated as each ledger entry is appended. Every counter is a striped
+// LongAdder, so concurrent operations do not contend on them, and reading (e.g. from JConsole)
+// only sums the adders: it never takes a kitchen lock or touches the ledger.
+public final class KitchenMetrics implements KitchenMetricsMBean {
+    public static final String DEFAULT_OBJECT_NAME = "com.kitchen:type=Kitchen";
+
+    private final int idealCapacity;
+    private final int shelfCapacity;
+    private final LongAdder[] occupancy = new LongAdder[StorageType.values().length];
+    private final LongAdder placed = new LongAdder();
+    private final LongAdder moved = new LongAdder();
+    private final LongAdder pickedUp = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder shelfOverflows = new LongAdder();
+
+    KitchenMetrics(int idealCapacity, int shelfCapacity) {
+        this.idealCapacity = idealCapacity;
+        this.shelfCapacity = shelfCapacity;
+        for (int i = 0; i < occupancy.length; i++) {
+            occupancy[i] = new LongAdder();
+        }
+    }
+
+    // An order brought back by recovery: it takes up space but is not a new placement.
+    void restore(StorageType storageType) {
+        occupancy[storageType.ordinal()].increment();
+    }
+
+    // Moves only ever take an order off the shelf.
+    void record(ActionType action, StorageType target, Order order) {
+        switch (action) {
+            case PLACE:
+                placed.increment();
+                occupancy[target.ordinal()].increment();
+                if (target == StorageType.SHELF && !StorageType.SHELF.isIdealFor(order)) {
+                    shelfOverflows.increment();
+                }
+                break;
+            case MOVE:
+                moved.increment();
+                occupancy[StorageType.SHELF.ordinal()].decrement();
+                occupancy[target.ordinal()].increment();
+                break;
+            case PICKUP:
+                pickedUp.increment();
+                occupancy[target.ordinal()].decrement();
+                break;
+            case DISCARD:
+                discarded.increment();
+                occupancy[target.ordinal()].decrement();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+
+    // Registers the bean with the platform MBean server under name (e.g. DEFAULT_OBJECT_NAME),
+    // replacing any bean already registered there.
+    public static ObjectName register(KitchenMetricsMBean metrics, String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(new StandardMBean(metrics, KitchenMetricsMBean.class), objectName);
+        return objectName;
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ignored) {
+            // Already gone.
+        }
+    }
+
+    @Override
+    public long getHeaterOccupancy() {
+        return occupancy[StorageType.HEATER.ordinal()].sum();
+    }
+
+    @Override
+    public long getCoolerOccupancy() {
+        return occupancy[StorageType.COOLER.ordinal()].sum();
+    }
+
+    @Override
+    public long getFreezerOccupancy() {
+        return occupancy[StorageType.FREEZER.ordinal()].sum();
+    }
+
+    @Override
+    public long getShelfOccupancy() {
+        return occupancy[StorageType.SHELF.ordinal()].sum();
+    }
+
+    @Override
+    public int getIdealCapacity() {
+        return idealCapacity;
+    }
+
+    @Override
+    public int getShelfCapacity() {
+        return shelfCapacity;
+    }
+
+    @Override
+    public long getPlaced() {
+        return placed.sum();
+    }
+
+    @Override
+    public long getMoved() {
+        return moved.sum();
+    }
+
+    @Override
+    public long getPickedUp() {
+        return pickedUp.sum();
+    }
+
+    @Override
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    @Override
+    public long getShelfOverflows() {
+        return shelfOverflows.sum();
+    }
+
+    @Override
+    public double getShelfOverflowRate() {
+        return rate(getShelfOverflows(), getPlaced());
+    }
+
+    @Override
+    public double getWasteRate() {
+        return rate(getDiscarded(), getPlaced());
+    }
+
+    static double rate(long count, long placements) {
+        return placements == 0 ? 0 : (double) count / placements;
+    }
+}
@@ -0,0 +1,35 @@
+package com.kitchen;
+
+// Live kitchen counters over JMX (see KitchenMetrics). Occupancy counts orders placed into a
+// storage and not yet moved out, picked up or discarded.
+public interface KitchenMetricsMBean {
+    long getHeaterOccupancy();
+
+    long getCoolerOccupancy();
+
+    long getFreezerOccupancy();
+
+    long getShelfOccupancy();
+
+    // Per storage; heater, cooler and freezer each have this many slots.
+    int getIdealCapacity();
+
+    int getShelfCapacity();
+
+    long getPlaced();
+
+    long getMoved();
+
+    long getPickedUp();
+
+    long getDiscarded();
+
+    // Placements that landed on the shelf although their ideal storage is another one.
+    long getShelfOverflows();
+
+    // Shelf overflows per placement.
+    double getShelfOverflowRate();
+
+    // Discards per placement.
+    double getWasteRate();
+}
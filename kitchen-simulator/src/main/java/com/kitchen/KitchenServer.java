@@ -0,0 +1,228 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+// Serves a long-lived kitchen over HTTP with the JDK server. Requests run on the given executor,
+// which the caller owns and sizes:
+//   POST /orders                 body is a JSON array of orders (or {"orders": [...]}); placed in order, 204
+//   POST /orders/{id}/pickup     picks the order up (unknown ids are ignored), 204
+//   GET  /ledger?from=N&to=M     streams ledger entries [N, M) as {"actions": [...]}, the same shape as the
+//                                /solve body; M defaults to the ledger size when the request arrives, which is
+//                                returned in x-ledger-end so a client can tail the ledger with from=<previous end>
+// The ledger is encoded a chunk at a time under the ledger lock and written to the socket outside
+// it, so a slow reader never holds up the kitchen.
+public final class KitchenServer implements AutoCloseable {
+    private static final String ORDERS = "/orders";
+    private static final String PICKUP_SUFFIX = "/pickup";
+    private static final String LEDGER = "/ledger";
+
+    private final KitchenService kitchen;
+    private final JsonFactory jsonFactory;
+    private final int actionsPerChunk;
+    private final HttpServer server;
+
+    public KitchenServer(KitchenService kitchen, JsonFactory jsonFactory, InetSocketAddress address, Executor executor)
+            throws IOException {
+        this(kitchen, jsonFactory, address, executor, SolutionPublisher.DEFAULT_ACTIONS_PER_CHUNK);
+    }
+
+    public KitchenServer(
+            KitchenService kitchen,
+            JsonFactory jsonFactory,
+            InetSocketAddress address,
+            Executor executor,
+            int actionsPerChunk
+    ) throws IOException {
+        if (kitchen == null) {
+            throw new IllegalArgumentException("kitchen cannot be null");
+        }
+        if (jsonFactory == null) {
+            throw new IllegalArgumentException("jsonFactory cannot be null");
+        }
+        if (address == null) {
+            throw new IllegalArgumentException("address cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (actionsPerChunk <= 0) {
+            throw new IllegalArgumentException("actionsPerChunk must be > 0");
+        }
+        this.kitchen = kitchen;
+        this.jsonFactory = jsonFactory;
+        this.actionsPerChunk = actionsPerChunk;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(ORDERS, this::handleOrders);
+        server.createContext(LEDGER, this::handleLedger);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // The port actually bound, e.g. when the server was created on port 0.
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting connections and waits up to one second for in-flight exchanges.
+    @Override
+    public void close() {
+        server.stop(1);
+    }
+
+    private void handleOrders(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendStatus(exchange, 405, "POST only");
+            } else if (path.equals(ORDERS) || path.equals(ORDERS + "/")) {
+                placeOrders(exchange);
+            } else if (path.startsWith(ORDERS + "/") && path.endsWith(PICKUP_SUFFIX)
+                    && path.length() > ORDERS.length() + 1 + PICKUP_SUFFIX.length()) {
+                drain(exchange.getRequestBody());
+                kitchen.pickupOrder(path.substring(ORDERS.length() + 1, path.length() - PICKUP_SUFFIX.length()));
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                sendStatus(exchange, 404, "Not found: " + path);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void placeOrders(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody(); JsonParser parser = jsonFactory.createParser(body)) {
+            OrderJson.readOrders(parser, kitchen::placeOrder);
+        } catch (IOException | IllegalArgumentException e) {
+            // Orders before the malformed one have already been placed.
+            sendStatus(exchange, 400, "Bad orders payload: " + e.getMessage());
+            return;
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void handleLedger(HttpExchange exchange) throws IOException {
+        try {
+            drain(exchange.getRequestBody());
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendStatus(exchange, 405, "GET only");
+                return;
+            }
+            long size = kitchen.getLedgerSize();
+            long from;
+            long to;
+            try {
+                from = Math.min(size, longParameter(exchange.getRequestURI().getRawQuery(), "from", 0));
+                to = Math.min(size, longParameter(exchange.getRequestURI().getRawQuery(), "to", size));
+            } catch (IllegalArgumentException e) {
+                sendStatus(exchange, 400, e.getMessage());
+                return;
+            }
+            boolean gzip = acceptsGzip(exchange);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("x-ledger-end", Long.toString(Math.max(from, to)));
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, 0);
+            streamLedger(exchange.getResponseBody(), from, to, gzip);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void streamLedger(OutputStream response, long from, long to, boolean gzip) throws IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(actionsPerChunk * 96);
+        OutputStream encoded = gzip ? new GZIPOutputStream(chunk, 8 * 1024, true) : chunk;
+        try (JsonGenerator generator = jsonFactory.createGenerator(encoded)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("actions");
+            for (long next = from; next < to; ) {
+                long end = Math.min(to, next + actionsPerChunk);
+                kitchen.visitLedger(next, end, (timestampMicros, orderId, action, target) -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField("timestamp", timestampMicros);
+                        generator.writeStringField("id", orderId);
+                        generator.writeStringField("action", action.label());
+                        generator.writeStringField("target", target.location());
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                next = end;
+                generator.flush();
+                chunk.writeTo(response);
+                chunk.reset();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        chunk.writeTo(response);
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        for (String value : exchange.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+            if (value.toLowerCase().contains("gzip")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long longParameter(String query, String name, long defaultValue) {
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                try {
+                    long value = Long.parseLong(pair.substring(eq + 1));
+                    if (value >= 0) {
+                        return value;
+                    }
+                } catch (NumberFormatException e) {
+                    // Reported below.
+                }
+                throw new IllegalArgumentException(name + " must be a non-negative integer (got " + pair.substring(eq + 1) + ")");
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void drain(InputStream body) throws IOException {
+        try (body) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.kitchen;
+
+import java.util.List;
+
+// What the runner needs from a kitchen: placing and picking up orders, background expiry, read
+// access to the ledger, live counters and lock statistics. Implemented by a single Kitchen and by a sharded KitchenCluster.
+public interface KitchenService {
+    void placeOrder(Order order);
+
+    void pickupOrder(String orderId);
+
+    int reapExpired();
+
+    long getLedgerSize();
+
+    // Visits ledger entries [fromIndex, toIndex) in ledger order.
+    void visitLedger(long fromIndex, long toIndex, Kitchen.LedgerVisitor visitor);
+
+    List<Action> getLedgerSnapshot();
+
+    // Live occupancy and action counters; reading them takes no kitchen lock.
+    KitchenMetricsMBean getMetrics();
+
+    // Lock wait/hold time and retries of single placeOrder and pickupOrder calls.
+    LockLatency getPlaceLatency();
+
+    LockLatency getPickupLatency();
+}
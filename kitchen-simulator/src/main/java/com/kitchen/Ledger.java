@@ -0,0 +1,34 @@
+package com.kitchen;
+
+// Append-only record of kitchen actions. Entries carry the order id itself rather than the
+// kitchen's int handle, since handles are reused once an order leaves the kitchen and the ledger
+// outlives them. Implementations are not thread-safe; Kitchen serializes access with its ledger
+// lock.
+public interface Ledger {
+    interface EntryVisitor {
+        void visit(long timestampMicros, String orderId, ActionType action, StorageType target);
+    }
+
+    void append(long timestampMicros, String orderId, ActionType action, StorageType target);
+
+    // Throws IllegalArgumentException if append could not record orderId. Kitchen calls it before
+    // an order changes any state, so a refused order leaves nothing behind.
+    default void checkOrderId(String orderId) {
+    }
+
+    long size();
+
+    // Visits entries [fromIndex, toIndex) in append order.
+    void forEach(long fromIndex, long toIndex, EntryVisitor visitor);
+
+    // Drops entries from newSize on; recovery uses it to roll the ledger back to what the
+    // write-ahead log made durable.
+    void truncate(long newSize);
+
+    // Makes appended entries durable, for ledgers that keep them on disk.
+    default void flush() {
+    }
+
+    default void close() {
+    }
+}
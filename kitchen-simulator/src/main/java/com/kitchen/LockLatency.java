@@ -0,0 +1,58 @@
+package com.kitchen;
+
+// Lock behaviour of one kind of kitchen operation, one sample per call: nanoseconds spent waiting
+// for the storage locks, nanoseconds holding them, and how many times the operation had to go
+// round its retry loop.
+public final class LockLatency {
+    private final LogHistogram waitNanos = new LogHistogram();
+    private final LogHistogram holdNanos = new LogHistogram();
+    private final LogHistogram retries = new LogHistogram();
+
+    void record(long waitNanos, long holdNanos, int retries) {
+        this.waitNanos.record(waitNanos);
+        this.holdNanos.record(holdNanos);
+        this.retries.record(retries);
+    }
+
+    public LogHistogram getWaitNanos() {
+        return waitNanos;
+    }
+
+    public LogHistogram getHoldNanos() {
+        return holdNanos;
+    }
+
+    public LogHistogram getRetries() {
+        return retries;
+    }
+
+    public long getCount() {
+        return retries.getCount();
+    }
+
+    // Adds every sample to target, e.g. to combine the shards of a cluster.
+    public void addTo(LockLatency target) {
+        waitNanos.addTo(target.waitNanos);
+        holdNanos.addTo(target.holdNanos);
+        retries.addTo(target.retries);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d wait p50/p99/p999=%s hold p50/p99/p999=%s retries p50/p99/p999/max=%d/%d/%d/%d",
+                getCount(),
+                micros(waitNanos),
+                micros(holdNanos),
+                retries.getValueAtQuantile(0.50),
+                retries.getValueAtQuantile(0.99),
+                retries.getValueAtQuantile(0.999),
+                retries.getMax());
+    }
+
+    private static String micros(LogHistogram nanos) {
+        return String.format("%.1f/%.1f/%.1fus",
+                nanos.getValueAtQuantile(0.50) / 1000.0,
+                nanos.getValueAtQuantile(0.99) / 1000.0,
+                nanos.getValueAtQuantile(0.999) / 1000.0);
+    }
+}
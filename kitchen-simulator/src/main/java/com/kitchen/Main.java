@@ -1,16 +1,19 @@
 package com.kitchen;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,19 +24,21 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongSupplier;
-import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 public class Main {
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private static final class OrdersResponse {
-        private final List<Order> orders;
+        private final InputStream body;
         private final String testId;
 
-        private OrdersResponse(List<Order> orders, String testId) {
-            this.orders = orders;
+        private OrdersResponse(InputStream body, String testId) {
+            this.body = body;
             this.testId = testId;
         }
     }
@@ -45,19 +50,27 @@ public class Main {
         }
     }
 
-    private static int run(String[] args) {
+    static int run(String[] args) {
         Map<String, String> cli = parseArgs(args);
         boolean getOnly = Boolean.parseBoolean(optional(cli, "getOnly", "GET_ONLY", "false"));
-        String ordersUrl;
+        String mode = optional(cli, "mode", "MODE", "batch").trim().toLowerCase();
+        if (!mode.equals("batch") && !mode.equals("serve")) {
+            System.err.println("mode must be batch or serve (got " + mode + ")");
+            return 2;
+        }
+        boolean serve = mode.equals("serve");
+        String ordersUrl = null;
         String solveUrl = null;
         String authToken = optional(cli, "authToken", "AUTH_TOKEN");
         String authHeader = cli.getOrDefault("authHeader", System.getProperty("authHeader", System.getenv().getOrDefault("AUTH_HEADER", "Authorization")));
         String authScheme = cli.getOrDefault("authScheme", System.getProperty("authScheme", System.getenv().getOrDefault("AUTH_SCHEME", "Bearer")));
 
         try {
-            ordersUrl = required(cli, "ordersUrl");
-            if (!getOnly) {
-                solveUrl = required(cli, "solveUrl");
+            if (!serve) {
+                ordersUrl = required(cli, "ordersUrl");
+                if (!getOnly) {
+                    solveUrl = required(cli, "solveUrl");
+                }
             }
         } catch (IllegalArgumentException e) {
             System.err.println(e.getMessage());
@@ -67,6 +80,94 @@ public class Main {
 
         long placeEveryMillis = Long.parseLong(cli.getOrDefault("placeEveryMillis", "500"));
         long maxAwaitSeconds = Long.parseLong(cli.getOrDefault("awaitSeconds", "60"));
+        Kitchen.LockingMode lockingMode = Kitchen.LockingMode.valueOf(
+                optional(cli, "lockingMode", "LOCKING_MODE", "GLOBAL").trim().toUpperCase());
+        boolean gzipSolution = Boolean.parseBoolean(optional(cli, "gzipSolution", "GZIP_SOLUTION", "false"));
+        String ledgerDir = optional(cli, "ledgerDir", "LEDGER_DIR");
+        int ledgerSegmentEntries = Integer.parseInt(cli.getOrDefault("ledgerSegmentEntries", "1048576"));
+        int orderQueueCapacity = Integer.parseInt(cli.getOrDefault("orderQueueCapacity", "1024"));
+        boolean virtualClock = "virtual".equalsIgnoreCase(optional(cli, "clock", "CLOCK", "wall").trim());
+        long seed = Long.parseLong(optional(cli, "seed", "SEED", Long.toString(System.nanoTime())));
+        String executionMode = optional(cli, "executionMode", "EXECUTION_MODE", "pool").trim().toLowerCase();
+        long wheelTickMillis = Long.parseLong(cli.getOrDefault("wheelTickMillis", "10"));
+        long reapEveryMillis = Long.parseLong(cli.getOrDefault("reapEveryMillis", "0"));
+        String walDir = optional(cli, "walDir", "WAL_DIR");
+        String traceFile = optional(cli, "traceFile", "TRACE_FILE");
+        long snapshotEveryMillis = Long.parseLong(cli.getOrDefault("snapshotEveryMillis", "60000"));
+        int idealCapacity = Integer.parseInt(optional(cli, "idealCapacity", "IDEAL_CAPACITY", Integer.toString(Kitchen.DEFAULT_IDEAL_CAPACITY)));
+        int shelfCapacity = Integer.parseInt(optional(cli, "shelfCapacity", "SHELF_CAPACITY", Integer.toString(Kitchen.DEFAULT_SHELF_CAPACITY)));
+        int pickupMinSeconds = Integer.parseInt(cli.getOrDefault("pickupMinSeconds", "4"));
+        int pickupMaxSeconds = Integer.parseInt(cli.getOrDefault("pickupMaxSeconds", "8"));
+        if (idealCapacity < 0 || shelfCapacity < 0 || pickupMinSeconds < 0 || pickupMaxSeconds < pickupMinSeconds) {
+            System.err.println("Capacities must be >= 0 and the pickup window must satisfy 0 <= pickupMinSeconds <= pickupMaxSeconds");
+            return 2;
+        }
+        // Expected pickup is the middle of the pickup window.
+        long expectedPickupDelayMicros = TimeUnit.SECONDS.toMicros(pickupMinSeconds + pickupMaxSeconds) / 2;
+        String discardPolicyName = optional(cli, "discardPolicy", "DISCARD_POLICY", "expiry");
+        DiscardPolicy discardPolicy;
+        try {
+            discardPolicy = DiscardPolicy.forName(discardPolicyName, expectedPickupDelayMicros);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        String jmxName = optional(cli, "jmxName", "JMX_NAME", KitchenMetrics.DEFAULT_OBJECT_NAME).trim();
+        int shards = Integer.parseInt(optional(cli, "shards", "SHARDS", "1"));
+        if (shards <= 0) {
+            System.err.println("shards must be > 0");
+            return 2;
+        }
+        if (shards > 1 && virtualClock) {
+            System.err.println("shards only applies to clock=wall");
+            return 2;
+        }
+        if (shards > KitchenCluster.MAX_SHARDS) {
+            System.err.println("shards must be <= " + KitchenCluster.MAX_SHARDS);
+            return 2;
+        }
+        // The merged ledger needs every shard ledger in timestamp order; see KitchenCluster.
+        if (shards > 1 && lockingMode != Kitchen.LockingMode.GLOBAL) {
+            System.err.println("shards > 1 needs lockingMode=GLOBAL");
+            return 2;
+        }
+        if ((idealCapacity > 0 && idealCapacity < shards) || (shelfCapacity > 0 && shelfCapacity < shards)) {
+            System.err.println("idealCapacity and shelfCapacity must be 0 or at least shards, so every shard has room");
+            return 2;
+        }
+        if (!executionMode.equals("pool") && !executionMode.equals("virtual") && !executionMode.equals("wheel")) {
+            System.err.println("executionMode must be pool, virtual or wheel (got " + executionMode + ")");
+            return 2;
+        }
+        if (executionMode.equals("virtual") && !VirtualThreadPickupScheduler.isSupported()) {
+            System.err.println("executionMode=virtual needs Java 21+ (running " + System.getProperty("java.version") + ")");
+            return 2;
+        }
+
+        if (walDir != null && (!serve || shards > 1)) {
+            System.err.println("walDir only applies to mode=serve with a single shard");
+            return 2;
+        }
+        if (traceFile != null && (serve || virtualClock || shards > 1)) {
+            System.err.println("traceFile only applies to mode=batch with clock=wall and a single shard");
+            return 2;
+        }
+        if (serve) {
+            if (virtualClock) {
+                System.err.println("mode=serve only applies to clock=wall");
+                return 2;
+            }
+            int port = Integer.parseInt(optional(cli, "port", "PORT", "8080"));
+            int serverThreads = Integer.parseInt(optional(cli, "serverThreads", "SERVER_THREADS",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
+            if (port < 0 || port > 65535 || serverThreads <= 0) {
+                System.err.println("port must be within [0, 65535] and serverThreads must be > 0");
+                return 2;
+            }
+            return serve(new InetSocketAddress(optional(cli, "host", "HOST", "localhost"), port), serverThreads,
+                    lockingMode, ledgerDir, ledgerSegmentEntries, shards, idealCapacity, shelfCapacity, discardPolicy,
+                    jmxName, reapEveryMillis, walDir, snapshotEveryMillis);
+        }
 
         URI ordersUri;
         URI solveUri = null;
@@ -110,48 +211,92 @@ public class Main {
             }
 
             if (getOnly) {
-                System.out.println("testId=" + (ordersResponse.testId == null ? "" : ordersResponse.testId));
-                System.out.println("orders=" + ordersResponse.orders.size());
-                for (int i = 0; i < Math.min(5, ordersResponse.orders.size()); i++) {
-                    Order o = ordersResponse.orders.get(i);
-                    System.out.println(o.getId() + " " + o.getTemperature() + " " + o.getShelfLifeSeconds());
-                }
-                return 0;
+                return printOrders(ordersResponse);
             }
 
             long startNanos = System.nanoTime();
             LongSupplier nowMicros = () -> TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
-            Kitchen kitchen = new Kitchen(nowMicros);
-            List<Order> orders = ordersResponse.orders;
+            List<Ledger> ledgers;
+            try {
+                ledgers = openLedgers(ledgerDir, ledgerSegmentEntries, shards);
+            } catch (IOException e) {
+                System.err.println("Failed to open ledger in " + ledgerDir + ": " + e.getMessage());
+                return 1;
+            }
+
+            if (virtualClock) {
+                try {
+                    EventSimulation simulation = new EventSimulation(TimeUnit.MILLISECONDS.toMicros(placeEveryMillis),
+                            pickupMinSeconds, pickupMaxSeconds, seed, reapEveryMillis > 0, idealCapacity, shelfCapacity,
+                            discardPolicy);
+                    return runVirtual(http, solveUri, ordersResponse, simulation, lockingMode, ledgers.get(0), seed,
+                            gzipSolution, authToken, authHeader, authScheme);
+                } finally {
+                    closeLedgers(ledgers);
+                }
+            }
 
-            CountDownLatch latch = new CountDownLatch(orders.size());
+            TraceRecorder recorder = null;
+            if (traceFile != null) {
+                try {
+                    recorder = new TraceRecorder(Paths.get(traceFile), MAPPER.getFactory(), nowMicros, idealCapacity,
+                            shelfCapacity, discardPolicyName, expectedPickupDelayMicros);
+                } catch (IOException e) {
+                    System.err.println("Failed to open trace file " + traceFile + ": " + e.getMessage());
+                    closeLedgers(ledgers);
+                    return 1;
+                }
+            }
+            KitchenService kitchen = (recorder == null)
+                    ? newKitchen(nowMicros, lockingMode, ledgers, idealCapacity, shelfCapacity, discardPolicy)
+                    : recorder.record(newKitchen(recorder::nowMicros, lockingMode, ledgers, idealCapacity, shelfCapacity, discardPolicy));
+            ObjectName metricsName = registerMetrics(kitchen, jmxName);
+
+            // Orders are parsed on their own thread while placement is already running.
+            OrderFeed feed = new OrderFeed(orderQueueCapacity);
+            Thread ingestThread = new Thread(() -> feed.ingest(ordersResponse.body, MAPPER.getFactory()), "order-ingest");
+            ingestThread.setDaemon(true);
+            ingestThread.start();
+
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicLong pickedUp = new AtomicLong(0);
             ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(8);
+            PickupScheduler pickups;
+            if (executionMode.equals("virtual")) {
+                pickups = new VirtualThreadPickupScheduler();
+            } else if (executionMode.equals("wheel")) {
+                pickups = new HashedWheelPickupScheduler(wheelTickMillis, TimeUnit.MILLISECONDS, 1024);
+            } else {
+                pickups = new PooledPickupScheduler(scheduler);
+            }
             try {
-                AtomicInteger index = new AtomicInteger(0);
-
                 ScheduledFuture<?> placeFuture = scheduler.scheduleAtFixedRate(() -> {
-                    int i = index.getAndIncrement();
-                    if (i >= orders.size()) {
+                    Order order = feed.poll();
+                    if (order == null) {
                         return;
                     }
 
-                    Order order = orders.get(i);
-                    kitchen.placeOrder(order);
-
-                    long pickupDelaySeconds = ThreadLocalRandom.current().nextLong(4, 9); // 4–8 inclusive
-                    scheduler.schedule(() -> {
+                    long pickupDelaySeconds = ThreadLocalRandom.current().nextLong(pickupMinSeconds, pickupMaxSeconds + 1L);
+                    pickups.submit(() -> kitchen.placeOrder(order), () -> {
                         try {
                             kitchen.pickupOrder(order.getId());
                         } finally {
-                            latch.countDown();
+                            pickedUp.incrementAndGet();
                         }
-                    }, pickupDelaySeconds, TimeUnit.SECONDS);
+                    }, TimeUnit.SECONDS.toNanos(pickupDelaySeconds));
                 }, 0, placeEveryMillis, TimeUnit.MILLISECONDS);
 
+                if (reapEveryMillis > 0) {
+                    scheduler.scheduleWithFixedDelay(kitchen::reapExpired, reapEveryMillis, reapEveryMillis, TimeUnit.MILLISECONDS);
+                }
+
                 scheduler.scheduleWithFixedDelay(() -> {
-                    if (index.get() >= orders.size()) {
+                    if (feed.isExhausted()) {
                         placeFuture.cancel(false);
                     }
+                    if (feed.failure() != null || (feed.isExhausted() && pickedUp.get() == feed.produced())) {
+                        latch.countDown();
+                    }
                 }, 0, 50, TimeUnit.MILLISECONDS);
 
                 boolean done = latch.await(maxAwaitSeconds, TimeUnit.SECONDS);
@@ -159,46 +304,235 @@ public class Main {
                 scheduler.shutdown();
                 scheduler.awaitTermination(10, TimeUnit.SECONDS);
 
+                if (feed.failure() != null) {
+                    System.err.println("Failed to read orders: " + feed.failure().getMessage());
+                    return 1;
+                }
                 if (!done) {
                     System.err.println("Timed out waiting for pickups (" + maxAwaitSeconds + "s)");
                     return 1;
                 }
-
-                try {
-                    postSolution(
-                            http,
-                            solveUri,
-                            kitchen.getLedgerSnapshot(),
-                            authToken,
-                            authHeader,
-                            authScheme,
-                            ordersResponse.testId
-                    );
-                } catch (IOException e) {
-                    System.err.println("Failed to post solution: " + e.getMessage());
-                    return 1;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("Interrupted while posting solution.");
-                    return 1;
-                } catch (RuntimeException e) {
-                    System.err.println("Failed to post solution: " + e.getMessage());
-                    return 1;
+                System.out.println("Pickup drift: " + pickups.getDrift());
+                System.out.println("Place lock: " + kitchen.getPlaceLatency());
+                System.out.println("Pickup lock: " + kitchen.getPickupLatency());
+                if (recorder != null) {
+                    finishTrace(recorder, kitchen, traceFile);
                 }
 
-                return 0;
+                return submitSolution(http, solveUri, kitchen, gzipSolution, authToken, authHeader, authScheme, ordersResponse.testId);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 System.err.println("Interrupted while running simulation.");
                 return 1;
             } finally {
+                pickups.close();
                 scheduler.shutdownNow();
+                ingestThread.interrupt();
+                if (recorder != null) {
+                    try {
+                        recorder.close();
+                    } catch (IOException e) {
+                        // Already reported by finishTrace, or the run failed before it.
+                    }
+                }
+                closeLedgers(ledgers);
+                if (metricsName != null) {
+                    KitchenMetrics.unregister(metricsName);
+                }
             }
         } finally {
             httpExecutor.shutdownNow();
         }
     }
 
+    // Runs the kitchen as a resident HTTP service (see KitchenServer) on the wall clock until the JVM
+    // is asked to shut down, then stops the server and closes the ledgers before exiting. With
+    // walDir the kitchen is first recovered from its write-ahead log, snapshotted every
+    // snapshotEveryMillis and once more on a clean shutdown.
+    private static int serve(
+            InetSocketAddress address,
+            int serverThreads,
+            Kitchen.LockingMode lockingMode,
+            String ledgerDir,
+            int ledgerSegmentEntries,
+            int shards,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy,
+            String jmxName,
+            long reapEveryMillis,
+            String walDir,
+            long snapshotEveryMillis
+    ) {
+        long startNanos = System.nanoTime();
+        // A recovered kitchen's timestamps come from earlier runs, so with a write-ahead log the clock
+        // counts from the epoch and restored orders keep decaying across the downtime.
+        long originMicros = (walDir == null) ? 0 : TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        LongSupplier nowMicros = () -> originMicros + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        if (walDir != null && ledgerDir == null) {
+            // Recovery rolls the ledger forward from the log, so it has to survive the restart too.
+            ledgerDir = Paths.get(walDir, "ledger").toString();
+        }
+        List<Ledger> ledgers;
+        try {
+            ledgers = openLedgers(ledgerDir, ledgerSegmentEntries, shards);
+        } catch (IOException e) {
+            System.err.println("Failed to open ledger in " + ledgerDir + ": " + e.getMessage());
+            return 1;
+        }
+
+        Kitchen durableKitchen = null;
+        KitchenService kitchen;
+        if (walDir == null) {
+            kitchen = newKitchen(nowMicros, lockingMode, ledgers, idealCapacity, shelfCapacity, discardPolicy);
+        } else {
+            try {
+                durableKitchen = new Kitchen(nowMicros, lockingMode, ledgers.get(0), idealCapacity, shelfCapacity,
+                        discardPolicy, Kitchen.DEFAULT_LATENCY_SAMPLE_RATE, new WriteAheadLog(Paths.get(walDir)));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to recover the kitchen from " + walDir + ": " + e.getMessage());
+                closeLedgers(ledgers);
+                return 1;
+            }
+            kitchen = durableKitchen;
+            System.out.println("Recovered " + kitchen.getLedgerSize() + " actions from " + walDir);
+        }
+        ObjectName metricsName = registerMetrics(kitchen, jmxName);
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(serverThreads, r -> new Thread(r, "kitchen-server"));
+        ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kitchen-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        CountDownLatch shutdownRequested = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        KitchenServer server = null;
+        try {
+            server = new KitchenServer(kitchen, MAPPER.getFactory(), address, serverExecutor);
+            if (reapEveryMillis > 0) {
+                maintenance.scheduleWithFixedDelay(kitchen::reapExpired, reapEveryMillis, reapEveryMillis, TimeUnit.MILLISECONDS);
+            }
+            if (durableKitchen != null && snapshotEveryMillis > 0) {
+                Kitchen snapshotted = durableKitchen;
+                maintenance.scheduleWithFixedDelay(() -> snapshot(snapshotted),
+                        snapshotEveryMillis, snapshotEveryMillis, TimeUnit.MILLISECONDS);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                shutdownRequested.countDown();
+                try {
+                    stopped.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "kitchen-shutdown"));
+            server.start();
+            System.out.println("Serving kitchen on http://" + address.getHostString() + ":" + server.getPort()
+                    + " with " + serverThreads + " threads");
+            shutdownRequested.await();
+            System.out.println("Ledger: " + kitchen.getLedgerSize() + " actions");
+            System.out.println("Place lock: " + kitchen.getPlaceLatency());
+            System.out.println("Pickup lock: " + kitchen.getPickupLatency());
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Failed to start server on " + address + ": " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+            serverExecutor.shutdownNow();
+            maintenance.shutdownNow();
+            if (durableKitchen != null) {
+                try {
+                    maintenance.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                snapshot(durableKitchen);
+                durableKitchen.closeJournal();
+            }
+            closeLedgers(ledgers);
+            if (metricsName != null) {
+                KitchenMetrics.unregister(metricsName);
+            }
+            stopped.countDown();
+        }
+    }
+
+    // A trace that cannot be written is reported, but the solution is still posted.
+    private static void finishTrace(TraceRecorder recorder, KitchenService kitchen, String traceFile) {
+        try {
+            recorder.finish(kitchen);
+            System.out.println("Trace: " + recorder.getEventCount() + " events and " + kitchen.getLedgerSize()
+                    + " ledger entries written to " + traceFile);
+        } catch (IOException e) {
+            System.err.println("Failed to write trace " + traceFile + ": " + e.getMessage());
+        }
+    }
+
+    private static void snapshot(Kitchen kitchen) {
+        try {
+            kitchen.snapshot();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to write kitchen snapshot: " + e.getMessage());
+        }
+    }
+
+    private static KitchenService newKitchen(
+            LongSupplier nowMicros,
+            Kitchen.LockingMode lockingMode,
+            List<Ledger> ledgers,
+            int idealCapacity,
+            int shelfCapacity,
+            DiscardPolicy discardPolicy
+    ) {
+        return (ledgers.size() == 1)
+                ? new Kitchen(nowMicros, lockingMode, ledgers.get(0), idealCapacity, shelfCapacity, discardPolicy)
+                : new KitchenCluster(nowMicros, ledgers, idealCapacity, shelfCapacity, discardPolicy);
+    }
+
+    // Returns null when jmxName is empty or registration fails; the run goes on without the bean.
+    private static ObjectName registerMetrics(KitchenService kitchen, String jmxName) {
+        if (jmxName.isEmpty()) {
+            return null;
+        }
+        try {
+            return KitchenMetrics.register(kitchen.getMetrics(), jmxName);
+        } catch (JMException e) {
+            System.err.println("Failed to register kitchen metrics as " + jmxName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // One ledger per shard. With ledgerDir, a single kitchen uses the directory itself and shards
+    // get a shard-NN subdirectory each.
+    private static List<Ledger> openLedgers(String ledgerDir, int segmentEntries, int shards) throws IOException {
+        List<Ledger> ledgers = new ArrayList<>(shards);
+        try {
+            for (int i = 0; i < shards; i++) {
+                if (ledgerDir == null) {
+                    ledgers.add(new ColumnarLedger());
+                } else {
+                    Path dir = (shards == 1) ? Paths.get(ledgerDir) : Paths.get(ledgerDir, String.format("shard-%02d", i));
+                    ledgers.add(new MappedLedger(dir, segmentEntries));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeLedgers(ledgers);
+            throw e;
+        }
+        return ledgers;
+    }
+
+    private static void closeLedgers(List<Ledger> ledgers) {
+        for (Ledger ledger : ledgers) {
+            ledger.close();
+        }
+    }
+
     private static OrdersResponse fetchOrders(HttpClient http, URI ordersUri, String authToken, String authHeader, String authScheme)
             throws IOException, InterruptedException {
         HttpRequest.Builder builder = HttpRequest.newBuilder()
@@ -208,41 +542,114 @@ public class Main {
         addAuthHeader(builder, authToken, authHeader, authScheme);
         HttpRequest request = builder.build();
 
-        HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<InputStream> resp = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
         if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+            resp.body().close();
             throw new IllegalStateException("GET orders failed: HTTP " + resp.statusCode());
         }
 
         String testId = resp.headers().firstValue("x-test-id").orElse(null);
-        JsonNode root = MAPPER.readTree(resp.body());
-        JsonNode ordersNode = root.isObject() ? root.get("orders") : root;
-        if (ordersNode == null || !ordersNode.isArray()) {
-            throw new IllegalArgumentException("Orders payload must be an array (or {\"orders\": [...]})");
+        return new OrdersResponse(resp.body(), testId);
+    }
+
+    private static int printOrders(OrdersResponse ordersResponse) {
+        List<Order> firstOrders = new ArrayList<>();
+        long count;
+        try (InputStream body = ordersResponse.body; JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            count = OrderJson.readOrders(parser, order -> {
+                if (firstOrders.size() < 5) {
+                    firstOrders.add(order);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read orders: " + e.getMessage());
+            return 1;
         }
 
-        List<Order> orders = MAPPER.convertValue(ordersNode, new TypeReference<List<Map<String, Object>>>() {
-        }).stream().map(Main::orderFromMap).collect(Collectors.toList());
-        return new OrdersResponse(orders, testId);
+        System.out.println("testId=" + (ordersResponse.testId == null ? "" : ordersResponse.testId));
+        System.out.println("orders=" + count);
+        for (Order o : firstOrders) {
+            System.out.println(o.getId() + " " + o.getTemperature() + " " + o.getShelfLifeSeconds());
+        }
+        return 0;
+    }
+
+    // Replays the whole schedule on a virtual clock; the ledger is complete as soon as this returns.
+    private static int runVirtual(
+            HttpClient http,
+            URI solveUri,
+            OrdersResponse ordersResponse,
+            EventSimulation simulation,
+            Kitchen.LockingMode lockingMode,
+            Ledger ledger,
+            long seed,
+            boolean gzipSolution,
+            String authToken,
+            String authHeader,
+            String authScheme
+    ) {
+        List<Order> orders = new ArrayList<>();
+        try (InputStream body = ordersResponse.body; JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            OrderJson.readOrders(parser, orders::add);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read orders: " + e.getMessage());
+            return 1;
+        }
+
+        long startNanos = System.nanoTime();
+        Kitchen kitchen = simulation.run(orders.iterator(), lockingMode, ledger);
+        System.out.println("Simulated " + orders.size() + " orders (" + kitchen.getLedgerSize() + " actions) over "
+                + TimeUnit.MICROSECONDS.toSeconds(simulation.getNowMicros()) + "s of virtual time in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms (seed=" + seed + ")");
+
+        return submitSolution(http, solveUri, kitchen, gzipSolution, authToken, authHeader, authScheme, ordersResponse.testId);
+    }
+
+    private static int submitSolution(
+            HttpClient http,
+            URI solveUri,
+            KitchenService kitchen,
+            boolean gzip,
+            String authToken,
+            String authHeader,
+            String authScheme,
+            String testId
+    ) {
+        try {
+            postSolution(http, solveUri, kitchen, gzip, authToken, authHeader, authScheme, testId);
+        } catch (IOException e) {
+            System.err.println("Failed to post solution: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while posting solution.");
+            return 1;
+        } catch (RuntimeException e) {
+            System.err.println("Failed to post solution: " + e.getMessage());
+            return 1;
+        }
+        return 0;
     }
 
     private static void postSolution(
             HttpClient http,
             URI solveUri,
-            List<Action> actions,
+            KitchenService kitchen,
+            boolean gzip,
             String authToken,
             String authHeader,
             String authScheme,
             String testId
     ) throws IOException, InterruptedException {
-        ObjectNode payload = MAPPER.createObjectNode();
-        payload.set("actions", MAPPER.valueToTree(actions));
-
         HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(solveUri)
                 .timeout(Duration.ofSeconds(20))
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(payload)))
+                .POST(new SolutionPublisher(kitchen, MAPPER.getFactory(), gzip, SolutionPublisher.DEFAULT_ACTIONS_PER_CHUNK))
                 ;
+        if (gzip) {
+            builder.header("Content-Encoding", "gzip");
+        }
         addAuthHeader(builder, authToken, authHeader, authScheme);
         if (testId != null && !testId.isBlank()) {
             builder.header("x-test-id", testId);
@@ -255,79 +662,6 @@ public class Main {
         }
     }
 
-    private static Order orderFromMap(Map<String, Object> m) {
-        String id = asString(firstNonNull(m, "id", "orderId"));
-        String name = asString(firstNonNull(m, "name"));
-        if (id == null || id.isBlank()) {
-            throw new IllegalArgumentException("Order missing id");
-        }
-        if (name == null || name.isBlank()) {
-            throw new IllegalArgumentException("Order missing name for id=" + id);
-        }
-
-        Order.Temperature temp = parseTemperature(asString(firstNonNull(m, "temp", "temperature")));
-        int shelfLifeSeconds = asInt(firstNonNull(m, "shelfLifeSeconds", "shelfLife", "shelfLifeSec", "freshness"));
-        Object decay = firstNonNull(m, "decayRate", "decay_rate");
-        double decayRate = (decay == null) ? 1.0 : asDouble(decay);
-        return new Order(id, name, temp, shelfLifeSeconds, decayRate);
-    }
-
-    private static Object firstNonNull(Map<String, Object> m, String... keys) {
-        for (String k : keys) {
-            if (m.containsKey(k) && m.get(k) != null) {
-                return m.get(k);
-            }
-        }
-        return null;
-    }
-
-    private static String asString(Object o) {
-        if (o == null) {
-            return null;
-        }
-        return String.valueOf(o);
-    }
-
-    private static int asInt(Object o) {
-        if (o instanceof Number) {
-            return ((Number) o).intValue();
-        }
-        if (o == null) {
-            throw new IllegalArgumentException("Missing int field");
-        }
-        return Integer.parseInt(String.valueOf(o));
-    }
-
-    private static double asDouble(Object o) {
-        if (o instanceof Number) {
-            return ((Number) o).doubleValue();
-        }
-        if (o == null) {
-            throw new IllegalArgumentException("Missing double field");
-        }
-        return Double.parseDouble(String.valueOf(o));
-    }
-
-    private static Order.Temperature parseTemperature(String s) {
-        if (s == null) {
-            throw new IllegalArgumentException("Missing temperature");
-        }
-        String v = s.trim().toUpperCase();
-        if (v.equals("HOT")) {
-            return Order.Temperature.HOT;
-        }
-        if (v.equals("COLD")) {
-            return Order.Temperature.COLD;
-        }
-        if (v.equals("ROOM") || v.equals("AMBIENT")) {
-            return Order.Temperature.ROOM;
-        }
-        if (v.equals("FROZEN")) {
-            return Order.Temperature.FROZEN;
-        }
-        throw new IllegalArgumentException("Unknown temperature: " + s);
-    }
-
     private static Map<String, String> parseArgs(String[] args) {
         Map<String, String> out = new HashMap<>();
         for (int i = 0; i < args.length; i++) {
@@ -432,6 +766,8 @@ public class Main {
         System.err.println("  mvn -q exec:java -Dexec.args=\"--ordersUrl https://api.cloudkitchens.com/interview/challenge/new?auth=TOKEN --solveUrl https://api.cloudkitchens.com/interview/challenge/solve?auth=TOKEN\"");
         System.err.println("GET-only (no POST):");
         System.err.println("  mvn -q exec:java -DgetOnly=true -DordersUrl=https://api.cloudkitchens.com/interview/challenge/new?auth=TOKEN");
+        System.err.println("Serve (resident HTTP kitchen, no orders/solve URLs):");
+        System.err.println("  mvn -q exec:java -Dmode=serve -Dport=8080 -DserverThreads=4");
         System.err.println("Auth (optional):");
         System.err.println("  -DauthToken=... (or $AUTH_TOKEN), -DauthHeader=Authorization, -DauthScheme=Bearer");
         System.err.println("Env vars:");
@@ -0,0 +1,397 @@
+package com.kitchen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Ledger backed by fixed-size memory-mapped segment files (ledger-000000.seg, ledger-000001.seg,
+// ...), each with an id file next to it (ledger-000000.ids). Each entry is a 20-byte record:
+// timestamp (8), offset of the order id in the segment's id file (4), CRC32C of the id (4), the
+// id's length in bytes (2), action (1) and target (1); the id file holds the UTF-8 ids. Ids are
+// written through mapped
+// 1 MB windows, and an id that would cross into the next window starts at that window instead.
+// Once a segment is full it is forced to disk and sealed, and a new one is mapped. Only the
+// segment being written stays mapped: a sealed segment is mapped again when it is read and kept
+// only until a read needs a different one, so neither the heap nor the mapped address space grows
+// with the ledger.
+//
+// The action byte is stored as ordinal + 1 so an all-zero record marks the end of the data when
+// a directory is reopened. Ids are forced before the records that point at them, but the kernel
+// may write a record back before its id, so after a power loss a record can reach the disk
+// without it. A reopen therefore checks every id of the segment that was being written against
+// its CRC and drops the records from the first bad one on, then cuts the id file back to the last
+// id still referenced. Sealed segments were forced in full before the next one was started.
+public final class MappedLedger implements Ledger {
+    static final int RECORD_BYTES = 20;
+    static final int MAX_ID_BYTES = 0xFFFF;
+
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String IDS_SUFFIX = ".ids";
+    private static final int ID_WINDOW_SHIFT = 20;
+    private static final int ID_WINDOW_BYTES = 1 << ID_WINDOW_SHIFT;
+    private static final ActionType[] ACTIONS = ActionType.values();
+    private static final StorageType[] TARGETS = StorageType.values();
+
+    private final Path directory;
+    private final int entriesPerSegment;
+    private int sealedCount;
+
+    private MappedByteBuffer active;
+    private int activeCount;
+    // The active segment's id file, mapped window by window as it fills.
+    private final List<MappedByteBuffer> idWindows = new ArrayList<>();
+    private int firstUnforcedWindow;
+    private int activeIdBytes;
+    private long size;
+
+    // The sealed segment last read, mapped until a read needs another one.
+    private int readSegment = -1;
+    private MappedByteBuffer readRecords;
+    private MappedByteBuffer readIds;
+    private byte[] idScratch = new byte[64];
+    private final CRC32C crc = new CRC32C();
+
+    public MappedLedger(Path directory, int entriesPerSegment) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        if (entriesPerSegment <= 0 || (long) entriesPerSegment * RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("entriesPerSegment out of range: " + entriesPerSegment);
+        }
+        this.directory = directory;
+        this.entriesPerSegment = entriesPerSegment;
+
+        Files.createDirectories(directory);
+        reopen();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getEntriesPerSegment() {
+        return entriesPerSegment;
+    }
+
+    public int getSegmentCount() {
+        return sealedCount + 1;
+    }
+
+    // A read-only view over the records of a sealed segment, mapped on each call and shared with
+    // the file, so nothing is copied; it holds exactly entriesPerSegment records. Nothing else
+    // keeps the mapping, so it is released once the caller drops the buffer.
+    public ByteBuffer sealedSegment(int index) {
+        if (index < 0 || index >= sealedCount) {
+            throw new IndexOutOfBoundsException("sealed segment " + index + " of " + sealedCount);
+        }
+        return mapReadOnly(segmentPath(index, SEGMENT_SUFFIX)).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void checkOrderId(String orderId) {
+        // A char takes at most 3 bytes in UTF-8, so short ids need no encoding.
+        if (orderId.length() > MAX_ID_BYTES / 3 && orderId.getBytes(StandardCharsets.UTF_8).length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("order id is longer than " + MAX_ID_BYTES + " bytes");
+        }
+    }
+
+    @Override
+    public void append(long timestampMicros, String orderId, ActionType action, StorageType target) {
+        if (active == null) {
+            throw new IllegalStateException("ledger is closed");
+        }
+        byte[] id = orderId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("order id is longer than " + MAX_ID_BYTES + " bytes");
+        }
+        crc.reset();
+        crc.update(id, 0, id.length);
+        if (activeCount == entriesPerSegment) {
+            roll();
+        }
+        long offset = activeIdBytes;
+        if ((offset & (ID_WINDOW_BYTES - 1)) + id.length > ID_WINDOW_BYTES) {
+            offset = (offset + ID_WINDOW_BYTES - 1) & -ID_WINDOW_BYTES;
+        }
+        if (offset + id.length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("id file of segment " + sealedCount + " is full; use fewer entries per segment");
+        }
+        ByteBuffer window = idWindow((int) (offset >>> ID_WINDOW_SHIFT));
+        int at = (int) offset & (ID_WINDOW_BYTES - 1);
+        for (int k = 0; k < id.length; k++) {
+            window.put(at + k, id[k]);
+        }
+
+        int pos = activeCount * RECORD_BYTES;
+        active.putLong(pos, timestampMicros);
+        active.putInt(pos + 8, (int) offset);
+        active.putInt(pos + 12, (int) crc.getValue());
+        active.putShort(pos + 16, (short) id.length);
+        active.put(pos + 19, (byte) target.ordinal());
+        active.put(pos + 18, (byte) (action.ordinal() + 1));
+        activeIdBytes = (int) offset + id.length;
+        activeCount++;
+        size++;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(long fromIndex, long toIndex, EntryVisitor visitor) {
+        if (active == null) {
+            throw new IllegalStateException("ledger is closed");
+        }
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("range [" + fromIndex + ", " + toIndex + ") out of bounds for ledger size " + size);
+        }
+        for (long i = fromIndex; i < toIndex; ) {
+            int segment = (int) (i / entriesPerSegment);
+            int first = (int) (i % entriesPerSegment);
+            int end = (int) Math.min(entriesPerSegment, toIndex - (long) segment * entriesPerSegment);
+            boolean sealed = segment < sealedCount;
+            if (sealed) {
+                mapForRead(segment);
+            }
+            ByteBuffer records = sealed ? readRecords : active;
+            for (int e = first; e < end; e++) {
+                int pos = e * RECORD_BYTES;
+                int offset = records.getInt(pos + 8);
+                int length = records.getShort(pos + 16) & 0xFFFF;
+                String orderId = sealed
+                        ? decodeId(readIds, offset, length)
+                        : decodeId(idWindow(offset >>> ID_WINDOW_SHIFT), offset & (ID_WINDOW_BYTES - 1), length);
+                visitor.visit(records.getLong(pos), orderId, ACTIONS[records.get(pos + 18) - 1], TARGETS[records.get(pos + 19)]);
+            }
+            i += end - first;
+        }
+    }
+
+    // Zeroes the dropped records, so a reopen finds the same end, cuts the id file back to match
+    // and deletes segment files that no longer hold any.
+    @Override
+    public void truncate(long newSize) {
+        if (active == null) {
+            throw new IllegalStateException("ledger is closed");
+        }
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("cannot truncate ledger of size " + size + " to " + newSize);
+        }
+        if (newSize == size) {
+            return;
+        }
+        releaseRead();
+        int keepSegments = (int) (newSize / entriesPerSegment);
+        try {
+            while (sealedCount > keepSegments) {
+                // The active segment is segment number sealedCount.
+                Files.deleteIfExists(segmentPath(sealedCount, SEGMENT_SUFFIX));
+                Files.deleteIfExists(segmentPath(sealedCount, IDS_SUFFIX));
+                sealedCount--;
+                active = mapOrThrow(segmentPath(sealedCount, SEGMENT_SUFFIX));
+            }
+            activeCount = (int) (newSize - (long) sealedCount * entriesPerSegment);
+            for (int pos = activeCount * RECORD_BYTES; pos < entriesPerSegment * RECORD_BYTES; pos++) {
+                active.put(pos, (byte) 0);
+            }
+            active.force();
+            activeIdBytes = (activeCount == 0) ? 0 : idEnd(active, activeCount - 1);
+            // The windows are mapped again, past the cut, as ids are appended.
+            idWindows.clear();
+            firstUnforcedWindow = 0;
+            trimIds(sealedCount, activeIdBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to truncate ledger", e);
+        }
+        size = newSize;
+    }
+
+    @Override
+    public void flush() {
+        if (active != null) {
+            for (int w = firstUnforcedWindow; w < idWindows.size(); w++) {
+                idWindows.get(w).force();
+            }
+            firstUnforcedWindow = Math.max(0, idWindows.size() - 1);
+            active.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (active == null) {
+            return;
+        }
+        flush();
+        releaseRead();
+        idWindows.clear();
+        try {
+            trimIds(sealedCount, activeIdBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close ledger ids", e);
+        }
+        active = null;
+    }
+
+    private String decodeId(ByteBuffer ids, int offset, int length) {
+        if (idScratch.length < length) {
+            idScratch = new byte[Math.max(length, idScratch.length * 2)];
+        }
+        for (int k = 0; k < length; k++) {
+            idScratch[k] = ids.get(offset + k);
+        }
+        return new String(idScratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Offset just past the id of the given record.
+    private static int idEnd(ByteBuffer records, int entry) {
+        int pos = entry * RECORD_BYTES;
+        return records.getInt(pos + 8) + (records.getShort(pos + 16) & 0xFFFF);
+    }
+
+    private ByteBuffer idWindow(int index) {
+        while (idWindows.size() <= index) {
+            Path path = segmentPath(sealedCount, IDS_SUFFIX);
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                idWindows.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                        (long) idWindows.size() * ID_WINDOW_BYTES, ID_WINDOW_BYTES));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map ledger ids " + path, e);
+            }
+        }
+        return idWindows.get(index);
+    }
+
+    // Cuts the mapped windows' unused tail off a segment's id file.
+    private void trimIds(int segment, long idBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment, IDS_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() > idBytes) {
+                channel.truncate(idBytes);
+                channel.force(false);
+            }
+        }
+    }
+
+    private void mapForRead(int segment) {
+        if (segment != readSegment) {
+            releaseRead();
+            readRecords = mapReadOnly(segmentPath(segment, SEGMENT_SUFFIX));
+            readIds = mapReadOnly(segmentPath(segment, IDS_SUFFIX));
+            readSegment = segment;
+        }
+    }
+
+    private void releaseRead() {
+        readSegment = -1;
+        readRecords = null;
+        readIds = null;
+    }
+
+    private void roll() {
+        flush();
+        idWindows.clear();
+        firstUnforcedWindow = 0;
+        try {
+            trimIds(sealedCount, activeIdBytes);
+            sealedCount++;
+            active = mapOrThrow(segmentPath(sealedCount, SEGMENT_SUFFIX));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll ledger segment", e);
+        }
+        activeCount = 0;
+        activeIdBytes = 0;
+    }
+
+    private void reopen() throws IOException {
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            files.forEach(existing::add);
+        }
+        Collections.sort(existing);
+
+        for (int i = 0; i < existing.size(); i++) {
+            if (!existing.get(i).equals(segmentPath(i, SEGMENT_SUFFIX))) {
+                throw new IOException("Unexpected ledger segment " + existing.get(i) + " (expected " + segmentPath(i, SEGMENT_SUFFIX) + ")");
+            }
+            if (Files.size(existing.get(i)) != (long) entriesPerSegment * RECORD_BYTES) {
+                throw new IOException("Ledger segment " + existing.get(i) + " was written with a different segment size");
+            }
+            if (!Files.exists(segmentPath(i, IDS_SUFFIX))) {
+                throw new IOException("Ledger segment " + existing.get(i) + " has no id file " + segmentPath(i, IDS_SUFFIX));
+            }
+        }
+
+        sealedCount = Math.max(0, existing.size() - 1);
+        active = mapOrThrow(segmentPath(sealedCount, SEGMENT_SUFFIX));
+        while (activeCount < entriesPerSegment && active.get(activeCount * RECORD_BYTES + 18) != 0) {
+            activeCount++;
+        }
+        int valid = countValidIds();
+        for (int pos = valid * RECORD_BYTES; pos < activeCount * RECORD_BYTES; pos++) {
+            active.put(pos, (byte) 0);
+        }
+        activeCount = valid;
+        activeIdBytes = (activeCount == 0) ? 0 : idEnd(active, activeCount - 1);
+        trimIds(sealedCount, activeIdBytes);
+        size = (long) sealedCount * entriesPerSegment + activeCount;
+    }
+
+    // Records of the active segment, from the start, whose ids are all in the id file and match
+    // their CRCs.
+    private int countValidIds() throws IOException {
+        Path path = segmentPath(sealedCount, IDS_SUFFIX);
+        if (activeCount == 0 || !Files.exists(path)) {
+            return 0;
+        }
+        ByteBuffer ids = mapReadOnly(path);
+        for (int e = 0; e < activeCount; e++) {
+            int pos = e * RECORD_BYTES;
+            int offset = active.getInt(pos + 8);
+            int length = active.getShort(pos + 16) & 0xFFFF;
+            if (offset < 0 || (long) offset + length > ids.capacity()) {
+                return e;
+            }
+            crc.reset();
+            crc.update(ids.duplicate().position(offset).limit(offset + length));
+            if ((int) crc.getValue() != active.getInt(pos + 12)) {
+                return e;
+            }
+        }
+        return activeCount;
+    }
+
+    private Path segmentPath(int index, String suffix) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, suffix));
+    }
+
+    private MappedByteBuffer mapOrThrow(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) entriesPerSegment * RECORD_BYTES);
+        }
+    }
+
+    private static MappedByteBuffer mapReadOnly(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map ledger segment " + path, e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded hand-off between the thread parsing the orders response and the placement scheduler.
+// Orders become available as soon as they are parsed; when the queue is full the parser blocks,
+// so memory stays constant however large the payload is.
+final class OrderFeed {
+    private final BlockingQueue<Order> queue;
+    private final AtomicLong produced = new AtomicLong();
+    private volatile boolean finished;
+    private volatile Exception failure;
+
+    OrderFeed(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // Parses the payload on the calling thread until the input is exhausted, fails or the thread
+    // is interrupted. Closes the stream.
+    void ingest(InputStream in, JsonFactory jsonFactory) {
+        try (InputStream body = in; JsonParser parser = jsonFactory.createParser(body)) {
+            OrderJson.readOrders(parser, this::put);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            finished = true;
+        }
+    }
+
+    void put(Order order) {
+        try {
+            queue.put(order);
+            produced.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing orders", e);
+        }
+    }
+
+    // Next parsed order, or null if none is ready yet.
+    Order poll() {
+        return queue.poll();
+    }
+
+    long produced() {
+        return produced.get();
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    // True once parsing has ended and every parsed order has been taken.
+    boolean isExhausted() {
+        return finished && queue.isEmpty();
+    }
+
+    Exception failure() {
+        return failure;
+    }
+}
@@ -0,0 +1,205 @@
+package com.kitchen;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Maps order ids to small int handles so the order tables can key on an int instead of a String.
+// The id-to-handle direction is an open-addressing table of handles probed by the id's hash, so
+// interning allocates nothing beyond the id array itself. Each intern takes a reference and each
+// release gives one back; when the last reference goes, the id is dropped and its handle is handed
+// to the next new id, so the table is as big as the orders in the kitchen, not every order it has
+// seen. Dropped entries leave a tombstone in their slot, and the slots are rebuilt once live
+// entries and tombstones fill half of them.
+//
+// Writers synchronize; handleOf never locks. A writer stores an entry's id and hash before
+// publishing its handle in a slot (release stores, read back with acquire loads), and a rebuilt
+// table is filled in completely before it replaces the old one, so a reader sees either the old
+// table or the new one, never a half-built entry. A reader racing a release can still get the
+// handle back after it has been handed on, so callers check the order they find under it.
+final class OrderIds {
+    private static final int FREE = -1;
+    private static final int TOMBSTONE = -2;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle ID = MethodHandles.arrayElementVarHandle(String[].class);
+
+    // ids, hashes and refs are indexed by handle; slots hold handles and are twice as long.
+    private static final class Table {
+        private final String[] ids;
+        private final int[] hashes;
+        private final int[] refs;
+        private final int[] slots;
+
+        private Table(int capacity) {
+            this.ids = new String[capacity];
+            this.hashes = new int[capacity];
+            this.refs = new int[capacity];
+            this.slots = new int[capacity * 2];
+            Arrays.fill(slots, FREE);
+        }
+    }
+
+    private volatile Table table = new Table(16);
+    // Ids currently interned, slots that are not FREE, and the lowest handle never handed out.
+    private int live;
+    private int used;
+    private int limit;
+    // Released handles, most recent last. An entry whose handle internAt has taken again is stale
+    // and skipped when popped.
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+
+    synchronized int intern(String id) {
+        int hash = hash(id);
+        int existing = find(table, id, hash);
+        if (existing >= 0) {
+            table.refs[existing]++;
+            return existing;
+        }
+        int handle = popFree();
+        if (handle < 0) {
+            handle = limit++;
+        }
+        add(handle, id, hash);
+        return handle;
+    }
+
+    // Recovery: gives id the handle it had before the restart. Handles can arrive out of order
+    // (concurrent placements intern and log in different orders), so skipped handles are free for
+    // new ids until their own id arrives. Returns false if id already has a different handle or
+    // the handle belongs to another id.
+    synchronized boolean internAt(int handle, String id) {
+        int hash = hash(id);
+        int existing = find(table, id, hash);
+        if (existing >= 0) {
+            if (existing != handle) {
+                return false;
+            }
+            table.refs[existing]++;
+            return true;
+        }
+        if (handle < 0 || (handle < table.ids.length && table.ids[handle] != null)) {
+            return false;
+        }
+        while (limit < handle) {
+            pushFree(limit++);
+        }
+        if (limit == handle) {
+            limit++;
+        }
+        add(handle, id, hash);
+        return true;
+    }
+
+    // Gives back one reference to the handle's id; the last one drops the id and frees the handle.
+    synchronized void release(int handle) {
+        Table current = table;
+        if (handle < 0 || handle >= current.ids.length || current.ids[handle] == null) {
+            throw new IllegalArgumentException("handle " + handle + " is not in use");
+        }
+        if (--current.refs[handle] > 0) {
+            return;
+        }
+        int mask = current.slots.length - 1;
+        int i = current.hashes[handle] & mask;
+        while (current.slots[i] != handle) {
+            i = (i + 1) & mask;
+        }
+        SLOT.setRelease(current.slots, i, TOMBSTONE);
+        ID.setRelease(current.ids, handle, null);
+        pushFree(handle);
+        live--;
+    }
+
+    // The handle of an id that is interned, or -1.
+    int handleOf(String id) {
+        return find(table, id, hash(id));
+    }
+
+    // Number of ids interned.
+    synchronized int size() {
+        return live;
+    }
+
+    private static int find(Table table, String id, int hash) {
+        int[] slots = table.slots;
+        int mask = slots.length - 1;
+        for (int i = hash & mask, handle; (handle = (int) SLOT.getAcquire(slots, i)) != FREE; i = (i + 1) & mask) {
+            if (handle != TOMBSTONE && table.hashes[handle] == hash && id.equals(ID.getAcquire(table.ids, handle))) {
+                return handle;
+            }
+        }
+        return FREE;
+    }
+
+    // The caller holds the monitor and handle is not in use.
+    private void add(int handle, String id, int hash) {
+        if (handle >= table.ids.length || used + 1 > table.ids.length) {
+            int capacity = table.ids.length;
+            while (capacity <= handle || (live + 1) * 2 > capacity) {
+                capacity *= 2;
+            }
+            rebuild(capacity);
+        }
+        Table current = table;
+        current.hashes[handle] = hash;
+        current.refs[handle] = 1;
+        ID.setRelease(current.ids, handle, id);
+        int mask = current.slots.length - 1;
+        int i = hash & mask;
+        while (current.slots[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        if (current.slots[i] == FREE) {
+            used++;
+        }
+        SLOT.setRelease(current.slots, i, handle);
+        live++;
+    }
+
+    // Builds a table of the given capacity with every live entry re-slotted and no tombstones,
+    // then swaps it in.
+    private void rebuild(int capacity) {
+        Table old = table;
+        Table rebuilt = new Table(capacity);
+        int mask = rebuilt.slots.length - 1;
+        for (int handle = 0; handle < old.ids.length; handle++) {
+            String id = old.ids[handle];
+            if (id == null) {
+                continue;
+            }
+            rebuilt.ids[handle] = id;
+            rebuilt.hashes[handle] = old.hashes[handle];
+            rebuilt.refs[handle] = old.refs[handle];
+            int i = old.hashes[handle] & mask;
+            while (rebuilt.slots[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            rebuilt.slots[i] = handle;
+        }
+        used = live;
+        table = rebuilt;
+    }
+
+    private int popFree() {
+        while (freeCount > 0) {
+            int handle = freeHandles[--freeCount];
+            if (handle >= table.ids.length || table.ids[handle] == null) {
+                return handle;
+            }
+        }
+        return FREE;
+    }
+
+    private void pushFree(int handle) {
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,186 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Streaming reader for the orders payload: either a bare array of orders or {"orders": [...]}.
+// Order fields are bound directly from parser events; no tree or intermediate map is built.
+final class OrderJson {
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int TEMPERATURE = 2;
+    private static final int SHELF_LIFE = 3;
+    private static final int DECAY_RATE = 4;
+    private static final int FIELD_COUNT = 5;
+
+    // Accepted spellings per field, most preferred first. When an order carries several of them,
+    // the first non-null one in this order wins.
+    private static final String[][] ALIASES = {
+            {"id", "orderId"},
+            {"name"},
+            {"temp", "temperature"},
+            {"shelfLifeSeconds", "shelfLife", "shelfLifeSec", "freshness"},
+            {"decayRate", "decay_rate"}
+    };
+
+    private static final Map<String, int[]> FIELDS_BY_NAME = new HashMap<>();
+
+    static {
+        for (int field = 0; field < ALIASES.length; field++) {
+            for (int rank = 0; rank < ALIASES[field].length; rank++) {
+                FIELDS_BY_NAME.put(ALIASES[field][rank], new int[]{field, rank});
+            }
+        }
+    }
+
+    private OrderJson() {
+    }
+
+    // Reads every order in the payload and hands it to the sink as soon as its closing brace has
+    // been parsed. Returns the number of orders read.
+    static long readOrders(JsonParser parser, Consumer<Order> sink) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = seekOrdersField(parser);
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Orders payload must be an array (or {\"orders\": [...]})");
+        }
+
+        Binder binder = new Binder();
+        long count = 0;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Order must be a JSON object (got " + token + ")");
+            }
+            sink.accept(binder.read(parser));
+            count++;
+        }
+        return count;
+    }
+
+    private static JsonToken seekOrdersField(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            token = parser.nextToken();
+            if (field.equals("orders")) {
+                return token;
+            }
+            parser.skipChildren();
+        }
+        return token;
+    }
+
+    private static final class Binder {
+        private final Object[] values = new Object[FIELD_COUNT];
+        private final int[] ranks = new int[FIELD_COUNT];
+
+        private Order read(JsonParser parser) throws IOException {
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                values[i] = null;
+                ranks[i] = Integer.MAX_VALUE;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int[] field = FIELDS_BY_NAME.get(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (field == null || value.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                Object scalar = scalar(parser, value);
+                if (scalar != null && field[1] < ranks[field[0]]) {
+                    values[field[0]] = scalar;
+                    ranks[field[0]] = field[1];
+                }
+            }
+            return toOrder();
+        }
+
+        private static Object scalar(JsonParser parser, JsonToken token) throws IOException {
+            switch (token) {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return parser.getNumberValue();
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    return parser.getBooleanValue();
+                default:
+                    return parser.getText();
+            }
+        }
+
+        private Order toOrder() {
+            String id = asString(values[ID]);
+            String name = asString(values[NAME]);
+            if (id == null || id.isBlank()) {
+                throw new IllegalArgumentException("Order missing id");
+            }
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Order missing name for id=" + id);
+            }
+
+            Order.Temperature temp = parseTemperature(asString(values[TEMPERATURE]));
+            int shelfLifeSeconds = asInt(values[SHELF_LIFE]);
+            Object decay = values[DECAY_RATE];
+            double decayRate = (decay == null) ? 1.0 : asDouble(decay);
+            return new Order(id, name, temp, shelfLifeSeconds, decayRate);
+        }
+    }
+
+    private static String asString(Object o) {
+        if (o == null) {
+            return null;
+        }
+        return String.valueOf(o);
+    }
+
+    private static int asInt(Object o) {
+        if (o instanceof Number) {
+            return ((Number) o).intValue();
+        }
+        if (o == null) {
+            throw new IllegalArgumentException("Missing int field");
+        }
+        return Integer.parseInt(String.valueOf(o));
+    }
+
+    private static double asDouble(Object o) {
+        if (o instanceof Number) {
+            return ((Number) o).doubleValue();
+        }
+        if (o == null) {
+            throw new IllegalArgumentException("Missing double field");
+        }
+        return Double.parseDouble(String.valueOf(o));
+    }
+
+    static Order.Temperature parseTemperature(String s) {
+        if (s == null) {
+            throw new IllegalArgumentException("Missing temperature");
+        }
+        String v = s.trim().toUpperCase();
+        if (v.equals("HOT")) {
+            return Order.Temperature.HOT;
+        }
+        if (v.equals("COLD")) {
+            return Order.Temperature.COLD;
+        }
+        if (v.equals("ROOM") || v.equals("AMBIENT")) {
+            return Order.Temperature.ROOM;
+        }
+        if (v.equals("FROZEN")) {
+            return Order.Temperature.FROZEN;
+        }
+        throw new IllegalArgumentException("Unknown temperature: " + s);
+    }
+}
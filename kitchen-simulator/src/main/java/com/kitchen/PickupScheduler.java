@@ -0,0 +1,13 @@
+package com.kitchen;
+
+// Runs an order's lifecycle in wall-clock time: the placement, then the pickup once its delay has
+// passed. Implementations decide which threads do the work and record how late each pickup ran.
+public interface PickupScheduler extends AutoCloseable {
+    void submit(Runnable placement, Runnable pickup, long pickupDelayNanos);
+
+    SchedulingDrift getDrift();
+
+    // Stops running pickups that have not fired yet.
+    @Override
+    void close();
+}
@@ -0,0 +1,35 @@
+package com.kitchen;
+
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Places on the submitting thread and queues the pickup on a shared scheduled pool. The pool is
+// owned by the caller.
+public final class PooledPickupScheduler implements PickupScheduler {
+    private final ScheduledExecutorService executor;
+    private final SchedulingDrift drift = new SchedulingDrift();
+
+    public PooledPickupScheduler(ScheduledExecutorService executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    @Override
+    public void submit(Runnable placement, Runnable pickup, long pickupDelayNanos) {
+        placement.run();
+        long dueNanos = System.nanoTime() + pickupDelayNanos;
+        executor.schedule(() -> {
+            drift.record(System.nanoTime() - dueNanos);
+            pickup.run();
+        }, pickupDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public SchedulingDrift getDrift() {
+        return drift;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,68 @@
+package com.kitchen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// How late scheduled pickups ran compared to their due time. Samples go into power-of-two
+// microsecond buckets, so recording is lock-free and percentiles are accurate to a factor of two.
+public final class SchedulingDrift {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long driftNanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(driftNanos));
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) totalMicros.sum() / n;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    // Upper bound of the bucket holding the given quantile (0..1) of the samples.
+    public long getPercentileMicros(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be within [0, 1]");
+        }
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return bucket == 0 ? 0 : Math.min(maxMicros.get(), (1L << bucket) - 1);
+            }
+        }
+        return maxMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1fms p50<=%.1fms p99<=%.1fms max=%.1fms",
+                getCount(),
+                getMeanMicros() / 1000.0,
+                getPercentileMicros(0.50) / 1000.0,
+                getPercentileMicros(0.99) / 1000.0,
+                getMaxMicros() / 1000.0);
+    }
+}
@@ -1,28 +1,83 @@
 package com.kitchen;
 
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.LongSupplier;
 
 public class ShelfManager {
+    private static final Comparator<IndexEntry> BY_EXPIRATION =
+            Comparator.<IndexEntry>comparingLong(e -> e.expiresAtMicros).thenComparingLong(e -> e.sequence);
+    private static final Comparator<IndexEntry> BY_RANK =
+            Comparator.<IndexEntry>comparingDouble(e -> e.rank).thenComparingLong(e -> e.sequence);
+
     private final int capacity;
     private final LongSupplier nowMicros;
 
-    private final PriorityQueue<StoredOrder> expiringHeap;
-    private final Map<String, StoredOrder> orderMap;
+    private final OrderIds orderIds;
+    private final ExpiryHeap expiringHeap;
+    // Shelf contents by order handle.
+    private final HandleTable<IndexEntry> entries;
+    private final Map<Order.Temperature, NavigableSet<IndexEntry>> byTemperature;
+    private final DiscardPolicy discardPolicy;
+    // Discard order for policies other than SOONEST_EXPIRY, which uses expiringHeap; null otherwise.
+    private final NavigableSet<IndexEntry> byRank;
+    // Search key for peekMostUrgent, reused since the shelf is only used under its storage lock.
+    private final IndexEntry urgencyProbe = new IndexEntry(null, 0, Long.MAX_VALUE, 0, false);
+    private long nextSequence;
+
+    private static final class IndexEntry {
+        private final StoredOrder storedOrder;
+        // Only ever changed on urgencyProbe, which is never in a set.
+        private long expiresAtMicros;
+        private final long sequence;
+        private final double rank;
+        // Whether the shelf interned the order's handle itself and gives it back on removal.
+        private final boolean interned;
+
+        private IndexEntry(StoredOrder storedOrder, long expiresAtMicros, long sequence, double rank, boolean interned) {
+            this.storedOrder = storedOrder;
+            this.expiresAtMicros = expiresAtMicros;
+            this.sequence = sequence;
+            this.rank = rank;
+            this.interned = interned;
+        }
+    }
 
     public ShelfManager(int capacity) {
         this(capacity, () -> TimeUnit.NANOSECONDS.toMicros(System.nanoTime()));
     }
 
     public ShelfManager(int capacity, LongSupplier nowMicros) {
+        this(capacity, nowMicros, new OrderIds());
+    }
+
+    // Shares the kitchen's handles, so orders placed by the kitchen are never interned twice.
+    ShelfManager(int capacity, LongSupplier nowMicros, OrderIds orderIds) {
+        this(capacity, nowMicros, orderIds, DiscardPolicy.SOONEST_EXPIRY);
+    }
+
+    ShelfManager(int capacity, LongSupplier nowMicros, OrderIds orderIds, DiscardPolicy discardPolicy) {
+        if (discardPolicy == null) {
+            throw new IllegalArgumentException("discardPolicy cannot be null");
+        }
         this.capacity = capacity;
         this.nowMicros = nowMicros;
-        this.expiringHeap = new PriorityQueue<>(Comparator.comparingLong(ShelfManager::estimatedExpirationMicros));
-        this.orderMap = new HashMap<>();
+        this.orderIds = orderIds;
+        this.expiringHeap = new ExpiryHeap();
+        this.entries = new HandleTable<>(Math.min(capacity, 1024));
+        this.byTemperature = new EnumMap<>(Order.Temperature.class);
+        for (Order.Temperature temperature : Order.Temperature.values()) {
+            byTemperature.put(temperature, new TreeSet<>(BY_EXPIRATION));
+        }
+        this.discardPolicy = discardPolicy;
+        this.byRank = (discardPolicy == DiscardPolicy.SOONEST_EXPIRY) ? null : new TreeSet<>(BY_RANK);
     }
 
     public ShelfManager() {
@@ -33,86 +88,161 @@ public class ShelfManager {
         if (storedOrder == null) {
             throw new IllegalArgumentException("storedOrder cannot be null");
         }
+        // Orders the kitchen did not place have no handle yet; the shelf interns one and releases
+        // it when the order leaves, so ids do not pile up in the table.
+        boolean interned = false;
+        if (storedOrder.handle < 0) {
+            storedOrder.handle = orderIds.intern(storedOrder.getOrder().getId());
+            interned = true;
+        }
+        IndexEntry existing = entries.get(storedOrder.handle);
+        if (existing != null && existing.interned) {
+            // The entry being replaced holds a reference to the same id; keep exactly one.
+            if (interned) {
+                orderIds.release(storedOrder.handle);
+            }
+            if (existing.storedOrder != storedOrder) {
+                existing.storedOrder.handle = -1;
+            }
+            interned = true;
+        }
 
-        String orderId = storedOrder.getOrder().getId();
-        StoredOrder existing = orderMap.put(orderId, storedOrder);
+        double rank = (byRank == null) ? 0 : discardPolicy.rank(storedOrder);
+        IndexEntry entry = new IndexEntry(storedOrder, storedOrder.getExpiresAtMicros(), nextSequence++, rank, interned);
+        entries.put(storedOrder.handle, entry);
         if (existing != null) {
-            existing.deactivate();
+            unindex(existing);
         }
 
         expiringHeap.add(storedOrder);
+        byTemperature.get(storedOrder.getOrder().getTemperature()).add(entry);
+        if (byRank != null) {
+            byRank.add(entry);
+        }
     }
 
     public void removeOrder(String orderId) {
-        StoredOrder storedOrder = orderMap.remove(orderId);
-        if (storedOrder != null) {
-            storedOrder.deactivate();
+        int handle = orderIds.handleOf(orderId);
+        if (handle >= 0) {
+            removeHandle(handle);
+        }
+    }
+
+    // Removes the order by the handle the kitchen assigned, skipping the id lookup.
+    void removeOrder(StoredOrder storedOrder) {
+        IndexEntry entry = entries.get(storedOrder.handle);
+        if (entry != null && entry.storedOrder == storedOrder) {
+            removeHandle(storedOrder.handle);
+        }
+    }
+
+    /**
+     * Returns the shelf order of the given temperature that expires soonest without having
+     * expired yet at {@code nowMicros}, or null if there is none. The order stays on the shelf.
+     */
+    public StoredOrder peekMostUrgent(Order.Temperature temperature, long nowMicros) {
+        NavigableSet<IndexEntry> index = byTemperature.get(temperature);
+        if (index == null || index.isEmpty()) {
+            return null;
         }
+
+        // Everything expiring at or before nowMicros has already expired; start right after it.
+        urgencyProbe.expiresAtMicros = nowMicros;
+        IndexEntry entry = index.higher(urgencyProbe);
+        return entry == null ? null : entry.storedOrder;
+    }
+
+    // The shelf order that expires first, whether or not it has expired yet. The order stays on the shelf.
+    public StoredOrder peekNextToExpire() {
+        return expiringHeap.peek();
     }
 
     public StoredOrder pollNextToExpire() {
-        long nowMicros = this.nowMicros.getAsLong();
+        return pollNextToExpire(this.nowMicros.getAsLong());
+    }
 
+    // Removes and returns the shelf order that expires first among those not yet expired at
+    // nowMicros; already-expired orders in front of it are dropped from the shelf.
+    public StoredOrder pollNextToExpire(long nowMicros) {
         while (!expiringHeap.isEmpty()) {
-            StoredOrder next = expiringHeap.poll();
-            if (!next.isActive()) {
-                continue;
-            }
+            StoredOrder next = expiringHeap.peek();
+            removeHandle(next.handle);
 
             if (next.isExpired(nowMicros)) {
-                orderMap.remove(next.getOrder().getId());
                 continue;
             }
-
-            orderMap.remove(next.getOrder().getId());
-            next.deactivate();
             return next;
         }
 
         return null;
     }
 
-    public boolean isFull() {
-        return size() >= capacity;
-    }
+    // Removes and returns the order the discard policy gives up first among those not yet expired
+    // at nowMicros; already-expired orders are dropped from the shelf first, as in pollNextToExpire.
+    public StoredOrder pollDiscardVictim(long nowMicros) {
+        if (byRank == null) {
+            return pollNextToExpire(nowMicros);
+        }
 
-    public int size() {
-        return orderMap.size();
+        dropExpired(nowMicros);
+        if (byRank.isEmpty()) {
+            return null;
+        }
+        StoredOrder victim = byRank.first().storedOrder;
+        removeHandle(victim.handle);
+        return victim;
     }
 
-    private static long estimatedExpirationMicros(StoredOrder storedOrder) {
-        if (storedOrder == null) {
-            return Long.MAX_VALUE;
-        }
-        if (!storedOrder.isActive()) {
-            return Long.MAX_VALUE;
+    // Drops every order that has expired at nowMicros from the shelf, as pollDiscardVictim does
+    // before choosing. The kitchen discards and logs expired orders itself before asking for a
+    // victim, so it never loses one here.
+    void dropExpired(long nowMicros) {
+        StoredOrder next;
+        while ((next = expiringHeap.peek()) != null && next.isExpired(nowMicros)) {
+            removeHandle(next.handle);
         }
+    }
 
-        Order order = storedOrder.getOrder();
-        if (order == null) {
-            return Long.MAX_VALUE;
+    // Visits the shelf orders in the order they were added, which breaks ties between equally
+    // urgent orders; a restored shelf re-adds them in this order.
+    void forEachInPlacementOrder(Consumer<StoredOrder> action) {
+        List<IndexEntry> ordered = new ArrayList<>(entries.size());
+        entries.forEach(ordered::add);
+        ordered.sort(Comparator.comparingLong(e -> e.sequence));
+        for (IndexEntry entry : ordered) {
+            action.accept(entry.storedOrder);
         }
+    }
 
-        double remainingFreshnessMicros = storedOrder.getRemainingFreshnessMicros();
-        if (remainingFreshnessMicros <= 0) {
-            return storedOrder.getLastUpdatedMicros();
-        }
+    public DiscardPolicy getDiscardPolicy() {
+        return discardPolicy;
+    }
 
-        double decayRate = order.getDecayRate();
-        if (decayRate <= 0) {
-            return Long.MAX_VALUE;
-        }
+    public boolean isFull() {
+        return size() >= capacity;
+    }
 
-        double multiplier = storedOrder.getStorageType().isIdealFor(order) ? 1.0 : 2.0;
-        double microsUntilExpire = remainingFreshnessMicros / (decayRate * multiplier);
+    public int size() {
+        return entries.size();
+    }
 
-        if (microsUntilExpire >= (double) Long.MAX_VALUE) {
-            return Long.MAX_VALUE;
+    private void removeHandle(int handle) {
+        IndexEntry entry = entries.remove(handle);
+        if (entry != null) {
+            unindex(entry);
+            if (entry.interned) {
+                orderIds.release(handle);
+                entry.storedOrder.handle = -1;
+            }
         }
+    }
 
-        long lastUpdated = storedOrder.getLastUpdatedMicros();
-        long delta = (long) Math.ceil(microsUntilExpire);
-        long candidate = lastUpdated + delta;
-        return candidate < lastUpdated ? Long.MAX_VALUE : candidate;
+    private void unindex(IndexEntry entry) {
+        entry.storedOrder.deactivate();
+        expiringHeap.remove(entry.storedOrder);
+        byTemperature.get(entry.storedOrder.getOrder().getTemperature()).remove(entry);
+        if (byRank != null) {
+            byRank.remove(entry);
+        }
     }
 }
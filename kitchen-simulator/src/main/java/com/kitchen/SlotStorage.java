@@ -0,0 +1,69 @@
+package com.kitchen;
+
+// Fixed-capacity storage for the heater, cooler and freezer. Orders sit in an array of slots;
+// free slots are chained through an int free-list and every order remembers its own slot, so
+// adding and removing are O(1) and allocate nothing. Not thread-safe.
+final class SlotStorage {
+    private static final int NONE = -1;
+
+    private final StoredOrder[] slots;
+    private final int[] nextFree;
+    private int freeHead;
+    private int size;
+
+    SlotStorage(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0");
+        }
+        this.slots = new StoredOrder[capacity];
+        this.nextFree = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            nextFree[i] = (i + 1 < capacity) ? i + 1 : NONE;
+        }
+        this.freeHead = (capacity > 0) ? 0 : NONE;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return freeHead == NONE;
+    }
+
+    void add(StoredOrder storedOrder) {
+        if (storedOrder.slot != NONE) {
+            throw new IllegalStateException("Order already occupies a slot: " + storedOrder);
+        }
+        if (freeHead == NONE) {
+            throw new IllegalStateException("Storage is full");
+        }
+        int slot = freeHead;
+        freeHead = nextFree[slot];
+        slots[slot] = storedOrder;
+        storedOrder.slot = slot;
+        size++;
+    }
+
+    // Returns false if the order does not occupy a slot here.
+    boolean remove(StoredOrder storedOrder) {
+        int slot = storedOrder.slot;
+        if (slot < 0 || slot >= slots.length || slots[slot] != storedOrder) {
+            return false;
+        }
+        slots[slot] = null;
+        storedOrder.slot = NONE;
+        nextFree[slot] = freeHead;
+        freeHead = slot;
+        size--;
+        return true;
+    }
+
+    StoredOrder get(int slot) {
+        return slots[slot];
+    }
+}
@@ -0,0 +1,157 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+// Request body for POST /solve that writes {"actions": [...]} straight from the kitchen ledger.
+// Actions are serialized a chunk at a time as the HTTP client asks for data, so memory use is
+// one chunk regardless of ledger size and the first bytes go out before the last action is
+// written. With gzip the chunks are sync-flushed through a GZIPOutputStream.
+final class SolutionPublisher implements HttpRequest.BodyPublisher {
+    static final int DEFAULT_ACTIONS_PER_CHUNK = 1024;
+
+    private final KitchenService kitchen;
+    private final JsonFactory jsonFactory;
+    private final boolean gzip;
+    private final int actionsPerChunk;
+
+    SolutionPublisher(KitchenService kitchen, JsonFactory jsonFactory, boolean gzip, int actionsPerChunk) {
+        if (actionsPerChunk <= 0) {
+            throw new IllegalArgumentException("actionsPerChunk must be > 0");
+        }
+        this.kitchen = kitchen;
+        this.jsonFactory = jsonFactory;
+        this.gzip = gzip;
+        this.actionsPerChunk = actionsPerChunk;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        ChunkSubscription subscription = new ChunkSubscription(subscriber, kitchen.getLedgerSize());
+        subscriber.onSubscribe(subscription);
+    }
+
+    // Exposes the written bytes as one chunk and then starts over with the same backing array.
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+        private ChunkBuffer(int size) {
+            super(size);
+        }
+
+        private ByteBuffer drain() {
+            ByteBuffer chunk = ByteBuffer.wrap(Arrays.copyOf(buf, count));
+            reset();
+            return chunk;
+        }
+    }
+
+    private final class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final long total;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final ChunkBuffer buffer = new ChunkBuffer(64 * 1024);
+
+        private JsonGenerator generator;
+        private long next;
+        private volatile boolean done;
+
+        private ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, long total) {
+            this.subscriber = subscriber;
+            this.total = total;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        // Only one thread emits at a time; re-entrant or concurrent request() calls just bump
+        // the work counter and the emitting thread loops again.
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done && demand.get() > 0) {
+                    ByteBuffer chunk;
+                    try {
+                        chunk = nextChunk();
+                    } catch (IOException | RuntimeException e) {
+                        done = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                    demand.decrementAndGet();
+                    subscriber.onNext(chunk);
+                    if (next == total && generator.isClosed()) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private ByteBuffer nextChunk() throws IOException {
+            if (generator == null) {
+                OutputStream out = gzip ? new GZIPOutputStream(buffer, 8 * 1024, true) : buffer;
+                generator = jsonFactory.createGenerator(out);
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("actions");
+            }
+
+            long end = Math.min(total, next + actionsPerChunk);
+            kitchen.visitLedger(next, end, this::writeAction);
+            next = end;
+
+            if (next == total) {
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.close();
+            } else {
+                generator.flush();
+            }
+            return buffer.drain();
+        }
+
+        private void writeAction(long timestampMicros, String orderId, ActionType action, StorageType target) {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("timestamp", timestampMicros);
+                generator.writeStringField("id", orderId);
+                generator.writeStringField("action", action.label());
+                generator.writeStringField("target", target.location());
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
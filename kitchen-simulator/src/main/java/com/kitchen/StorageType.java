@@ -6,6 +6,12 @@ public enum StorageType {
     FREEZER,
     SHELF;
 
+    private final String location = name().toLowerCase();
+
+    public String location() {
+        return location;
+    }
+
     public boolean isIdealFor(Order order) {
         if (order == null) {
             return false;
@@ -6,33 +6,84 @@ public class StoredOrder {
     private static final long MICROS_PER_SECOND = 1_000_000L;
 
     private final Order order;
-    private StorageType storageType;
     private final long placedTimeMicros;
-    private long lastUpdatedMicros;
-    private double remainingFreshnessMicros;
+    private volatile Segment segment;
     private boolean active;
 
+    // Position in the owning ExpiryHeap, -1 when not in one.
+    int heapIndex = -1;
+    // Ledger handle of the order id, assigned by the kitchen when the order is placed.
+    int handle = -1;
+    // Index in the owning SlotStorage, -1 when not in one.
+    int slot = -1;
+
+    // Freshness decays linearly while an order stays in one storage, so each stay is described by
+    // where it started, how much freshness was left then and how fast it decays. The segment is
+    // immutable and replaced as a whole on a move, which keeps the read methods free of locks and
+    // writes.
+    private static final class Segment {
+        private final StorageType storageType;
+        private final long startMicros;
+        private final double freshnessAtStartMicros;
+        private final double decayPerMicro;
+        private final long expiresAtMicros;
+
+        private Segment(Order order, StorageType storageType, long startMicros, double freshnessAtStartMicros) {
+            this.storageType = storageType;
+            this.startMicros = startMicros;
+            this.freshnessAtStartMicros = freshnessAtStartMicros;
+            double multiplier = storageType.isIdealFor(order) ? 1.0 : 2.0;
+            this.decayPerMicro = order.getDecayRate() * multiplier;
+            this.expiresAtMicros = expiresAt(startMicros, freshnessAtStartMicros, decayPerMicro);
+        }
+
+        private double remainingAt(long currentMicros) {
+            if (currentMicros >= expiresAtMicros) {
+                return 0;
+            }
+            long elapsedMicros = currentMicros - startMicros;
+            if (elapsedMicros <= 0 || decayPerMicro <= 0) {
+                return freshnessAtStartMicros;
+            }
+            return Math.max(0, freshnessAtStartMicros - elapsedMicros * decayPerMicro);
+        }
+
+        // First instant at which the remaining freshness has decayed to zero. Some time has to
+        // pass first: an order placed with no freshness left only expires after its placement.
+        private static long expiresAt(long startMicros, double freshnessMicros, double decayPerMicro) {
+            if (decayPerMicro <= 0) {
+                return freshnessMicros <= 0 ? saturatedAdd(startMicros, 1) : Long.MAX_VALUE;
+            }
+
+            double untilExpired = Math.max(1.0, Math.ceil(freshnessMicros / decayPerMicro));
+            if (untilExpired >= (double) Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            return saturatedAdd(startMicros, (long) untilExpired);
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return sum < a ? Long.MAX_VALUE : sum;
+        }
+    }
+
     public StoredOrder(Order order, StorageType storageType, long placedTimeMicros) {
-        this.order = Objects.requireNonNull(order, "order");
-        this.storageType = Objects.requireNonNull(storageType, "storageType");
-        this.placedTimeMicros = placedTimeMicros;
-        this.lastUpdatedMicros = placedTimeMicros;
-        this.remainingFreshnessMicros = (double) order.getShelfLifeSeconds() * MICROS_PER_SECOND;
-        this.active = true;
+        this(order, storageType, placedTimeMicros, placedTimeMicros,
+                (double) Objects.requireNonNull(order, "order").getShelfLifeSeconds() * MICROS_PER_SECOND);
     }
 
     public StoredOrder(
             Order order,
             StorageType storageType,
             long placedTimeMicros,
-            long lastUpdatedMicros,
-            double remainingFreshnessMicros
+            long segmentStartMicros,
+            double freshnessAtSegmentStartMicros
     ) {
         this.order = Objects.requireNonNull(order, "order");
-        this.storageType = Objects.requireNonNull(storageType, "storageType");
         this.placedTimeMicros = placedTimeMicros;
-        this.lastUpdatedMicros = lastUpdatedMicros;
-        this.remainingFreshnessMicros = remainingFreshnessMicros;
+        this.segment = new Segment(order, Objects.requireNonNull(storageType, "storageType"),
+                segmentStartMicros, freshnessAtSegmentStartMicros);
         this.active = true;
     }
 
@@ -41,73 +92,54 @@ public class StoredOrder {
     }
 
     public StorageType getStorageType() {
-        return storageType;
+        return segment.storageType;
     }
 
     public long getPlacedTimeMicros() {
         return placedTimeMicros;
     }
 
-    public long getLastUpdatedMicros() {
-        return lastUpdatedMicros;
+    public long getSegmentStartMicros() {
+        return segment.startMicros;
     }
 
-    public double getRemainingFreshnessMicros() {
-        return remainingFreshnessMicros;
+    public long getExpiresAtMicros() {
+        return segment.expiresAtMicros;
     }
 
-    public boolean isActive() {
-        return active;
+    public double getRemainingFreshnessMicros(long currentMicros) {
+        return segment.remainingAt(currentMicros);
     }
 
-    public void deactivate() {
-        this.active = false;
+    public boolean isExpired(long currentMicros) {
+        return currentMicros >= segment.expiresAtMicros;
     }
 
-    public void updateFreshness(long currentMicros) {
-        if (!active) {
-            return;
-        }
-
-        long elapsedMicros = currentMicros - lastUpdatedMicros;
-        if (elapsedMicros <= 0) {
-            lastUpdatedMicros = currentMicros;
-            return;
-        }
-
-        double multiplier = storageType.isIdealFor(order) ? 1.0 : 2.0;
-        double decay = elapsedMicros * order.getDecayRate() * multiplier;
-
-        remainingFreshnessMicros -= decay;
-        lastUpdatedMicros = currentMicros;
-
-        if (remainingFreshnessMicros <= 0) {
-            remainingFreshnessMicros = 0;
-            active = false;
-        }
+    public boolean isActive() {
+        return active;
     }
 
-    public boolean isExpired(long currentMicros) {
-        updateFreshness(currentMicros);
-        return !active;
+    public void deactivate() {
+        this.active = false;
     }
 
     public void moveTo(StorageType newStorage, long currentMicros) {
         Objects.requireNonNull(newStorage, "newStorage");
-        updateFreshness(currentMicros);
-        this.storageType = newStorage;
+        Segment current = segment;
+        this.segment = new Segment(order, newStorage, currentMicros, current.remainingAt(currentMicros));
     }
 
     @Override
     public String toString() {
+        Segment current = segment;
         return "StoredOrder{" +
                 "order=" + order +
-                ", storageType=" + storageType +
+                ", storageType=" + current.storageType +
                 ", placedTimeMicros=" + placedTimeMicros +
-                ", lastUpdatedMicros=" + lastUpdatedMicros +
-                ", remainingFreshnessMicros=" + remainingFreshnessMicros +
+                ", segmentStartMicros=" + current.startMicros +
+                ", freshnessAtSegmentStartMicros=" + current.freshnessAtStartMicros +
+                ", expiresAtMicros=" + current.expiresAtMicros +
                 ", active=" + active +
                 '}';
     }
 }
-
@@ -0,0 +1,227 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+// Records a wall-clock run to a trace file that TraceReplay can run again on a virtual clock. The
+// trace is newline-delimited JSON: a config line with the kitchen's capacities and discard policy,
+// one line per place, pickup and reap in the order they started, and finally the ledger the run
+// produced. Each operation reads the clock once, when it is recorded, and the kitchen sees that
+// same timestamp for the whole operation (the kitchen must be built on nowMicros()), so replaying
+// the trace feeds the kitchen exactly the times it saw during the run. Write failures do not stop
+// the kitchen; the first one is rethrown by finish and close.
+public final class TraceRecorder implements AutoCloseable {
+    static final String CONFIG = "config";
+    static final String PLACE = "place";
+    static final String PICKUP = "pickup";
+    static final String REAP = "reap";
+    static final String ACTION = "action";
+
+    private static final long UNPINNED = Long.MIN_VALUE;
+
+    private final LongSupplier clock;
+    private final JsonGenerator generator;
+    private final ThreadLocal<long[]> pinnedMicros = ThreadLocal.withInitial(() -> new long[]{UNPINNED});
+    private long events;
+    private IOException failure;
+    private boolean closed;
+
+    public TraceRecorder(
+            Path path,
+            JsonFactory jsonFactory,
+            LongSupplier clock,
+            int idealCapacity,
+            int shelfCapacity,
+            String discardPolicy,
+            long expectedPickupDelayMicros
+    ) throws IOException {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock cannot be null");
+        }
+        DiscardPolicy.forName(discardPolicy, expectedPickupDelayMicros); // fails fast on unknown names
+        this.clock = clock;
+        this.generator = jsonFactory.createGenerator(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        generator.writeStartObject();
+        generator.writeStringField("event", CONFIG);
+        generator.writeNumberField("idealCapacity", idealCapacity);
+        generator.writeNumberField("shelfCapacity", shelfCapacity);
+        generator.writeStringField("discardPolicy", discardPolicy);
+        generator.writeNumberField("expectedPickupDelayMicros", expectedPickupDelayMicros);
+        generator.writeEndObject();
+    }
+
+    // The clock to build the recorded kitchen on: the operation's recorded timestamp inside a
+    // recorded operation, the underlying clock anywhere else.
+    public long nowMicros() {
+        long pinned = pinnedMicros.get()[0];
+        return (pinned != UNPINNED) ? pinned : clock.getAsLong();
+    }
+
+    // Wraps the kitchen so every place, pickup and reap that goes through the wrapper is recorded.
+    public KitchenService record(KitchenService kitchen) {
+        if (kitchen == null) {
+            throw new IllegalArgumentException("kitchen cannot be null");
+        }
+        return new Recording(kitchen);
+    }
+
+    public synchronized long getEventCount() {
+        return events;
+    }
+
+    // Appends the kitchen's ledger as the expected outcome and closes the trace. Call it once the
+    // run is over and nothing else goes through the wrapper.
+    public synchronized void finish(KitchenService kitchen) throws IOException {
+        if (failure == null && !closed) {
+            try {
+                kitchen.visitLedger(0, kitchen.getLedgerSize(), (timestampMicros, orderId, action, target) -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeStringField("event", ACTION);
+                        generator.writeNumberField("timestamp", timestampMicros);
+                        generator.writeStringField("id", orderId);
+                        generator.writeStringField("action", action.label());
+                        generator.writeStringField("target", target.location());
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            }
+        }
+        close();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                generator.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Reads the clock and writes the event in one step, so the trace is in timestamp order.
+    private synchronized long recordEvent(String event, Order order, String orderId) {
+        long nowMicros = clock.getAsLong();
+        if (failure != null || closed) {
+            return nowMicros;
+        }
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("event", event);
+            generator.writeNumberField("t", nowMicros);
+            if (order != null) {
+                generator.writeStringField("id", order.getId());
+                generator.writeStringField("name", order.getName());
+                generator.writeStringField("temp", order.getTemperature().name().toLowerCase());
+                generator.writeNumberField("shelfLifeSeconds", order.getShelfLifeSeconds());
+                generator.writeNumberField("decayRate", order.getDecayRate());
+            } else if (orderId != null) {
+                generator.writeStringField("id", orderId);
+            }
+            generator.writeEndObject();
+            events++;
+        } catch (IOException e) {
+            failure = e;
+        }
+        return nowMicros;
+    }
+
+    private final class Recording implements KitchenService {
+        private final KitchenService kitchen;
+
+        private Recording(KitchenService kitchen) {
+            this.kitchen = kitchen;
+        }
+
+        @Override
+        public void placeOrder(Order order) {
+            if (order == null) {
+                throw new IllegalArgumentException("order cannot be null");
+            }
+            long[] pinned = pinnedMicros.get();
+            pinned[0] = recordEvent(PLACE, order, null);
+            try {
+                kitchen.placeOrder(order);
+            } finally {
+                pinned[0] = UNPINNED;
+            }
+        }
+
+        @Override
+        public void pickupOrder(String orderId) {
+            if (orderId == null) {
+                return;
+            }
+            long[] pinned = pinnedMicros.get();
+            pinned[0] = recordEvent(PICKUP, null, orderId);
+            try {
+                kitchen.pickupOrder(orderId);
+            } finally {
+                pinned[0] = UNPINNED;
+            }
+        }
+
+        @Override
+        public int reapExpired() {
+            long[] pinned = pinnedMicros.get();
+            pinned[0] = recordEvent(REAP, null, null);
+            try {
+                return kitchen.reapExpired();
+            } finally {
+                pinned[0] = UNPINNED;
+            }
+        }
+
+        @Override
+        public long getLedgerSize() {
+            return kitchen.getLedgerSize();
+        }
+
+        @Override
+        public void visitLedger(long fromIndex, long toIndex, Kitchen.LedgerVisitor visitor) {
+            kitchen.visitLedger(fromIndex, toIndex, visitor);
+        }
+
+        @Override
+        public List<Action> getLedgerSnapshot() {
+            return kitchen.getLedgerSnapshot();
+        }
+
+        @Override
+        public KitchenMetricsMBean getMetrics() {
+            return kitchen.getMetrics();
+        }
+
+        @Override
+        public LockLatency getPlaceLatency() {
+            return kitchen.getPlaceLatency();
+        }
+
+        @Override
+        public LockLatency getPickupLatency() {
+            return kitchen.getPickupLatency();
+        }
+    }
+}
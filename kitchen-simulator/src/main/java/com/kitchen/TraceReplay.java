@@ -0,0 +1,346 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs a trace written by TraceRecorder again, single-threaded on a virtual clock: every event sets
+// the clock to its recorded timestamp and calls the kitchen, with no waiting in between, so an
+// hour-long run replays in however long the kitchen work takes. Replays of the same trace are
+// identical. diff compares the replayed ledger with the one recorded at the end of the run; a
+// divergence means the run's threads reached the kitchen in a different order than they recorded
+// their events (or the kitchen's logic has changed since the recording).
+public final class TraceReplay {
+    private enum EventType {
+        PLACE,
+        PICKUP,
+        REAP
+    }
+
+    private static final class Event {
+        private final long timeMicros;
+        private final EventType type;
+        private final Order order;
+        private final String orderId;
+
+        private Event(long timeMicros, EventType type, Order order, String orderId) {
+            this.timeMicros = timeMicros;
+            this.type = type;
+            this.order = order;
+            this.orderId = orderId;
+        }
+    }
+
+    // Position of the first entry where two ledgers disagree, or -1 when they are identical.
+    public static final class LedgerDiff {
+        private final long firstDivergence;
+        private final Action expected;
+        private final Action actual;
+        private final long expectedSize;
+        private final long actualSize;
+
+        private LedgerDiff(long firstDivergence, Action expected, Action actual, long expectedSize, long actualSize) {
+            this.firstDivergence = firstDivergence;
+            this.expected = expected;
+            this.actual = actual;
+            this.expectedSize = expectedSize;
+            this.actualSize = actualSize;
+        }
+
+        public boolean matches() {
+            return firstDivergence < 0;
+        }
+
+        public long getFirstDivergence() {
+            return firstDivergence;
+        }
+
+        // The recorded and replayed entries at the first divergence; null past the end of a ledger.
+        public Action getExpected() {
+            return expected;
+        }
+
+        public Action getActual() {
+            return actual;
+        }
+
+        public long getExpectedSize() {
+            return expectedSize;
+        }
+
+        public long getActualSize() {
+            return actualSize;
+        }
+
+        @Override
+        public String toString() {
+            if (matches()) {
+                return "ledgers match (" + expectedSize + " actions)";
+            }
+            return "ledgers diverge at entry " + firstDivergence + " of " + expectedSize + " recorded / " + actualSize
+                    + " replayed: recorded " + expected + ", replayed " + actual;
+        }
+    }
+
+    private final int idealCapacity;
+    private final int shelfCapacity;
+    private final String discardPolicy;
+    private final long expectedPickupDelayMicros;
+    private final List<Event> events;
+    private final List<Action> recordedLedger;
+    private long nowMicros;
+
+    private TraceReplay(
+            int idealCapacity,
+            int shelfCapacity,
+            String discardPolicy,
+            long expectedPickupDelayMicros,
+            List<Event> events,
+            List<Action> recordedLedger
+    ) {
+        this.idealCapacity = idealCapacity;
+        this.shelfCapacity = shelfCapacity;
+        this.discardPolicy = discardPolicy;
+        this.expectedPickupDelayMicros = expectedPickupDelayMicros;
+        this.events = events;
+        this.recordedLedger = recordedLedger;
+    }
+
+    public static TraceReplay read(Path path, JsonFactory jsonFactory) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(path.toFile())) {
+            return read(parser);
+        }
+    }
+
+    static TraceReplay read(JsonParser parser) throws IOException {
+        TraceReplay config = null;
+        List<Event> events = new ArrayList<>();
+        List<Action> recordedLedger = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Trace line must be a JSON object (got " + token + ")");
+            }
+            Line line = Line.read(parser);
+            if (line.event == null) {
+                throw new IllegalArgumentException("Trace line missing event");
+            }
+            if (config == null && !line.event.equals(TraceRecorder.CONFIG)) {
+                throw new IllegalArgumentException("Trace must start with a config line");
+            }
+            switch (line.event) {
+                case TraceRecorder.CONFIG:
+                    if (config != null) {
+                        throw new IllegalArgumentException("Trace has more than one config line");
+                    }
+                    config = new TraceReplay(line.idealCapacity, line.shelfCapacity, line.discardPolicy,
+                            line.expectedPickupDelayMicros, events, recordedLedger);
+                    DiscardPolicy.forName(line.discardPolicy, line.expectedPickupDelayMicros);
+                    break;
+                case TraceRecorder.PLACE:
+                    events.add(new Event(line.timeMicros, EventType.PLACE, line.toOrder(), null));
+                    break;
+                case TraceRecorder.PICKUP:
+                    events.add(new Event(line.timeMicros, EventType.PICKUP, null, line.id));
+                    break;
+                case TraceRecorder.REAP:
+                    events.add(new Event(line.timeMicros, EventType.REAP, null, null));
+                    break;
+                case TraceRecorder.ACTION:
+                    recordedLedger.add(new Action(line.timeMicros, line.id, line.action, line.target));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown trace event: " + line.event);
+            }
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("Trace is empty");
+        }
+        return config;
+    }
+
+    public int getEventCount() {
+        return events.size();
+    }
+
+    public List<Action> getRecordedLedger() {
+        return Collections.unmodifiableList(recordedLedger);
+    }
+
+    // Replays every event into a new kitchen with the recorded capacities and discard policy and
+    // returns it with the finished ledger.
+    public Kitchen run(Kitchen.LockingMode lockingMode, Ledger ledger) {
+        Kitchen kitchen = new Kitchen(this::currentMicros, lockingMode, ledger, idealCapacity, shelfCapacity,
+                DiscardPolicy.forName(discardPolicy, expectedPickupDelayMicros));
+        nowMicros = 0;
+        for (Event event : events) {
+            nowMicros = event.timeMicros;
+            switch (event.type) {
+                case PLACE:
+                    kitchen.placeOrder(event.order);
+                    break;
+                case PICKUP:
+                    kitchen.pickupOrder(event.orderId);
+                    break;
+                default:
+                    kitchen.reapExpired();
+                    break;
+            }
+        }
+        return kitchen;
+    }
+
+    public LedgerDiff diff(KitchenService replayed) {
+        return diff(recordedLedger, replayed);
+    }
+
+    static LedgerDiff diff(List<Action> expected, KitchenService actual) {
+        long actualSize = actual.getLedgerSize();
+        long[] firstDivergence = {-1};
+        Action[] replayed = {null};
+        // Walk both ledgers in step; stop at the first entry that differs.
+        long[] index = {0};
+        actual.visitLedger(0, actualSize, (timestampMicros, orderId, action, target) -> {
+            long i = index[0]++;
+            if (firstDivergence[0] >= 0) {
+                return;
+            }
+            Action recorded = (i < expected.size()) ? expected.get((int) i) : null;
+            if (recorded == null || recorded.getTimestamp() != timestampMicros || !recorded.getId().equals(orderId)
+                    || !recorded.getAction().equals(action.label()) || !recorded.getTarget().equals(target.location())) {
+                firstDivergence[0] = i;
+                replayed[0] = new Action(timestampMicros, orderId, action.label(), target.location());
+            }
+        });
+        if (firstDivergence[0] < 0 && actualSize < expected.size()) {
+            firstDivergence[0] = actualSize;
+        }
+        if (firstDivergence[0] < 0) {
+            return new LedgerDiff(-1, null, null, expected.size(), actualSize);
+        }
+        long at = firstDivergence[0];
+        return new LedgerDiff(at, at < expected.size() ? expected.get((int) at) : null, replayed[0],
+                expected.size(), actualSize);
+    }
+
+    private long currentMicros() {
+        return nowMicros;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String trace = System.getProperty("trace");
+        if (trace == null || trace.isBlank()) {
+            System.err.println("Usage: java -Dtrace=<trace file> [-DlockingMode=GLOBAL] com.kitchen.TraceReplay");
+            System.exit(2);
+        }
+        Kitchen.LockingMode lockingMode = Kitchen.LockingMode.valueOf(
+                System.getProperty("lockingMode", "GLOBAL").trim().toUpperCase());
+
+        long readStartNanos = System.nanoTime();
+        TraceReplay replay = read(Paths.get(trace), new JsonFactory());
+        long replayStartNanos = System.nanoTime();
+        Kitchen kitchen = replay.run(lockingMode, new ColumnarLedger());
+        long replayNanos = System.nanoTime() - replayStartNanos;
+        LedgerDiff diff = replay.diff(kitchen);
+
+        System.out.printf("Read %d events in %dms, replayed them in %dms (%.0f events/s, %d actions)%n",
+                replay.getEventCount(), TimeUnit.NANOSECONDS.toMillis(replayStartNanos - readStartNanos),
+                TimeUnit.NANOSECONDS.toMillis(replayNanos), replay.getEventCount() / Math.max(1e-9, replayNanos / 1e9),
+                kitchen.getLedgerSize());
+        if (replay.getRecordedLedger().isEmpty() && kitchen.getLedgerSize() > 0) {
+            // The recorded run never got to write its ledger, e.g. because it crashed.
+            System.out.println("Trace has no recorded ledger to compare with");
+            return;
+        }
+        System.out.println(diff);
+        if (!diff.matches()) {
+            System.exit(1);
+        }
+    }
+
+    // One trace line's fields; which ones are set depends on the event.
+    private static final class Line {
+        private String event;
+        private long timeMicros;
+        private String id;
+        private String name;
+        private String temperature;
+        private int shelfLifeSeconds;
+        private double decayRate = 1.0;
+        private String action;
+        private String target;
+        private int idealCapacity = Kitchen.DEFAULT_IDEAL_CAPACITY;
+        private int shelfCapacity = Kitchen.DEFAULT_SHELF_CAPACITY;
+        private String discardPolicy = "expiry";
+        private long expectedPickupDelayMicros;
+
+        private static Line read(JsonParser parser) throws IOException {
+            Line line = new Line();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "event":
+                        line.event = parser.getText();
+                        break;
+                    case "t":
+                    case "timestamp":
+                        line.timeMicros = parser.getLongValue();
+                        break;
+                    case "id":
+                        line.id = parser.getText();
+                        break;
+                    case "name":
+                        line.name = parser.getText();
+                        break;
+                    case "temp":
+                        line.temperature = parser.getText();
+                        break;
+                    case "shelfLifeSeconds":
+                        line.shelfLifeSeconds = parser.getIntValue();
+                        break;
+                    case "decayRate":
+                        line.decayRate = parser.getDoubleValue();
+                        break;
+                    case "action":
+                        line.action = parser.getText();
+                        break;
+                    case "target":
+                        line.target = parser.getText();
+                        break;
+                    case "idealCapacity":
+                        line.idealCapacity = parser.getIntValue();
+                        break;
+                    case "shelfCapacity":
+                        line.shelfCapacity = parser.getIntValue();
+                        break;
+                    case "discardPolicy":
+                        line.discardPolicy = parser.getText();
+                        break;
+                    case "expectedPickupDelayMicros":
+                        line.expectedPickupDelayMicros = parser.getLongValue();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return line;
+        }
+
+        private Order toOrder() {
+            if (id == null || name == null) {
+                throw new IllegalArgumentException("Trace place event missing id or name");
+            }
+            return new Order(id, name, OrderJson.parseTemperature(temperature), shelfLifeSeconds, decayRate);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.kitchen;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Runs each order's whole lifecycle (place, wait, pick up) on its own virtual thread, so a pickup
+// never waits for a free pool thread. The build targets Java 11, so the virtual-thread executor is
+// looked up at runtime and this scheduler is only available on Java 21+.
+public final class VirtualThreadPickupScheduler implements PickupScheduler {
+    private static final Method NEW_EXECUTOR = findFactory();
+
+    private final ExecutorService executor;
+    private final SchedulingDrift drift = new SchedulingDrift();
+
+    public VirtualThreadPickupScheduler() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads need Java 21+ (running " + System.getProperty("java.version") + ")");
+        }
+        try {
+            this.executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual-thread executor", e);
+        }
+    }
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    @Override
+    public void submit(Runnable placement, Runnable pickup, long pickupDelayNanos) {
+        executor.execute(() -> {
+            placement.run();
+            long dueNanos = System.nanoTime() + pickupDelayNanos;
+            try {
+                TimeUnit.NANOSECONDS.sleep(pickupDelayNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            drift.record(System.nanoTime() - dueNanos);
+            pickup.run();
+        });
+    }
+
+    @Override
+    public SchedulingDrift getDrift() {
+        return drift;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
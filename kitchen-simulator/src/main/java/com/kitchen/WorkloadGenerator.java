@@ -0,0 +1,190 @@
+package com.kitchen;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+// Seeded stream of synthetic orders with arrival times, for load tests that do not need the
+// challenge server. Orders are made one at a time, so a run of millions costs no memory up front.
+// Arrivals are fixed-interval, Poisson (exponential gaps at ordersPerSecond) or bursty (groups of
+// burstSize orders arriving together, the groups Poisson at ordersPerSecond / burstSize, so the
+// long-run rate is the same). Temperatures follow the given weights; shelf life (whole seconds)
+// and decay rate are uniform in their ranges. The same seed and settings give the same orders.
+public final class WorkloadGenerator implements Iterator<Order> {
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+    private static final Order.Temperature[] TEMPERATURES = Order.Temperature.values();
+
+    public enum Arrivals {
+        FIXED,
+        POISSON,
+        BURSTY;
+
+        // Parses "fixed", "poisson" or "bursty" (case-insensitive).
+        public static Arrivals forName(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("arrivals cannot be null");
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown arrivals: " + name + " (expected fixed, poisson or bursty)");
+            }
+        }
+    }
+
+    private final long seed;
+    private final long orders;
+    private final Arrivals arrivals;
+    private final double ordersPerSecond;
+    private final int burstSize;
+    private final double[] cumulativeWeights;
+    private final int minShelfLifeSeconds;
+    private final int maxShelfLifeSeconds;
+    private final double minDecayRate;
+    private final double maxDecayRate;
+    private final SplittableRandom random;
+
+    private long produced;
+    private long arrivalMicros;
+    private double nextArrivalMicros;
+
+    // Poisson arrivals at two orders per second, uniform temperatures, 5-30 s shelf life and decay
+    // rates between 0.25 and 1.0.
+    public WorkloadGenerator(long seed, long orders) {
+        this(seed, orders, Arrivals.POISSON, 2.0, 1, new double[]{1, 1, 1, 1}, 5, 30, 0.25, 1.0);
+    }
+
+    // temperatureWeights are relative weights for HOT, COLD, ROOM and FROZEN, in that order.
+    public WorkloadGenerator(
+            long seed,
+            long orders,
+            Arrivals arrivals,
+            double ordersPerSecond,
+            int burstSize,
+            double[] temperatureWeights,
+            int minShelfLifeSeconds,
+            int maxShelfLifeSeconds,
+            double minDecayRate,
+            double maxDecayRate
+    ) {
+        if (orders < 0) {
+            throw new IllegalArgumentException("orders must be >= 0");
+        }
+        if (arrivals == null) {
+            throw new IllegalArgumentException("arrivals cannot be null");
+        }
+        if (!(ordersPerSecond > 0) || Double.isInfinite(ordersPerSecond)) {
+            throw new IllegalArgumentException("ordersPerSecond must be > 0");
+        }
+        if (burstSize <= 0) {
+            throw new IllegalArgumentException("burstSize must be > 0");
+        }
+        if (temperatureWeights == null || temperatureWeights.length != TEMPERATURES.length) {
+            throw new IllegalArgumentException("temperatureWeights needs one weight per temperature (hot, cold, room, frozen)");
+        }
+        if (minShelfLifeSeconds < 0 || maxShelfLifeSeconds < minShelfLifeSeconds) {
+            throw new IllegalArgumentException("shelf life range must satisfy 0 <= min <= max");
+        }
+        if (minDecayRate < 0 || maxDecayRate < minDecayRate) {
+            throw new IllegalArgumentException("decay rate range must satisfy 0 <= min <= max");
+        }
+        double total = 0;
+        double[] cumulative = new double[temperatureWeights.length];
+        for (int i = 0; i < temperatureWeights.length; i++) {
+            if (temperatureWeights[i] < 0 || Double.isNaN(temperatureWeights[i])) {
+                throw new IllegalArgumentException("temperature weights must be >= 0");
+            }
+            total += temperatureWeights[i];
+            cumulative[i] = total;
+        }
+        if (!(total > 0)) {
+            throw new IllegalArgumentException("at least one temperature weight must be > 0");
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+        this.seed = seed;
+        this.orders = orders;
+        this.arrivals = arrivals;
+        this.ordersPerSecond = ordersPerSecond;
+        this.burstSize = burstSize;
+        this.cumulativeWeights = cumulative;
+        this.minShelfLifeSeconds = minShelfLifeSeconds;
+        this.maxShelfLifeSeconds = maxShelfLifeSeconds;
+        this.minDecayRate = minDecayRate;
+        this.maxDecayRate = maxDecayRate;
+        this.random = new SplittableRandom(seed);
+    }
+
+    // Parses "hot=3,cold=3,room=2,frozen=2"; temperatures left out get weight 0.
+    public static double[] parseTemperatureWeights(String spec) {
+        if (spec == null || spec.isBlank()) {
+            throw new IllegalArgumentException("temperature mix cannot be empty");
+        }
+        double[] weights = new double[TEMPERATURES.length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Temperature mix must look like hot=3,cold=3,room=2,frozen=2 (got " + spec + ")");
+            }
+            weights[OrderJson.parseTemperature(kv[0]).ordinal()] = Double.parseDouble(kv[1].trim());
+        }
+        return weights;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return produced < orders;
+    }
+
+    @Override
+    public Order next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long index = produced++;
+        arrivalMicros = (long) nextArrivalMicros;
+        nextArrivalMicros += gapMicros(index + 1);
+
+        Order.Temperature temperature = pickTemperature(random.nextDouble());
+        int shelfLifeSeconds = random.nextInt(minShelfLifeSeconds, maxShelfLifeSeconds + 1);
+        double decayRate = (maxDecayRate > minDecayRate) ? random.nextDouble(minDecayRate, maxDecayRate) : minDecayRate;
+        return new Order("g" + seed + "-" + index, temperature.name().toLowerCase() + "-" + index, temperature,
+                shelfLifeSeconds, decayRate);
+    }
+
+    // Arrival time of the order last returned by next, counted from the first arrival.
+    public long getArrivalMicros() {
+        return arrivalMicros;
+    }
+
+    public long getOrderCount() {
+        return orders;
+    }
+
+    // Gap between order index - 1 and order index.
+    private double gapMicros(long index) {
+        switch (arrivals) {
+            case FIXED:
+                return MICROS_PER_SECOND / ordersPerSecond;
+            case POISSON:
+                return exponential(ordersPerSecond);
+            default:
+                return (index % burstSize == 0) ? exponential(ordersPerSecond / burstSize) : 0;
+        }
+    }
+
+    private double exponential(double perSecond) {
+        return -Math.log(1.0 - random.nextDouble()) * MICROS_PER_SECOND / perSecond;
+    }
+
+    private Order.Temperature pickTemperature(double u) {
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (u < cumulativeWeights[i]) {
+                return TEMPERATURES[i];
+            }
+        }
+        return TEMPERATURES[TEMPERATURES.length - 1];
+    }
+}
@@ -0,0 +1,543 @@
+package com.kitchen;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Durable log of kitchen events plus periodic snapshots of the live orders, so a kitchen can be
+// rebuilt after the process dies. Every ledger entry is also appended here, in ledger order, and
+// its position in the log (the LSN) is its ledger index.
+//
+// Appends only encode into an in-memory buffer. sync() makes everything appended so far durable
+// with group commit: one caller becomes the leader, writes the whole buffer and forces the file
+// while the others keep appending into a second buffer; whoever calls sync() next flushes all of
+// those with a single force. Kitchen calls sync() after releasing its locks, so concurrent
+// operations share fsyncs instead of queueing behind one each.
+//
+// The log is a series of files wal-<first LSN>.log, started afresh on every open and whenever one
+// grows past segmentBytes. Each record is [int length][int CRC32C][payload]; a torn or corrupt
+// record ends the log, and recovery truncates the last file there. A snapshot
+// (snapshot-<LSN>.snap) holds every live order with its id and handle as of its LSN; once it is
+// durable, files holding only older records are deleted, so recovery reads the snapshot plus the
+// tail.
+public final class WriteAheadLog implements AutoCloseable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int SNAPSHOT_MAGIC = 0x4B534E32;
+    private static final int OLD_SNAPSHOT_MAGIC = 0x4B534E31;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    // Payload of a record without its id and name: action, target, handle and timestamp, plus the
+    // order fields and the two string lengths for a placement.
+    private static final int EVENT_PAYLOAD_BYTES = 14;
+    private static final int PLACE_PAYLOAD_BYTES = EVENT_PAYLOAD_BYTES + 1 + 4 + 8 + 4 + 4;
+    private static final int INDEXED = 1;
+    private static final int STORED = 2;
+    private static final ActionType[] ACTIONS = ActionType.values();
+    private static final StorageType[] STORAGES = StorageType.values();
+    private static final Order.Temperature[] TEMPERATURES = Order.Temperature.values();
+
+    // What recovery needs from the kitchen it rebuilds.
+    interface Replay {
+        // Called once per live order of the snapshot, which carries the handle it had. indexed: the
+        // kitchen can find the order by id; stored: it still takes up space in its storage.
+        void restore(StoredOrder storedOrder, boolean indexed, boolean stored);
+
+        // Called for every logged event after the snapshot, in order. order is set for PLACE only.
+        void apply(long lsn, long timestampMicros, int handle, ActionType action, StorageType target, Order order);
+
+        // logExisted is false for an empty directory, where the kitchen starts from nothing.
+        void finish(long endLsn, boolean logExisted);
+    }
+
+    // The live orders of a kitchen at one LSN, captured under the kitchen locks and written later.
+    static final class Snapshot {
+        private final long lsn;
+        private final List<StoredOrder> orders = new ArrayList<>();
+        private final List<Byte> flags = new ArrayList<>();
+
+        Snapshot(long lsn) {
+            this.lsn = lsn;
+        }
+
+        void add(StoredOrder storedOrder, boolean indexed, boolean stored) {
+            orders.add(storedOrder);
+            flags.add((byte) ((indexed ? INDEXED : 0) | (stored ? STORED : 0)));
+        }
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final CRC32C crc = new CRC32C();
+    // Serializes flushes; the leader of a group commit holds it while writing and forcing.
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Guarded by this.
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    // LSN of the next record; -1 until the log has been recovered.
+    private long nextLsn = -1;
+    private long appendedRecords;
+    // Guarded by flushLock.
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    private boolean rollRequested;
+    private long syncs;
+
+    private volatile long durableLsn;
+    private volatile IOException failure;
+
+    public WriteAheadLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public WriteAheadLog(Path directory, long segmentBytes) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("segmentBytes must be > 0");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Records appended since this log was opened.
+    public synchronized long getAppendedRecords() {
+        return appendedRecords;
+    }
+
+    // How many times the log has been forced to disk; appended records / syncs is the group size.
+    public long getSyncCount() {
+        flushLock.lock();
+        try {
+            return syncs;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Replays the newest snapshot and the log after it into the kitchen, then opens a new log file
+    // for appending. Called once, by the kitchen the log is attached to.
+    void recover(Replay replay) throws IOException {
+        flushLock.lock();
+        try {
+            synchronized (this) {
+                if (nextLsn >= 0) {
+                    throw new IllegalStateException("write-ahead log is already attached to a kitchen");
+                }
+            }
+            boolean logExisted = !list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).isEmpty() || !list(LOG_PREFIX, LOG_SUFFIX).isEmpty();
+            long snapshotLsn = readNewestSnapshot(replay);
+            long endLsn = replayLog(snapshotLsn, replay);
+            replay.finish(endLsn, logExisted);
+
+            channel = openSegment(endLsn);
+            durableLsn = endLsn;
+            synchronized (this) {
+                nextLsn = endLsn;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Throws IllegalArgumentException if the order's place record would be larger than recovery
+    // reads back. Kitchen calls this before the order changes any state; a record that got into the
+    // log anyway would read as a torn tail and cut off everything logged after it.
+    static void checkPlaceable(Order order) {
+        String id = order.getId();
+        String name = order.getName();
+        // A char takes at most 3 bytes in UTF-8, so short strings need no encoding.
+        if (PLACE_PAYLOAD_BYTES + 3L * (id.length() + name.length()) <= MAX_PAYLOAD_BYTES) {
+            return;
+        }
+        long payload = PLACE_PAYLOAD_BYTES + (long) id.getBytes(StandardCharsets.UTF_8).length
+                + name.getBytes(StandardCharsets.UTF_8).length;
+        if (payload > MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("Order id and name take " + payload + " bytes in the write-ahead log (at most "
+                    + MAX_PAYLOAD_BYTES + ")");
+        }
+    }
+
+    // Encodes one event; the kitchen calls this under its ledger lock, so records are in ledger order.
+    synchronized void append(long timestampMicros, StoredOrder storedOrder, ActionType action, StorageType target) {
+        if (nextLsn < 0) {
+            throw new IllegalStateException("write-ahead log has not been recovered");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("write-ahead log failed", failure);
+        }
+        Order order = storedOrder.getOrder();
+        byte[] id = null;
+        byte[] name = null;
+        int payload = EVENT_PAYLOAD_BYTES;
+        if (action == ActionType.PLACE) {
+            id = order.getId().getBytes(StandardCharsets.UTF_8);
+            name = order.getName().getBytes(StandardCharsets.UTF_8);
+            if ((long) PLACE_PAYLOAD_BYTES + id.length + name.length > MAX_PAYLOAD_BYTES) {
+                throw new IllegalArgumentException("Order " + order.getId().substring(0, Math.min(64, order.getId().length()))
+                        + " is too large for the write-ahead log");
+            }
+            payload = PLACE_PAYLOAD_BYTES + id.length + name.length;
+        }
+        ensureCapacity(HEADER_BYTES + payload);
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put((byte) action.ordinal());
+        buffer.put((byte) target.ordinal());
+        buffer.putInt(storedOrder.handle);
+        buffer.putLong(timestampMicros);
+        if (action == ActionType.PLACE) {
+            buffer.put((byte) order.getTemperature().ordinal());
+            buffer.putInt(order.getShelfLifeSeconds());
+            buffer.putDouble(order.getDecayRate());
+            buffer.putInt(id.length).put(id);
+            buffer.putInt(name.length).put(name);
+        }
+        crc.reset();
+        crc.update(buffer.array(), start + HEADER_BYTES, payload);
+        buffer.putInt(start, payload);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        nextLsn++;
+        appendedRecords++;
+    }
+
+    // Returns once every record appended before the call is on disk.
+    void sync() {
+        long target;
+        synchronized (this) {
+            target = nextLsn;
+        }
+        if (durableLsn >= target) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("write-ahead log failed", failure);
+            }
+            if (durableLsn >= target) {
+                return;
+            }
+            ByteBuffer batch;
+            long batchEnd;
+            synchronized (this) {
+                batch = buffer;
+                buffer = spare;
+                batchEnd = nextLsn;
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                syncs++;
+                durableLsn = batchEnd;
+                if (rollRequested || channel.position() >= segmentBytes) {
+                    rollRequested = false;
+                    channel.close();
+                    channel = openSegment(batchEnd);
+                }
+            } catch (IOException e) {
+                // The page cache may have dropped the failed write, so nothing after it can be trusted.
+                failure = e;
+                throw new UncheckedIOException("write-ahead log sync failed", e);
+            } finally {
+                batch.clear();
+                spare = batch;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Writes the snapshot next to the log, then deletes older snapshots and the log files it makes
+    // redundant. The snapshot is only used by recovery once it has been renamed into place.
+    void writeSnapshot(Snapshot snapshot) throws IOException {
+        Path target = directory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, snapshot.lsn, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        out = putInt(out, SNAPSHOT_MAGIC);
+        out = putLong(out, snapshot.lsn);
+        out = putInt(out, snapshot.orders.size());
+        for (int i = 0; i < snapshot.orders.size(); i++) {
+            StoredOrder storedOrder = snapshot.orders.get(i);
+            Order order = storedOrder.getOrder();
+            out = ensure(out, 4 + 1 + 1 + 8 + 8 + 8 + 1 + 4 + 8);
+            out.putInt(storedOrder.handle);
+            out.put(snapshot.flags.get(i));
+            out.put((byte) storedOrder.getStorageType().ordinal());
+            out.putLong(storedOrder.getPlacedTimeMicros());
+            out.putLong(storedOrder.getSegmentStartMicros());
+            out.putDouble(storedOrder.getRemainingFreshnessMicros(storedOrder.getSegmentStartMicros()));
+            out.put((byte) order.getTemperature().ordinal());
+            out.putInt(order.getShelfLifeSeconds());
+            out.putDouble(order.getDecayRate());
+            out = putString(out, order.getId());
+            out = putString(out, order.getName());
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(out.array(), 0, out.position());
+        out = putInt(out, (int) checksum.getValue());
+        out.flip();
+
+        try (FileChannel file = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                file.write(out);
+            }
+            file.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        flushLock.lock();
+        try {
+            // Start a new file at the next flush, so the tail after this snapshot sits in its own files.
+            rollRequested = true;
+        } finally {
+            flushLock.unlock();
+        }
+
+        for (Path old : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (lsnOf(old, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < snapshot.lsn) {
+                Files.deleteIfExists(old);
+            }
+        }
+        List<Path> logs = list(LOG_PREFIX, LOG_SUFFIX);
+        for (int i = 0; i + 1 < logs.size(); i++) {
+            if (lsnOf(logs.get(i + 1), LOG_PREFIX, LOG_SUFFIX) <= snapshot.lsn) {
+                Files.deleteIfExists(logs.get(i));
+            }
+        }
+    }
+
+    // Flushes whatever is still buffered and closes the current file.
+    @Override
+    public void close() {
+        sync();
+        flushLock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close write-ahead log", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private long readNewestSnapshot(Replay replay) throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        Path path = snapshots.get(snapshots.size() - 1);
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32C checksum = new CRC32C();
+        checksum.update(in.array(), 0, Math.max(0, in.limit() - 4));
+        if (in.limit() >= 4 && in.getInt(0) == OLD_SNAPSHOT_MAGIC) {
+            throw new IOException("Snapshot " + path + " was written in the old format with the whole id table; "
+                    + "recover it with the previous version and take a new snapshot");
+        }
+        if (in.limit() < 20 || in.getInt(0) != SNAPSHOT_MAGIC || in.getInt(in.limit() - 4) != (int) checksum.getValue()) {
+            throw new IOException("Snapshot " + path + " is corrupt");
+        }
+        in.position(4);
+        long lsn = in.getLong();
+        for (int n = in.getInt(); n > 0; n--) {
+            int handle = in.getInt();
+            int flags = in.get();
+            StorageType storageType = STORAGES[in.get()];
+            long placedMicros = in.getLong();
+            long segmentStartMicros = in.getLong();
+            double freshnessMicros = in.getDouble();
+            Order.Temperature temperature = TEMPERATURES[in.get()];
+            int shelfLifeSeconds = in.getInt();
+            double decayRate = in.getDouble();
+            String id = getString(in);
+            Order order = new Order(id, getString(in), temperature, shelfLifeSeconds, decayRate);
+            StoredOrder storedOrder = new StoredOrder(order, storageType, placedMicros, segmentStartMicros, freshnessMicros);
+            storedOrder.handle = handle;
+            replay.restore(storedOrder, (flags & INDEXED) != 0, (flags & STORED) != 0);
+        }
+        return lsn;
+    }
+
+    private long replayLog(long snapshotLsn, Replay replay) throws IOException {
+        List<Path> logs = list(LOG_PREFIX, LOG_SUFFIX);
+        long expected = snapshotLsn;
+        for (int i = 0; i < logs.size(); i++) {
+            Path log = logs.get(i);
+            long lsn = lsnOf(log, LOG_PREFIX, LOG_SUFFIX);
+            if (i + 1 < logs.size() && lsnOf(logs.get(i + 1), LOG_PREFIX, LOG_SUFFIX) <= snapshotLsn) {
+                continue;
+            }
+            if (lsn > expected) {
+                throw new IOException("Log " + log + " starts at " + lsn + " but recovery needs " + expected);
+            }
+            boolean last = i == logs.size() - 1;
+            long validBytes = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log), 64 * 1024))) {
+                byte[] payload = new byte[256];
+                CRC32C checksum = new CRC32C();
+                for (; ; lsn++) {
+                    int length;
+                    int storedCrc;
+                    try {
+                        length = in.readInt();
+                        storedCrc = in.readInt();
+                        if (length < EVENT_PAYLOAD_BYTES || length > MAX_PAYLOAD_BYTES) {
+                            break;
+                        }
+                        if (payload.length < length) {
+                            payload = new byte[Math.max(length, payload.length * 2)];
+                        }
+                        in.readFully(payload, 0, length);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    checksum.reset();
+                    checksum.update(payload, 0, length);
+                    if ((int) checksum.getValue() != storedCrc) {
+                        break;
+                    }
+                    validBytes += HEADER_BYTES + length;
+                    if (lsn >= expected) {
+                        apply(ByteBuffer.wrap(payload, 0, length), lsn, replay);
+                        expected = lsn + 1;
+                    }
+                }
+            }
+            if (validBytes < Files.size(log)) {
+                if (!last) {
+                    throw new IOException("Log " + log + " is corrupt after " + validBytes + " bytes");
+                }
+                try (FileChannel file = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                    file.truncate(validBytes);
+                    file.force(true);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static void apply(ByteBuffer in, long lsn, Replay replay) {
+        ActionType action = ACTIONS[in.get()];
+        StorageType target = STORAGES[in.get()];
+        int handle = in.getInt();
+        long timestampMicros = in.getLong();
+        Order order = null;
+        if (action == ActionType.PLACE) {
+            Order.Temperature temperature = TEMPERATURES[in.get()];
+            int shelfLifeSeconds = in.getInt();
+            double decayRate = in.getDouble();
+            String id = getString(in);
+            order = new Order(id, getString(in), temperature, shelfLifeSeconds, decayRate);
+        }
+        replay.apply(lsn, timestampMicros, handle, action, target, order);
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        FileChannel file = FileChannel.open(directory.resolve(String.format("%s%019d%s", LOG_PREFIX, firstLsn, LOG_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        forceDirectory();
+        return file;
+    }
+
+    // Makes file creations and renames durable. Not every platform can open a directory; there
+    // the rename is as durable as the file system makes it.
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+            // Best effort.
+        }
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            stream.forEach(files::add);
+        }
+        // Names are zero-padded, so name order is LSN order.
+        files.sort(null);
+        return files;
+    }
+
+    private static long lsnOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private static ByteBuffer ensure(ByteBuffer out, int bytes) {
+        if (out.remaining() >= bytes) {
+            return out;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+        out.flip();
+        return grown.put(out);
+    }
+
+    private static ByteBuffer putInt(ByteBuffer out, int value) {
+        return ensure(out, 4).putInt(value);
+    }
+
+    private static ByteBuffer putLong(ByteBuffer out, long value) {
+        return ensure(out, 8).putLong(value);
+    }
+
+    // null is written as length -1.
+    private static ByteBuffer putString(ByteBuffer out, String value) {
+        if (value == null) {
+            return putInt(out, -1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ensure(out, 4 + bytes.length).putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,67 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CapacitySweepTest {
+    @Test
+    void grid_isCartesianProductInOrder() {
+        List<CapacitySweep.Configuration> grid = CapacitySweep.grid(
+                Arrays.asList(4, 6),
+                Collections.singletonList(12),
+                Arrays.asList(new int[]{4, 8}, new int[]{2, 6}));
+
+        assertEquals(4, grid.size());
+        assertEquals("ideal=4 shelf=12 pickup=4-8s discard=expiry", grid.get(0).toString());
+        assertEquals("ideal=4 shelf=12 pickup=2-6s discard=expiry", grid.get(1).toString());
+        assertEquals("ideal=6 shelf=12 pickup=4-8s discard=expiry", grid.get(2).toString());
+        assertThrows(IllegalArgumentException.class, () -> new CapacitySweep.Configuration(6, 12, 8, 4));
+    }
+
+    @Test
+    void run_matchesSequentialSimulation_andMoreCapacityWastesLess() {
+        List<List<Order>> traces = Arrays.asList(
+                CapacitySweep.syntheticTrace(300, 1),
+                CapacitySweep.syntheticTrace(300, 2));
+        List<CapacitySweep.Configuration> grid = CapacitySweep.grid(
+                Arrays.asList(1, 12),
+                Arrays.asList(2, 24),
+                Collections.singletonList(new int[]{4, 8}));
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<CapacitySweep.Result> results;
+        try {
+            results = CapacitySweep.run(grid, traces, 250_000, 7, false, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(grid.size(), results.size());
+        for (int i = 0; i < grid.size(); i++) {
+            CapacitySweep.Result result = results.get(i);
+            long discards = 0;
+            long moves = 0;
+            for (List<Order> trace : traces) {
+                CapacitySweep.Result single = CapacitySweep.simulate(grid.get(i), trace, 250_000, 7, false);
+                discards += single.getDiscards();
+                moves += single.getMoves();
+            }
+            assertEquals(600, result.getOrders());
+            assertEquals(discards, result.getDiscards());
+            assertEquals(moves, result.getMoves());
+            assertEquals(600, result.getPickups() + result.getDiscards());
+        }
+
+        CapacitySweep.Result smallest = results.get(0);
+        CapacitySweep.Result largest = results.get(3);
+        assertTrue(smallest.getWasteRate() > largest.getWasteRate());
+    }
+}
@@ -0,0 +1,87 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChallengeStandInTest {
+    private final List<ChallengeStandIn.Result> solved = new CopyOnWriteArrayList<>();
+    private ExecutorService executor;
+    private ChallengeStandIn standIn;
+
+    @BeforeEach
+    void startStandIn() throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        standIn = new ChallengeStandIn(new InetSocketAddress("localhost", 0), executor, new JsonFactory(),
+                test -> new WorkloadGenerator(test, 3_000), 0, solved::add);
+        standIn.start();
+    }
+
+    @AfterEach
+    void stopStandIn() {
+        standIn.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void main_runsEndToEndAgainstTheStandIn() {
+        String base = "http://localhost:" + standIn.getPort() + "/interview/challenge";
+        for (String gzip : new String[]{"false", "true"}) {
+            int code = Main.run(new String[]{
+                    "--ordersUrl", base + "/new?auth=x",
+                    "--solveUrl", base + "/solve?auth=x",
+                    "--clock", "virtual",
+                    "--seed", "1",
+                    "--gzipSolution", gzip
+            });
+            assertEquals(0, code);
+        }
+
+        assertEquals(2, solved.size());
+        for (ChallengeStandIn.Result result : solved) {
+            assertEquals(3_000, result.getOrders());
+            assertEquals(3_000, result.getActionCount(ActionType.PLACE));
+            // Every order leaves the kitchen exactly once.
+            assertEquals(3_000, result.getActionCount(ActionType.PICKUP) + result.getActionCount(ActionType.DISCARD));
+            assertEquals(result.getActions(), 6_000 + result.getActionCount(ActionType.MOVE));
+            assertTrue(result.getElapsedNanos() > 0);
+        }
+        assertEquals("local-0", solved.get(0).getTestId());
+        assertEquals("local-1", solved.get(1).getTestId());
+    }
+
+    @Test
+    void solve_rejectsUnknownTestsAndBadBodies() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        URI solve = URI.create("http://localhost:" + standIn.getPort() + "/solve");
+        HttpResponse<String> unknown = http.send(HttpRequest.newBuilder(solve).header("x-test-id", "nope")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"actions\":[]}")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, unknown.statusCode());
+
+        HttpResponse<String> orders = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + standIn.getPort() + "/new"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, orders.statusCode());
+        assertTrue(orders.body().startsWith("{\"orders\":[{\"id\":\"g0-0\""));
+        String testId = orders.headers().firstValue("x-test-id").orElseThrow();
+        HttpResponse<String> bad = http.send(HttpRequest.newBuilder(solve).header("x-test-id", testId)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"actions\":[{\"action\":\"eat\"}]}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, bad.statusCode());
+        assertEquals(0, solved.size());
+    }
+}
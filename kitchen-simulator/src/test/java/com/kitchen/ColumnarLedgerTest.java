@@ -0,0 +1,35 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ColumnarLedgerTest {
+    @Test
+    void append_growsAndVisitsEntriesInOrder() {
+        ColumnarLedger ledger = new ColumnarLedger(2);
+
+        ledger.append(1, "a", ActionType.PLACE, StorageType.HEATER);
+        ledger.append(2, "b", ActionType.PLACE, StorageType.SHELF);
+        ledger.append(3, "b", ActionType.MOVE, StorageType.COOLER);
+        ledger.append(4, "a", ActionType.DISCARD, StorageType.HEATER);
+
+        assertEquals(4, ledger.size());
+        assertEquals(ActionType.MOVE, ledger.actionAt(2));
+        assertEquals(StorageType.COOLER, ledger.targetAt(2));
+
+        List<Action> actions = new ArrayList<>();
+        ledger.forEach(0, ledger.size(), (ts, orderId, action, target) ->
+                actions.add(new Action(ts, orderId, action.label(), target.location())));
+        assertEquals(4, actions.size());
+        Action move = actions.get(2);
+        assertEquals(3, move.getTimestamp());
+        assertEquals("b", move.getId());
+        assertEquals("move", move.getAction());
+        assertEquals("cooler", move.getTarget());
+        assertEquals("discard", actions.get(3).getAction());
+    }
+}
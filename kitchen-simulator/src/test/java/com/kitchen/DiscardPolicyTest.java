@@ -0,0 +1,91 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiscardPolicyTest {
+    private static final long SECOND = 1_000_000L;
+
+    // Expected pickup 10s after placement; HOT orders decay at twice their rate on the shelf.
+    //   early:  placed 0s,  30s at 2/s   -> expires 15s,   slack 5s,   worth 10s at pickup
+    //   fresh:  placed 8s,  8s at 1/s    -> expires 16s,   slack -2s,  worth 0s
+    //   big:    placed 2s,  264s at 16/s -> expires 18.5s, slack 6.5s, worth 104s
+    //   steady: placed 4s,  20s at 0.5/s -> expires 44s,   slack 30s,  worth 15s
+    private static ShelfManager shelfWith(DiscardPolicy policy) {
+        ShelfManager shelf = new ShelfManager(12, () -> 0L, new OrderIds(), policy);
+        shelf.addOrder(shelved("early", 0, 30, 1.0));
+        shelf.addOrder(shelved("fresh", 8, 8, 0.5));
+        shelf.addOrder(shelved("big", 2, 264, 8.0));
+        shelf.addOrder(shelved("steady", 4, 20, 0.25));
+        return shelf;
+    }
+
+    private static StoredOrder shelved(String id, int placedSeconds, int shelfLifeSeconds, double decayRate) {
+        return new StoredOrder(new Order(id, id, Order.Temperature.HOT, shelfLifeSeconds, decayRate),
+                StorageType.SHELF, placedSeconds * SECOND);
+    }
+
+    private static List<String> drain(ShelfManager shelf, long nowMicros) {
+        List<String> ids = new ArrayList<>();
+        StoredOrder victim;
+        while ((victim = shelf.pollDiscardVictim(nowMicros)) != null) {
+            ids.add(victim.getOrder().getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void policies_chooseVictimsByTheirOwnRank() {
+        assertEquals(List.of("early", "fresh", "big", "steady"), drain(shelfWith(DiscardPolicy.SOONEST_EXPIRY), 0));
+        assertEquals(List.of("fresh", "early", "big", "steady"), drain(shelfWith(DiscardPolicy.leastSlack(10 * SECOND)), 0));
+        assertEquals(List.of("fresh", "early", "steady", "big"),
+                drain(shelfWith(DiscardPolicy.lowestValueAtPickup(10 * SECOND)), 0));
+    }
+
+    @Test
+    void pollDiscardVictim_dropsExpiredOrdersAndForgetsRemovedOnes() {
+        ShelfManager shelf = shelfWith(DiscardPolicy.leastSlack(10 * SECOND));
+        shelf.removeOrder("fresh");
+        assertEquals(3, shelf.size());
+
+        // At 20s "early" and "big" have expired and are dropped; "steady" is the only candidate left.
+        assertEquals("steady", shelf.pollDiscardVictim(20 * SECOND).getOrder().getId());
+        assertEquals(0, shelf.size());
+        assertNull(shelf.pollDiscardVictim(60 * SECOND));
+    }
+
+    @Test
+    void forName_parsesPoliciesAndRejectsUnknownOnes() {
+        assertSame(DiscardPolicy.SOONEST_EXPIRY, DiscardPolicy.forName(" Expiry ", 0));
+        assertTrue(DiscardPolicy.forName("value", 0).rank(shelved("x", 0, 10, 1.0)) > 0);
+        assertEquals(-1.0, DiscardPolicy.forName("slack", 6 * SECOND).rank(shelved("x", 0, 10, 1.0)) / SECOND, 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> DiscardPolicy.forName("random", 0));
+        assertThrows(IllegalArgumentException.class, () -> DiscardPolicy.leastSlack(-1));
+    }
+
+    @Test
+    void kitchen_discardsTheVictimItsPolicyChooses() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get, Kitchen.LockingMode.GLOBAL, new ColumnarLedger(), 0, 2,
+                DiscardPolicy.lowestValueAtPickup(10 * SECOND));
+
+        kitchen.placeOrder(new Order("short", "Short", Order.Temperature.ROOM, 20, 1.0));
+        kitchen.placeOrder(new Order("long", "Long", Order.Temperature.ROOM, 8, 0.1));
+        kitchen.placeOrder(new Order("new", "New", Order.Temperature.ROOM, 30, 1.0));
+
+        // "long" expires last (80s) but has 7s of freshness left at 10s, "short" still has 10s.
+        List<Action> ledger = kitchen.getLedgerSnapshot();
+        assertEquals(4, ledger.size());
+        assertEquals("discard", ledger.get(2).getAction());
+        assertEquals("long", ledger.get(2).getId());
+    }
+}
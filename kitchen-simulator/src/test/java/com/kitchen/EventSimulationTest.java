@@ -0,0 +1,101 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventSimulationTest {
+    @Test
+    void run_picksUpEachOrderWithinWindow_andIsReproducible() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Order.Temperature temp = Order.Temperature.values()[i % 3];
+            orders.add(new Order("o" + i, "Dish" + i, temp, 20, 0.5));
+        }
+
+        EventSimulation simulation = new EventSimulation(500_000, 4, 8, 42);
+        List<Action> first = simulation.run(orders.iterator(), Kitchen.LockingMode.GLOBAL, new ColumnarLedger())
+                .getLedgerSnapshot();
+        List<Action> second = new EventSimulation(500_000, 4, 8, 42)
+                .run(orders.iterator(), Kitchen.LockingMode.GLOBAL, new ColumnarLedger())
+                .getLedgerSnapshot();
+
+        assertEquals(render(first), render(second));
+        assertEquals(400, simulation.getEventCount());
+        assertTrue(simulation.getNowMicros() >= 199 * 500_000L + 4_000_000L);
+
+        Map<String, Long> placedAt = new HashMap<>();
+        long previous = 0;
+        for (Action action : first) {
+            assertTrue(action.getTimestamp() >= previous);
+            previous = action.getTimestamp();
+            if (action.getAction().equals("place")) {
+                placedAt.put(action.getId(), action.getTimestamp());
+            } else if (action.getAction().equals("pickup")) {
+                long delay = action.getTimestamp() - placedAt.get(action.getId());
+                assertTrue(delay >= 4_000_000L && delay <= 8_000_000L, "delay " + delay);
+                assertEquals(0, delay % 1_000_000L);
+            }
+        }
+    }
+
+    @Test
+    void run_matchesKitchenDrivenByHandOnTheSameSchedule() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            orders.add(new Order("hot-" + i, "Hot" + i, Order.Temperature.HOT, 300, 1.0));
+        }
+
+        Kitchen simulated = new EventSimulation(0, 4, 4, 7)
+                .run(orders.iterator(), Kitchen.LockingMode.GLOBAL, new ColumnarLedger());
+
+        AtomicLong now = new AtomicLong(0);
+        Kitchen manual = new Kitchen(now::get);
+        for (Order order : orders) {
+            manual.placeOrder(order);
+        }
+        now.set(4_000_000L);
+        for (Order order : orders) {
+            manual.pickupOrder(order.getId());
+        }
+
+        assertEquals(render(manual.getLedgerSnapshot()), render(simulated.getLedgerSnapshot()));
+        assertTrue(simulated.getLedgerSnapshot().stream().anyMatch(a -> a.getAction().equals("discard")));
+    }
+
+    @Test
+    void run_withReaping_keepsLedgerInTimestampOrder() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Order.Temperature temp = Order.Temperature.values()[i % 4];
+            orders.add(new Order("o" + i, "Dish" + i, temp, 1 + i % 7, 1.0));
+        }
+
+        List<Action> ledger = new EventSimulation(100_000, 4, 8, 3, true)
+                .run(orders.iterator(), Kitchen.LockingMode.GLOBAL, new ColumnarLedger())
+                .getLedgerSnapshot();
+
+        long previous = 0;
+        long discards = 0;
+        for (Action action : ledger) {
+            assertTrue(action.getTimestamp() >= previous, action.toString());
+            previous = action.getTimestamp();
+            if (action.getAction().equals("discard")) {
+                discards++;
+            }
+        }
+        assertTrue(discards > 0);
+    }
+
+    private static List<String> render(List<Action> actions) {
+        return actions.stream().map(Action::toString).collect(Collectors.toList());
+    }
+}
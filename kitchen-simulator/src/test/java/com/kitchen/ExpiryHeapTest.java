@@ -0,0 +1,68 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExpiryHeapTest {
+    private static StoredOrder stored(String id, int shelfLifeSeconds) {
+        return new StoredOrder(new Order(id, id, Order.Temperature.HOT, shelfLifeSeconds, 1.0), StorageType.HEATER, 0);
+    }
+
+    @Test
+    void remove_dropsOrderAndKeepsHeapOrder() {
+        ExpiryHeap heap = new ExpiryHeap(2);
+        StoredOrder a = stored("a", 5);
+        StoredOrder b = stored("b", 1);
+        StoredOrder c = stored("c", 3);
+        heap.add(a);
+        heap.add(b);
+        heap.add(c);
+
+        assertTrue(heap.remove(b));
+        assertFalse(heap.remove(b));
+        assertFalse(heap.contains(b));
+        assertEquals(2, heap.size());
+
+        assertSame(c, heap.peek());
+        assertTrue(heap.remove(c));
+        assertSame(a, heap.peek());
+        assertTrue(heap.remove(a));
+        assertNull(heap.peek());
+    }
+
+    @Test
+    void randomOperations_matchSortedReference() {
+        Random random = new Random(7);
+        ExpiryHeap heap = new ExpiryHeap();
+        List<StoredOrder> reference = new ArrayList<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || reference.isEmpty()) {
+                StoredOrder s = stored("o" + i, random.nextInt(1_000));
+                heap.add(s);
+                reference.add(s);
+            } else if (op == 1) {
+                StoredOrder s = reference.remove(random.nextInt(reference.size()));
+                assertTrue(heap.remove(s));
+            } else {
+                reference.sort(Comparator.comparingLong(StoredOrder::getExpiresAtMicros));
+                StoredOrder head = heap.peek();
+                assertEquals(reference.get(0).getExpiresAtMicros(), head.getExpiresAtMicros());
+                assertTrue(heap.remove(head));
+                assertTrue(reference.remove(head));
+            }
+            assertEquals(reference.size(), heap.size());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HandleTableTest {
+    @Test
+    void randomOperations_matchHashMap() {
+        HandleTable<String> table = new HandleTable<>(2);
+        Map<Integer, String> model = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(11);
+
+        for (int step = 0; step < 200_000; step++) {
+            int handle = random.nextInt(4_096);
+            int op = random.nextInt(3);
+            if (op == 0) {
+                String value = "v" + step;
+                assertEquals(model.put(handle, value), table.put(handle, value));
+            } else if (op == 1) {
+                assertEquals(model.remove(handle), table.remove(handle));
+            } else {
+                assertEquals(model.get(handle), table.get(handle));
+            }
+            assertEquals(model.size(), table.size());
+        }
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            assertEquals(e.getValue(), table.get(e.getKey()));
+        }
+    }
+
+    @Test
+    void conditionalRemove_onlyRemovesMatchingValue() {
+        HandleTable<String> table = new HandleTable<>();
+        String first = "first";
+        table.put(7, first);
+
+        assertFalse(table.remove(7, "other"));
+        assertEquals(first, table.get(7));
+        assertTrue(table.remove(7, first));
+        assertNull(table.get(7));
+        assertEquals(0, table.size());
+    }
+}
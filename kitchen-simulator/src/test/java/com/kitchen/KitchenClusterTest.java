@@ -0,0 +1,179 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KitchenClusterTest {
+    @Test
+    void pickup_isRoutedToTheShardThatPlacedTheOrder() {
+        AtomicLong now = new AtomicLong(0);
+        // Room for every order on any shard, however the ids hash.
+        KitchenCluster cluster = new KitchenCluster(now::get,
+                List.of(new ColumnarLedger(), new ColumnarLedger(), new ColumnarLedger(), new ColumnarLedger()), 6, 160);
+
+        for (int i = 0; i < 40; i++) {
+            now.incrementAndGet();
+            cluster.placeOrder(new Order("o" + i, "Dish" + i, Order.Temperature.ROOM, 300, 1.0));
+        }
+        for (int i = 0; i < 40; i++) {
+            now.incrementAndGet();
+            cluster.pickupOrder("o" + i);
+        }
+
+        long used = 0;
+        for (int shard = 0; shard < cluster.getShardCount(); shard++) {
+            for (Action a : cluster.shard(shard).getLedgerSnapshot()) {
+                assertEquals(shard, cluster.shardIndexFor(a.getId()));
+            }
+            used += cluster.shard(shard).getLedgerSize() > 0 ? 1 : 0;
+        }
+        assertTrue(used > 1, "orders should spread over several shards");
+
+        List<Action> ledger = cluster.getLedgerSnapshot();
+        assertEquals(80, ledger.size());
+        assertEquals(80, cluster.getLedgerSize());
+        for (int i = 0; i < 80; i++) {
+            assertEquals(i + 1, ledger.get(i).getTimestamp());
+            assertEquals(i < 40 ? "place" : "pickup", ledger.get(i).getAction());
+        }
+    }
+
+    @Test
+    void visitLedger_inConsecutiveRanges_matchesSnapshot() {
+        AtomicLong now = new AtomicLong(0);
+        KitchenCluster cluster = new KitchenCluster(3, now::get);
+        Order.Temperature[] temps = Order.Temperature.values();
+        for (int i = 0; i < 700; i++) {
+            now.addAndGet(3);
+            cluster.placeOrder(new Order("o" + i, "Dish" + i, temps[i % temps.length], 300, 1.0));
+            if (i % 2 == 1) {
+                cluster.pickupOrder("o" + (i - 1));
+            }
+        }
+
+        List<String> visited = new ArrayList<>();
+        long size = cluster.getLedgerSize();
+        for (long from = 0; from < size; from += 100) {
+            cluster.visitLedger(from, Math.min(size, from + 100), (timestampMicros, orderId, action, target) ->
+                    visited.add(new Action(timestampMicros, orderId, action.label(), target.location()).toString()));
+        }
+        List<String> restarted = new ArrayList<>();
+        cluster.visitLedger(size - 5, size, (timestampMicros, orderId, action, target) ->
+                restarted.add(new Action(timestampMicros, orderId, action.label(), target.location()).toString()));
+
+        List<String> snapshot = new ArrayList<>();
+        for (Action a : cluster.getLedgerSnapshot()) {
+            snapshot.add(a.toString());
+        }
+        assertEquals(snapshot, visited);
+        assertEquals(snapshot.subList((int) size - 5, (int) size), restarted);
+    }
+
+    @Test
+    void constructor_rejectsEmptyCluster() {
+        assertThrows(IllegalArgumentException.class, () -> new KitchenCluster(0, () -> 0L));
+    }
+
+    @Test
+    void visitLedger_fromInterleavedReaders_matchesSnapshot() {
+        AtomicLong now = new AtomicLong(0);
+        KitchenCluster cluster = new KitchenCluster(5, now::get);
+        for (int i = 0; i < 6_000; i++) {
+            now.incrementAndGet();
+            cluster.placeOrder(new Order("o" + i, "Dish" + i, Order.Temperature.FROZEN, 300, 1.0));
+            cluster.pickupOrder("o" + i);
+        }
+        List<Action> snapshot = cluster.getLedgerSnapshot();
+        long size = cluster.getLedgerSize();
+        assertEquals(12_000, size);
+
+        // Two readers paging through the ledger at different positions, as concurrent /ledger calls would.
+        long[] positions = {0, 7_001};
+        int page = 997;
+        while (positions[0] < size || positions[1] < size) {
+            for (int reader = 0; reader < positions.length; reader++) {
+                long from = positions[reader];
+                long to = Math.min(size, from + page);
+                List<Action> visited = new ArrayList<>();
+                cluster.visitLedger(from, to, (timestampMicros, orderId, action, target) ->
+                        visited.add(new Action(timestampMicros, orderId, action.label(), target.location())));
+                assertEquals(snapshot.subList((int) from, (int) to).toString(), visited.toString());
+                positions[reader] = to;
+            }
+        }
+    }
+
+    @Test
+    void capacities_areSplitAcrossShards() {
+        KitchenCluster cluster = new KitchenCluster(() -> 0L,
+                List.of(new ColumnarLedger(), new ColumnarLedger(), new ColumnarLedger(), new ColumnarLedger()), 6, 12);
+        assertEquals(6, cluster.getMetrics().getIdealCapacity());
+        assertEquals(12, cluster.getMetrics().getShelfCapacity());
+        assertEquals(2, cluster.shard(0).getMetrics().getIdealCapacity());
+        assertEquals(1, cluster.shard(3).getMetrics().getIdealCapacity());
+        assertEquals(3, cluster.shard(3).getMetrics().getShelfCapacity());
+    }
+
+    @Test
+    void constructor_rejectsCapacitiesThatLeaveAShardWithoutRoom() {
+        List<Ledger> ledgers = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ledgers.add(new ColumnarLedger());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new KitchenCluster(() -> 0L, ledgers));
+        assertThrows(IllegalArgumentException.class, () -> new KitchenCluster(() -> 0L, ledgers, 7, 6));
+        assertEquals(7, new KitchenCluster(() -> 0L, ledgers, 7, 7).getMetrics().getIdealCapacity());
+        assertEquals(0, new KitchenCluster(() -> 0L, ledgers, 0, 7).shard(6).getMetrics().getIdealCapacity());
+    }
+
+    @Test
+    void reapExpired_reapsEveryShardAndKeepsTheMergedLedgerInOrder() {
+        AtomicLong now = new AtomicLong(0);
+        KitchenCluster cluster = new KitchenCluster(3, now::get);
+        for (int i = 0; i < 6; i++) {
+            now.addAndGet(100_000L);
+            cluster.placeOrder(new Order("o" + i, "Dish" + i, Order.Temperature.COLD, 1 + i, 1.0));
+        }
+        now.set(4_000_000L);
+        cluster.placeOrder(new Order("late", "Late", Order.Temperature.HOT, 300, 1.0));
+
+        now.set(4_500_000L);
+        assertEquals(4, cluster.reapExpired());
+        List<Action> ledger = cluster.getLedgerSnapshot();
+        assertEquals(11, ledger.size());
+        for (int i = 1; i < ledger.size(); i++) {
+            assertTrue(ledger.get(i - 1).getTimestamp() <= ledger.get(i).getTimestamp(), ledger.toString());
+        }
+        assertEquals(4_500_000L, ledger.get(10).getTimestamp());
+    }
+
+    @Test
+    void visitLedger_holdsBackEntriesAShardMayStillPrecede() {
+        AtomicLong now = new AtomicLong(0);
+        KitchenCluster cluster = new KitchenCluster(2, now::get);
+        String[] ids = new String[2];
+        for (int i = 0; ids[0] == null || ids[1] == null; i++) {
+            ids[cluster.shardIndexFor("o" + i)] = "o" + i;
+        }
+
+        // Shard 1 logs at 10 while the clock reads 5: an operation elsewhere read the clock later
+        // but logged first. Nothing at 10 may be merged until no shard can log before it.
+        now.set(10);
+        cluster.placeOrder(new Order(ids[1], "Later", Order.Temperature.HOT, 300, 1.0));
+        now.set(5);
+        assertEquals(0, cluster.getLedgerSize());
+        cluster.placeOrder(new Order(ids[0], "Earlier", Order.Temperature.HOT, 300, 1.0));
+        now.set(10);
+        List<Action> ledger = cluster.getLedgerSnapshot();
+        assertEquals(2, ledger.size());
+        assertEquals(ids[0], ledger.get(0).getId());
+        assertEquals(ids[1], ledger.get(1).getId());
+    }
+}
@@ -0,0 +1,84 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class KitchenMetricsTest {
+    @Test
+    void counters_followTheLedger() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get, Kitchen.LockingMode.STRIPED, new ColumnarLedger(), 1, 1);
+
+        kitchen.placeOrder(new Order("hot-0", "Hot0", Order.Temperature.HOT, 300, 1.0));
+        kitchen.placeOrder(new Order("hot-1", "Hot1", Order.Temperature.HOT, 300, 1.0));
+        kitchen.placeOrder(new Order("frozen-0", "Frozen0", Order.Temperature.FROZEN, 300, 1.0));
+        // Heater and shelf are full: hot-1 is discarded to make room.
+        kitchen.placeOrder(new Order("room-0", "Room0", Order.Temperature.ROOM, 300, 1.0));
+        kitchen.pickupOrder("hot-0");
+        kitchen.placeOrders(List.of(new Order("cold-0", "Cold0", Order.Temperature.COLD, 300, 1.0)));
+
+        KitchenMetrics metrics = kitchen.getMetrics();
+        assertEquals(5, metrics.getPlaced());
+        assertEquals(0, metrics.getMoved());
+        assertEquals(1, metrics.getPickedUp());
+        assertEquals(1, metrics.getDiscarded());
+        assertEquals(1, metrics.getShelfOverflows());
+        assertEquals(0.2, metrics.getShelfOverflowRate(), 1e-9);
+        assertEquals(0.2, metrics.getWasteRate(), 1e-9);
+        assertEquals(0, metrics.getHeaterOccupancy());
+        assertEquals(1, metrics.getCoolerOccupancy());
+        assertEquals(1, metrics.getFreezerOccupancy());
+        assertEquals(1, metrics.getShelfOccupancy());
+        assertEquals(1, metrics.getIdealCapacity());
+        assertEquals(1, metrics.getShelfCapacity());
+    }
+
+    @Test
+    void moves_shiftOccupancyOffTheShelf() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get, Kitchen.LockingMode.GLOBAL, new ColumnarLedger(), 1, 1);
+
+        kitchen.placeOrder(new Order("hot-0", "Hot0", Order.Temperature.HOT, 300, 1.0));
+        kitchen.placeOrder(new Order("hot-1", "Hot1", Order.Temperature.HOT, 300, 1.0));
+        kitchen.pickupOrder("hot-0");
+        // The shelf is full; hot-1 moves into the free heater slot.
+        kitchen.placeOrder(new Order("room-0", "Room0", Order.Temperature.ROOM, 300, 1.0));
+
+        KitchenMetrics metrics = kitchen.getMetrics();
+        assertEquals(1, metrics.getMoved());
+        assertEquals(1, metrics.getHeaterOccupancy());
+        assertEquals(1, metrics.getShelfOccupancy());
+        assertEquals(1, metrics.getShelfOverflows());
+    }
+
+    @Test
+    void register_exposesKitchenAndClusterMetricsOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        KitchenCluster cluster = new KitchenCluster(2, () -> 0L);
+        for (int i = 0; i < 10; i++) {
+            cluster.placeOrder(new Order("o" + i, "O" + i, Order.Temperature.COLD, 300, 1.0));
+        }
+        cluster.pickupOrder("o0");
+
+        ObjectName name = KitchenMetrics.register(cluster.getMetrics(), "com.kitchen.test:type=Kitchen,name=cluster");
+        try {
+            assertEquals(10L, server.getAttribute(name, "Placed"));
+            assertEquals(1L, server.getAttribute(name, "PickedUp"));
+            assertEquals(9L, (long) server.getAttribute(name, "CoolerOccupancy")
+                    + (long) server.getAttribute(name, "ShelfOccupancy"));
+            assertEquals(Kitchen.DEFAULT_IDEAL_CAPACITY, server.getAttribute(name, "IdealCapacity"));
+        } finally {
+            KitchenMetrics.unregister(name);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
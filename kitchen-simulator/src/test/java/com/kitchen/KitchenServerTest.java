@@ -0,0 +1,123 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class KitchenServerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final HttpClient http = HttpClient.newHttpClient();
+    private Kitchen kitchen;
+    private ExecutorService executor;
+    private KitchenServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        kitchen = new Kitchen(now::get, Kitchen.LockingMode.STRIPED, new ColumnarLedger());
+        executor = Executors.newFixedThreadPool(2);
+        // Small chunks so the ledger streams in several pieces.
+        server = new KitchenServer(kitchen, MAPPER.getFactory(), new InetSocketAddress("localhost", 0), executor, 3);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void placeAndPickup_showUpInTheStreamedLedger() throws Exception {
+        String orders = "[{\"id\":\"a\",\"name\":\"A\",\"temp\":\"hot\",\"price\":1,\"freshness\":300},"
+                + "{\"id\":\"b\",\"name\":\"B\",\"temp\":\"cold\",\"price\":1,\"freshness\":300},"
+                + "{\"id\":\"c/1\",\"name\":\"C\",\"temp\":\"room\",\"price\":1,\"freshness\":300}]";
+        assertEquals(204, post("/orders", orders).statusCode());
+        now.set(5_000_000);
+        assertEquals(204, post("/orders/b/pickup", "").statusCode());
+        assertEquals(204, post("/orders/c%2F1/pickup", "").statusCode());
+        assertEquals(204, post("/orders/unknown/pickup", "").statusCode());
+
+        HttpResponse<String> ledger = get("/ledger");
+        assertEquals(200, ledger.statusCode());
+        assertEquals("5", ledger.headers().firstValue("x-ledger-end").orElseThrow());
+        JsonNode actions = MAPPER.readTree(ledger.body()).get("actions");
+        assertEquals(kitchen.getLedgerSnapshot().size(), actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            Action expected = kitchen.getLedgerSnapshot().get(i);
+            assertEquals(expected.getId(), actions.get(i).get("id").asText());
+            assertEquals(expected.getAction(), actions.get(i).get("action").asText());
+            assertEquals(expected.getTarget(), actions.get(i).get("target").asText());
+            assertEquals(expected.getTimestamp(), actions.get(i).get("timestamp").asLong());
+        }
+        assertEquals("c/1", actions.get(4).get("id").asText());
+
+        JsonNode tail = MAPPER.readTree(get("/ledger?from=3").body()).get("actions");
+        assertEquals(2, tail.size());
+        assertEquals("pickup", tail.get(0).get("action").asText());
+        assertEquals(0, MAPPER.readTree(get("/ledger?from=99").body()).get("actions").size());
+    }
+
+    @Test
+    void ledger_isGzippedWhenTheClientAcceptsIt() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            kitchen.placeOrder(new Order("o" + i, "O" + i, Order.Temperature.FROZEN, 300, 1.0));
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri("/ledger?from=2&to=12"))
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElseThrow());
+        try (InputStream body = new GZIPInputStream(response.body())) {
+            JsonNode actions = MAPPER.readTree(body).get("actions");
+            assertEquals(10, actions.size());
+            assertEquals("o2", actions.get(0).get("id").asText());
+        }
+    }
+
+    @Test
+    void badRequests_getClientErrors() throws Exception {
+        assertEquals(400, post("/orders", "{\"nope\": 1}").statusCode());
+        assertEquals(400, post("/orders", "[{\"id\":").statusCode());
+        assertEquals(400, get("/ledger?from=-1").statusCode());
+        assertEquals(404, post("/orders/a/eat", "").statusCode());
+        assertEquals(405, get("/orders").statusCode());
+        assertEquals(405, post("/ledger", "").statusCode());
+        assertEquals(0, kitchen.getLedgerSize());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return http.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+}
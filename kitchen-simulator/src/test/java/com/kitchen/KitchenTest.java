@@ -2,7 +2,13 @@ package com.kitchen;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -25,6 +31,25 @@ public class KitchenTest {
         assertTrue(ledger.get(0).getTimestamp() <= ledger.get(1).getTimestamp());
     }
 
+    @Test
+    void pickup_ofAnOrderThatLeft_doesNotTakeTheOrderNowUnderItsHandle() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get);
+
+        kitchen.placeOrder(new Order("o1", "Soup", Order.Temperature.HOT, 300, 0.45));
+        kitchen.pickupOrder("o1");
+        kitchen.placeOrder(new Order("o2", "Salad", Order.Temperature.COLD, 300, 0.45));
+        kitchen.pickupOrder("o1");
+        kitchen.pickupOrders(List.of("o1"));
+
+        List<Action> ledger = kitchen.getLedgerSnapshot();
+        assertEquals(3, ledger.size());
+        assertEquals("o2", ledger.get(2).getId());
+        assertEquals("place", ledger.get(2).getAction());
+        kitchen.pickupOrder("o2");
+        assertEquals("pickup", kitchen.getLedgerSnapshot().get(3).getAction());
+    }
+
     @Test
     void place_goesToShelf_whenIdealFull() {
         AtomicLong now = new AtomicLong(0);
@@ -154,4 +179,208 @@ public class KitchenTest {
         kitchen.pickupOrder("missing");
         assertEquals(before, kitchen.getLedgerSnapshot().size());
     }
+
+    @Test
+    void striped_matchesGlobal_forSequentialOverflow() {
+        List<List<Action>> ledgers = new ArrayList<>();
+        for (Kitchen.LockingMode mode : Kitchen.LockingMode.values()) {
+            AtomicLong now = new AtomicLong(0);
+            Kitchen kitchen = new Kitchen(now::get, mode);
+            for (int i = 0; i < 6; i++) {
+                kitchen.placeOrder(new Order("cold-" + i, "Cold" + i, Order.Temperature.COLD, 300, 1.0));
+                kitchen.placeOrder(new Order("heater-" + i, "Heater" + i, Order.Temperature.HOT, 300, 1.0));
+            }
+            kitchen.placeOrder(new Order("shelf-hot-min", "ShelfHotMin", Order.Temperature.HOT, 1, 1.0));
+            for (int i = 0; i < 11; i++) {
+                kitchen.placeOrder(new Order("shelf-hot-" + i, "ShelfHot" + i, Order.Temperature.HOT, 100, 1.0));
+            }
+            kitchen.pickupOrder("heater-0");
+            kitchen.placeOrder(new Order("cold-new", "ColdNew", Order.Temperature.COLD, 300, 1.0));
+            kitchen.placeOrder(new Order("frozen-new", "FrozenNew", Order.Temperature.FROZEN, 300, 1.0));
+            ledgers.add(kitchen.getLedgerSnapshot());
+        }
+
+        assertEquals(ledgers.get(0).toString(), ledgers.get(1).toString());
+    }
+
+    @Test
+    void striped_concurrentPlaceAndPickup_keepsLedgerConsistent() throws Exception {
+        Kitchen kitchen = new Kitchen(new AtomicLong(0)::get, Kitchen.LockingMode.STRIPED);
+        Order.Temperature[] temps = Order.Temperature.values();
+        int threads = 4;
+        int perThread = 2_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    List<String> inFlight = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        String id = "t" + thread + "-" + i;
+                        kitchen.placeOrder(new Order(id, id, temps[(thread + i) % temps.length], 300, 1.0));
+                        inFlight.add(id);
+                        if (inFlight.size() > 8) {
+                            kitchen.pickupOrder(inFlight.remove(0));
+                        }
+                    }
+                    inFlight.forEach(kitchen::pickupOrder);
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, List<String>> actionsById = new HashMap<>();
+        for (Action a : kitchen.getLedgerSnapshot()) {
+            actionsById.computeIfAbsent(a.getId(), k -> new ArrayList<>()).add(a.getAction());
+        }
+
+        assertEquals(threads * perThread, actionsById.size());
+        for (Map.Entry<String, List<String>> e : actionsById.entrySet()) {
+            List<String> actions = e.getValue();
+            assertEquals("place", actions.get(0), e.getKey());
+            String last = actions.get(actions.size() - 1);
+            assertTrue(last.equals("pickup") || last.equals("discard"), e.getKey() + " " + actions);
+            for (String middle : actions.subList(1, actions.size() - 1)) {
+                assertEquals("move", middle, e.getKey() + " " + actions);
+            }
+        }
+    }
+
+    @Test
+    void placeOrder_logsExpiredShelfOrdersItClearsForRoom() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get, Kitchen.LockingMode.STRIPED, new ColumnarLedger(), 1, 2);
+        kitchen.placeOrder(new Order("stale", "Stale", Order.Temperature.ROOM, 1, 1.0));
+        kitchen.placeOrder(new Order("fresh", "Fresh", Order.Temperature.ROOM, 100, 1.0));
+
+        now.set(2_000_000L);
+        kitchen.placeOrder(new Order("late", "Late", Order.Temperature.ROOM, 100, 1.0));
+
+        List<Action> ledger = kitchen.getLedgerSnapshot();
+        assertEquals(4, ledger.size());
+        assertEquals("discard", ledger.get(2).getAction());
+        assertEquals("stale", ledger.get(2).getId());
+        assertEquals(2_000_000L, ledger.get(2).getTimestamp());
+        assertEquals("late", ledger.get(3).getId());
+        assertEquals(2, kitchen.getMetrics().getShelfOccupancy());
+
+        // The discarded order is gone; picking it up logs nothing more.
+        kitchen.pickupOrder("stale");
+        assertEquals(4, kitchen.getLedgerSize());
+    }
+
+    @Test
+    void reapExpired_discardsInExpiryOrderAtReapTimeAndFreesCapacity() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get);
+
+        for (int i = 0; i < 6; i++) {
+            kitchen.placeOrder(new Order("hot-" + i, "Hot" + i, Order.Temperature.HOT, 2 + i, 1.0));
+        }
+        kitchen.placeOrder(new Order("cold", "Cold", Order.Temperature.COLD, 1, 1.0));
+        kitchen.placeOrder(new Order("room", "Room", Order.Temperature.ROOM, 300, 1.0));
+
+        now.set(4_500_000L);
+        assertEquals(4, kitchen.reapExpired());
+        assertEquals(0, kitchen.reapExpired());
+
+        List<Action> ledger = kitchen.getLedgerSnapshot();
+        List<Action> discards = ledger.subList(8, ledger.size());
+        assertEquals(4, discards.size());
+        String[] expectedIds = {"cold", "hot-0", "hot-1", "hot-2"};
+        for (int i = 0; i < 4; i++) {
+            assertEquals("discard", discards.get(i).getAction());
+            assertEquals(expectedIds[i], discards.get(i).getId());
+            assertEquals(4_500_000L, discards.get(i).getTimestamp());
+        }
+
+        kitchen.pickupOrder("hot-0");
+        assertEquals(12, kitchen.getLedgerSize());
+
+        for (int i = 0; i < 3; i++) {
+            kitchen.placeOrder(new Order("hot-new-" + i, "HotNew" + i, Order.Temperature.HOT, 300, 1.0));
+        }
+        for (Action a : kitchen.getLedgerSnapshot().subList(12, 15)) {
+            assertEquals("heater", a.getTarget());
+        }
+    }
+
+    @Test
+    void batchPlaceAndPickup_matchOneAtATimeWithTheSameClock() {
+        for (Kitchen.LockingMode mode : Kitchen.LockingMode.values()) {
+            AtomicLong now = new AtomicLong(0);
+            Kitchen single = new Kitchen(now::get, mode);
+            Kitchen batched = new Kitchen(now::get, mode);
+            Order.Temperature[] temps = Order.Temperature.values();
+
+            for (int round = 0; round < 20; round++) {
+                now.addAndGet(700_000L);
+                List<Order> arrivals = new ArrayList<>();
+                for (int i = 0; i < 9; i++) {
+                    int n = round * 9 + i;
+                    arrivals.add(new Order("o" + n, "Dish" + n, temps[(n * 7) % temps.length], 2 + n % 5, 1.0));
+                }
+                arrivals.forEach(single::placeOrder);
+                batched.placeOrders(arrivals);
+
+                now.addAndGet(300_000L);
+                List<String> pickups = new ArrayList<>();
+                for (int n = round * 9 - 14; n < round * 9 - 7; n++) {
+                    pickups.add("o" + n);
+                }
+                pickups.forEach(single::pickupOrder);
+                batched.pickupOrders(pickups);
+            }
+
+            List<String> expected = new ArrayList<>();
+            single.getLedgerSnapshot().forEach(a -> expected.add(a.toString()));
+            List<String> actual = new ArrayList<>();
+            batched.getLedgerSnapshot().forEach(a -> actual.add(a.toString()));
+            assertEquals(expected, actual, mode.toString());
+            assertTrue(expected.stream().anyMatch(a -> a.contains("action='discard'")));
+        }
+    }
+
+    @Test
+    void lockLatency_recordsOneSamplePerCallWithOverflowRetries() {
+        AtomicLong now = new AtomicLong(0);
+        Kitchen kitchen = new Kitchen(now::get, Kitchen.LockingMode.STRIPED, new ColumnarLedger(), 1, 1,
+                DiscardPolicy.SOONEST_EXPIRY, 1);
+
+        kitchen.placeOrder(new Order("hot-0", "Hot0", Order.Temperature.HOT, 300, 1.0));
+        kitchen.placeOrder(new Order("hot-1", "Hot1", Order.Temperature.HOT, 300, 1.0));
+        // Heater and shelf are full and nothing can move, so this one discards hot-1 first.
+        kitchen.placeOrder(new Order("hot-2", "Hot2", Order.Temperature.HOT, 300, 1.0));
+        kitchen.pickupOrder("hot-0");
+        kitchen.pickupOrder("unknown");
+        kitchen.placeOrders(List.of(new Order("batch", "Batch", Order.Temperature.COLD, 300, 1.0)));
+
+        LockLatency place = kitchen.getPlaceLatency();
+        assertEquals(3, place.getCount());
+        assertEquals(1, place.getRetries().getMax());
+        assertEquals(0, place.getRetries().getValueAtQuantile(0.5));
+        assertTrue(place.getHoldNanos().getMax() > 0);
+        assertEquals(1, kitchen.getPickupLatency().getCount());
+        assertEquals(0, kitchen.getPickupLatency().getRetries().getMax());
+        assertTrue(place.toString().startsWith("n=3 wait p50/p99/p999="));
+
+        // By default only one in eight ids is timed.
+        Kitchen sampled = new Kitchen(now::get);
+        int timed = 0;
+        for (int i = 0; i < 800; i++) {
+            String id = "o" + i;
+            sampled.placeOrder(new Order(id, id, Order.Temperature.COLD, 300, 1.0));
+            sampled.pickupOrder(id);
+            timed += (id.hashCode() & 7) == 0 ? 1 : 0;
+        }
+        assertEquals(timed, sampled.getPlaceLatency().getCount());
+        assertEquals(timed, sampled.getPickupLatency().getCount());
+        assertTrue(timed > 50 && timed < 150);
+    }
 }
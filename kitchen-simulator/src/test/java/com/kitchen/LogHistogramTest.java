@@ -0,0 +1,79 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class LogHistogramTest {
+    @Test
+    void buckets_areContiguousAndWithinThreePercent() {
+        assertEquals(0, LogHistogram.bucketOf(0));
+        assertEquals(63, LogHistogram.bucketOf(63));
+        assertEquals(Long.MAX_VALUE, LogHistogram.highestValueIn(LogHistogram.bucketOf(Long.MAX_VALUE)));
+
+        long previousUpper = -1;
+        for (int bucket = 0; bucket <= LogHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            long upper = LogHistogram.highestValueIn(bucket);
+            assertEquals(bucket, LogHistogram.bucketOf(previousUpper + 1));
+            assertEquals(bucket, LogHistogram.bucketOf(upper));
+            assertTrue(upper - previousUpper - 1 <= Math.max(0, (previousUpper + 1) / 32));
+            previousUpper = upper;
+            if (upper == Long.MAX_VALUE) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    void quantiles_reportBucketUpperBounds() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1_000_000L, histogram.getMax());
+        assertEquals(0, histogram.getValueAtQuantile(0));
+        assertWithin(500_000L, histogram.getValueAtQuantile(0.50));
+        assertWithin(990_000L, histogram.getValueAtQuantile(0.99));
+        assertEquals(1_000_000L, histogram.getValueAtQuantile(1));
+
+        LogHistogram merged = new LogHistogram();
+        histogram.addTo(merged);
+        histogram.addTo(merged);
+        assertEquals(2002, merged.getCount());
+        assertEquals(histogram.getValueAtQuantile(0.99), merged.getValueAtQuantile(0.99));
+        assertEquals(histogram.getMean(), merged.getMean(), 1e-9);
+    }
+
+    @Test
+    void record_doesNotAllocate() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < 200_000; i++) {
+            histogram.record(i * 37L);
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000_000; i++) {
+            histogram.record(i * 37L);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 32, "expected ~" + expected + " but was " + actual);
+    }
+}
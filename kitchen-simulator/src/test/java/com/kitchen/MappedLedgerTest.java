@@ -0,0 +1,185 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedLedgerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void append_rollsSegmentsAndReadsBackInOrder() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 4);
+        for (int i = 0; i < 10; i++) {
+            ledger.append(i * 10L, "order-" + i, ActionType.values()[i % 4], StorageType.values()[i % 4]);
+        }
+
+        assertEquals(10, ledger.size());
+        assertEquals(3, ledger.getSegmentCount());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(6, files.count());
+        }
+
+        ByteBuffer sealed = ledger.sealedSegment(1);
+        assertEquals(4 * MappedLedger.RECORD_BYTES, sealed.capacity());
+        assertEquals(50L, sealed.getLong(MappedLedger.RECORD_BYTES));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.sealedSegment(2));
+
+        List<String> seen = new ArrayList<>();
+        ledger.forEach(3, 7, (ts, orderId, action, target) -> seen.add(ts + ":" + orderId + ":" + action + ":" + target));
+        assertEquals(List.of("30:order-3:DISCARD:SHELF", "40:order-4:PLACE:HEATER", "50:order-5:MOVE:COOLER",
+                "60:order-6:PICKUP:FREEZER"), seen);
+        ledger.close();
+    }
+
+    @Test
+    void reopen_continuesAfterExistingEntries() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 4);
+        for (int i = 0; i < 6; i++) {
+            ledger.append(i, "order-" + i, ActionType.PLACE, StorageType.SHELF);
+        }
+        ledger.close();
+
+        MappedLedger reopened = new MappedLedger(dir, 4);
+        assertEquals(6, reopened.size());
+        reopened.append(6, "order-6", ActionType.PICKUP, StorageType.SHELF);
+
+        List<String> ids = new ArrayList<>();
+        reopened.forEach(0, reopened.size(), (ts, orderId, action, target) -> ids.add(ts + ":" + orderId));
+        assertEquals(List.of("0:order-0", "1:order-1", "2:order-2", "3:order-3", "4:order-4", "5:order-5", "6:order-6"), ids);
+        reopened.close();
+    }
+
+    @Test
+    void reopen_afterTheProcessDiesKeepsWhatWasWrittenAndDropsRecordsWithoutIds() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 4);
+        for (int i = 0; i < 6; i++) {
+            ledger.append(i, "order-" + i, ActionType.PLACE, StorageType.SHELF);
+        }
+        // Never closed: the mapped writes are all there is. Then the last id goes missing, as if
+        // the machine had gone down before it reached the disk.
+        MappedLedger reopened = new MappedLedger(dir, 4);
+        assertEquals(6, reopened.size());
+        assertEquals(2 * "order-0".length(), Files.size(dir.resolve("ledger-000001.ids")));
+        reopened.close();
+        try (FileChannel ids = FileChannel.open(dir.resolve("ledger-000001.ids"), StandardOpenOption.WRITE)) {
+            ids.truncate("order-0".length() + 3);
+        }
+
+        MappedLedger recovered = new MappedLedger(dir, 4);
+        assertEquals(5, recovered.size());
+        recovered.append(50, "order-5", ActionType.PICKUP, StorageType.SHELF);
+        List<String> tail = new ArrayList<>();
+        recovered.forEach(3, 6, (ts, orderId, action, target) -> tail.add(ts + ":" + orderId + ":" + action));
+        assertEquals(List.of("3:order-3:PLACE", "4:order-4:PLACE", "50:order-5:PICKUP"), tail);
+        recovered.close();
+    }
+
+    @Test
+    void reopen_dropsRecordsFromTheFirstIdThatNeverReachedTheDisk() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 8);
+        for (int i = 0; i < 6; i++) {
+            ledger.append(i, "order-" + i, ActionType.PLACE, StorageType.SHELF);
+        }
+        ledger.close();
+        // The id file keeps its length, since the mapped window already extended it, but the page
+        // holding order-4 was never written back.
+        long size = Files.size(dir.resolve("ledger-000000.ids"));
+        try (FileChannel ids = FileChannel.open(dir.resolve("ledger-000000.ids"), StandardOpenOption.WRITE)) {
+            ids.write(ByteBuffer.allocate("order-4".length()), 4 * "order-0".length());
+        }
+        assertEquals(size, Files.size(dir.resolve("ledger-000000.ids")));
+
+        MappedLedger recovered = new MappedLedger(dir, 8);
+        assertEquals(4, recovered.size());
+        recovered.append(40, "order-9", ActionType.PICKUP, StorageType.SHELF);
+        List<String> ids = new ArrayList<>();
+        recovered.forEach(0, recovered.size(), (ts, orderId, action, target) -> ids.add(ts + ":" + orderId));
+        assertEquals(List.of("0:order-0", "1:order-1", "2:order-2", "3:order-3", "40:order-9"), ids);
+        recovered.close();
+        assertEquals(5 * "order-0".length(), Files.size(dir.resolve("ledger-000000.ids")));
+    }
+
+    @Test
+    void forEach_afterCloseFails() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 4);
+        ledger.append(0, "order-0", ActionType.PLACE, StorageType.SHELF);
+        ledger.close();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> ledger.forEach(0, 1, (ts, orderId, action, target) -> { }));
+        assertEquals("ledger is closed", e.getMessage());
+    }
+
+    @Test
+    void kitchen_refusesAnOrderIdTooLongToRecordBeforeStoringIt() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 4);
+        Kitchen kitchen = new Kitchen(() -> 0L, Kitchen.LockingMode.STRIPED, ledger);
+        kitchen.placeOrder(new Order("a", "A", Order.Temperature.HOT, 300, 1.0));
+        String longId = "x".repeat(MappedLedger.MAX_ID_BYTES + 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> kitchen.placeOrder(new Order(longId, "Long", Order.Temperature.HOT, 300, 1.0)));
+        assertThrows(IllegalArgumentException.class, () -> kitchen.placeOrders(List.of(
+                new Order("b", "B", Order.Temperature.COLD, 300, 1.0),
+                new Order(longId, "Long", Order.Temperature.HOT, 300, 1.0))));
+        assertEquals(1, ledger.size());
+        assertEquals(1, kitchen.getMetrics().getHeaterOccupancy());
+        assertEquals(0, kitchen.getMetrics().getCoolerOccupancy());
+        kitchen.pickupOrder(longId);
+        assertEquals(1, ledger.size());
+        ledger.close();
+    }
+
+    @Test
+    void truncate_dropsEntriesAndSegmentsAcrossReopen() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 4);
+        for (int i = 0; i < 10; i++) {
+            ledger.append(i, "order-" + i, ActionType.PLACE, StorageType.SHELF);
+        }
+        ledger.truncate(3);
+        assertEquals(3, ledger.size());
+        assertEquals(1, ledger.getSegmentCount());
+        ledger.append(30, "order-30", ActionType.PICKUP, StorageType.SHELF);
+        ledger.close();
+
+        MappedLedger reopened = new MappedLedger(dir, 4);
+        List<String> ids = new ArrayList<>();
+        reopened.forEach(0, reopened.size(), (ts, orderId, action, target) -> ids.add(ts + ":" + orderId));
+        assertEquals(List.of("0:order-0", "1:order-1", "2:order-2", "30:order-30"), ids);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+        reopened.close();
+        assertEquals(3 * "order-0".length() + "order-30".length(), Files.size(dir.resolve("ledger-000000.ids")));
+    }
+
+    @Test
+    void kitchen_writesThroughMappedLedger() throws Exception {
+        MappedLedger ledger = new MappedLedger(dir, 2);
+        Kitchen kitchen = new Kitchen(() -> 0L, Kitchen.LockingMode.GLOBAL, ledger);
+        kitchen.placeOrder(new Order("a", "A", Order.Temperature.HOT, 300, 1.0));
+        kitchen.placeOrder(new Order("b", "B", Order.Temperature.ROOM, 300, 1.0));
+        kitchen.pickupOrder("a");
+
+        List<Action> actions = kitchen.getLedgerSnapshot();
+        assertEquals(3, actions.size());
+        assertEquals("b", actions.get(1).getId());
+        assertEquals("shelf", actions.get(1).getTarget());
+        assertEquals("pickup", actions.get(2).getAction());
+        assertEquals(2, ledger.getSegmentCount());
+        ledger.close();
+    }
+}
@@ -0,0 +1,124 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderIdsTest {
+    @Test
+    void intern_assignsDenseHandlesOncePerId() {
+        OrderIds ids = new OrderIds();
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, ids.intern("order-" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, ids.intern(new String("order-" + i)));
+            assertEquals(i, ids.handleOf("order-" + i));
+        }
+
+        assertEquals(10_000, ids.size());
+        assertEquals(-1, ids.handleOf("unknown"));
+    }
+
+    @Test
+    void internAt_restoresHandlesOutOfOrder() {
+        OrderIds ids = new OrderIds();
+
+        assertTrue(ids.internAt(3, "d"));
+        assertTrue(ids.internAt(0, "a"));
+        assertTrue(ids.internAt(3, "d"));
+        assertFalse(ids.internAt(1, "d"));
+        assertFalse(ids.internAt(0, "b"));
+        assertEquals(2, ids.size());
+        assertEquals(0, ids.handleOf("a"));
+        assertEquals(3, ids.handleOf("d"));
+
+        // Handles skipped over go to new ids until the gaps are filled.
+        int e = ids.intern("e");
+        int f = ids.intern("f");
+        assertEquals(Set.of(1, 2), Set.of(e, f));
+        assertEquals(4, ids.intern("g"));
+        assertEquals(3, ids.handleOf("d"));
+        assertEquals(-1, ids.handleOf("b"));
+    }
+
+    @Test
+    void release_dropsTheIdWithItsLastReferenceAndReusesTheHandle() {
+        OrderIds ids = new OrderIds();
+
+        int a = ids.intern("a");
+        assertEquals(a, ids.intern("a"));
+        ids.release(a);
+        assertEquals(a, ids.handleOf("a"));
+        ids.release(a);
+        assertEquals(-1, ids.handleOf("a"));
+        assertEquals(0, ids.size());
+        assertThrows(IllegalArgumentException.class, () -> ids.release(a));
+
+        assertEquals(a, ids.intern("b"));
+        assertEquals(-1, ids.handleOf("a"));
+        assertEquals(a, ids.handleOf("b"));
+    }
+
+    @Test
+    void release_keepsTheTableAsLargeAsTheLiveIds() {
+        OrderIds ids = new OrderIds();
+
+        // A kitchen's worth of orders at a time, a million in all: the handles and the slots
+        // tombstones leave behind are reused, so neither grows with the history.
+        int[] handles = new int[64];
+        for (int i = 0; i < 1_000_000; i++) {
+            int k = i % handles.length;
+            if (i >= handles.length) {
+                ids.release(handles[k]);
+            }
+            handles[k] = ids.intern("order-" + i);
+            assertTrue(handles[k] < handles.length, "handle " + handles[k]);
+        }
+        assertEquals(handles.length, ids.size());
+        for (int i = 1_000_000 - handles.length; i < 1_000_000; i++) {
+            assertEquals(handles[i % handles.length], ids.handleOf("order-" + i));
+        }
+        assertEquals(-1, ids.handleOf("order-0"));
+    }
+
+    @Test
+    void handleOf_readsWithoutLockingWhileTheTableGrows() throws InterruptedException {
+        OrderIds ids = new OrderIds();
+        AtomicInteger interned = new AtomicInteger();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(new Thread(() -> {
+                while (interned.get() < 50_000 && failure.get() == null) {
+                    int upTo = interned.get();
+                    for (int i = Math.max(0, upTo - 64); i < upTo; i++) {
+                        if (ids.handleOf("order-" + i) != i) {
+                            failure.set("order-" + i + " not visible after intern returned");
+                        }
+                    }
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (int i = 0; i < 50_000; i++) {
+            ids.intern("order-" + i);
+            interned.set(i + 1);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get(), failure.get());
+    }
+}
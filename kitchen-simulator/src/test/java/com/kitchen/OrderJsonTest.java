@@ -0,0 +1,76 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJsonTest {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @Test
+    void readOrders_acceptsBareArrayAndOrdersObject() throws IOException {
+        String order = "{\"id\":\"a\",\"name\":\"Pho\",\"temp\":\"hot\",\"shelfLife\":20,\"decayRate\":0.5}";
+
+        List<Order> fromArray = read("[" + order + "]");
+        List<Order> fromObject = read("{\"meta\":{\"x\":[1,2]},\"orders\":[" + order + "],\"tail\":1}");
+
+        assertEquals(1, fromArray.size());
+        assertEquals(1, fromObject.size());
+        Order o = fromObject.get(0);
+        assertEquals("a", o.getId());
+        assertEquals("Pho", o.getName());
+        assertEquals(Order.Temperature.HOT, o.getTemperature());
+        assertEquals(20, o.getShelfLifeSeconds());
+        assertEquals(0.5, o.getDecayRate(), 1e-9);
+    }
+
+    @Test
+    void readOrders_prefersFirstAliasRegardlessOfFieldOrder() throws IOException {
+        List<Order> orders = read("[{\"freshness\":99,\"orderId\":\"late\",\"shelfLifeSeconds\":10,\"id\":\"early\","
+                + "\"temperature\":\"cold\",\"temp\":null,\"decay_rate\":2,\"name\":\"Soup\",\"extra\":{\"id\":\"nested\"}}]");
+
+        Order o = orders.get(0);
+        assertEquals("early", o.getId());
+        assertEquals(10, o.getShelfLifeSeconds());
+        assertEquals(Order.Temperature.COLD, o.getTemperature());
+        assertEquals(2.0, o.getDecayRate(), 1e-9);
+        assertEquals("Soup", o.getName());
+    }
+
+    @Test
+    void readOrders_rejectsMissingFieldsAndBadPayloads() {
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"temp\":\"hot\",\"shelfLife\":1}]"));
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"id\":\"a\",\"shelfLife\":1}]"));
+        assertThrows(IllegalArgumentException.class, () -> read("{\"items\":[]}"));
+        assertThrows(IllegalArgumentException.class, () -> read("[1]"));
+    }
+
+    @Test
+    void orderFeed_buffersParsedOrdersUntilPolled() {
+        OrderFeed feed = new OrderFeed(4);
+        String payload = "[{\"id\":\"a\",\"name\":\"Tea\",\"temp\":\"room\",\"shelfLife\":5},{\"id\":\"b\",\"name\":\"Ice\",\"temp\":\"frozen\",\"shelfLife\":5}]";
+
+        feed.ingest(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), JSON);
+
+        assertNull(feed.failure());
+        assertEquals(2, feed.produced());
+        assertFalse(feed.isExhausted());
+        assertEquals("a", feed.poll().getId());
+        assertEquals("b", feed.poll().getId());
+        assertNull(feed.poll());
+        assertTrue(feed.isExhausted());
+    }
+
+    private static List<Order> read(String json) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        OrderJson.readOrders(JSON.createParser(json), orders::add);
+        return orders;
+    }
+}
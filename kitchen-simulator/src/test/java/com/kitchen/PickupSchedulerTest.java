@@ -0,0 +1,121 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class PickupSchedulerTest {
+    @Test
+    void pooled_picksUpAfterPlacementAndDelay() throws InterruptedException {
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        try (PickupScheduler scheduler = new PooledPickupScheduler(executor)) {
+            assertLifecycle(scheduler);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void virtualThreads_picksUpAfterPlacementAndDelay() throws InterruptedException {
+        assumeTrue(VirtualThreadPickupScheduler.isSupported(), "virtual threads need Java 21+");
+        try (PickupScheduler scheduler = new VirtualThreadPickupScheduler()) {
+            assertLifecycle(scheduler);
+        }
+    }
+
+    @Test
+    void wheel_picksUpAfterPlacementAndDelay() throws InterruptedException {
+        try (PickupScheduler scheduler = new HashedWheelPickupScheduler(1, TimeUnit.MILLISECONDS, 8)) {
+            assertLifecycle(scheduler);
+        }
+    }
+
+    @Test
+    void wheel_firesDelaysLongerThanOneTurnOnTheirOwnTick() throws InterruptedException {
+        try (HashedWheelPickupScheduler scheduler = new HashedWheelPickupScheduler(2, TimeUnit.MILLISECONDS, 4)) {
+            assertEquals(4, scheduler.getTicksPerWheel());
+            CountDownLatch done = new CountDownLatch(2);
+            long startNanos = System.nanoTime();
+            long[] firedAfterNanos = new long[2];
+            long[] delaysMillis = {3, 37};
+            for (int i = 0; i < 2; i++) {
+                int slot = i;
+                scheduler.submit(() -> { }, () -> {
+                    firedAfterNanos[slot] = System.nanoTime() - startNanos;
+                    done.countDown();
+                }, TimeUnit.MILLISECONDS.toNanos(delaysMillis[i]));
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 2; i++) {
+                assertTrue(firedAfterNanos[i] >= TimeUnit.MILLISECONDS.toNanos(delaysMillis[i]),
+                        "pickup " + i + " fired early");
+            }
+            assertTrue(firedAfterNanos[0] < firedAfterNanos[1]);
+        }
+    }
+
+    @Test
+    void wheel_reportsAFailedPickupAndKeepsFiring() throws InterruptedException {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.add(e));
+        try (PickupScheduler scheduler = new HashedWheelPickupScheduler(1, TimeUnit.MILLISECONDS, 8)) {
+            CountDownLatch done = new CountDownLatch(1);
+            scheduler.submit(() -> { }, () -> {
+                throw new IllegalStateException("boom");
+            }, TimeUnit.MILLISECONDS.toNanos(1));
+            scheduler.submit(() -> { }, done::countDown, TimeUnit.MILLISECONDS.toNanos(5));
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, reported.size());
+            assertEquals("boom", reported.get(0).getMessage());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+    }
+
+    @Test
+    void drift_reportsPercentilesWithinPowerOfTwoBuckets() {
+        SchedulingDrift drift = new SchedulingDrift();
+        for (int i = 1; i <= 100; i++) {
+            drift.record(TimeUnit.MICROSECONDS.toNanos(i * 10L));
+        }
+        drift.record(-5_000);
+
+        assertEquals(101, drift.getCount());
+        assertEquals(1000, drift.getMaxMicros());
+        long p50 = drift.getPercentileMicros(0.5);
+        assertTrue(p50 >= 490 && p50 < 1024, "p50=" + p50);
+        assertEquals(1000, drift.getPercentileMicros(1.0));
+        assertEquals(0, drift.getPercentileMicros(0.0));
+    }
+
+    private static void assertLifecycle(PickupScheduler scheduler) throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            String id = "o" + i;
+            scheduler.submit(() -> events.add("place " + id), () -> {
+                events.add("pickup " + id);
+                done.countDown();
+            }, TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(6, events.size());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(events.indexOf("place o" + i) < events.indexOf("pickup o" + i));
+        }
+        assertEquals(3, scheduler.getDrift().getCount());
+    }
+}
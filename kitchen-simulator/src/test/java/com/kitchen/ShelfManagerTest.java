@@ -6,10 +6,11 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class ShelfManagerTest {
     @Test
-    void removeOrder_usesLazyDeletion() {
+    void removeOrder_removesOrderFromExpiryOrder() {
         AtomicLong now = new AtomicLong(0);
         ShelfManager shelf = new ShelfManager(12, now::get);
 
@@ -41,5 +42,54 @@ public class ShelfManagerTest {
         assertNotNull(next);
         assertEquals("s", next.getOrder().getId());
     }
-}
 
+    @Test
+    void peekMostUrgent_returnsSoonestUnexpiredOrderOfThatTemperature() {
+        AtomicLong now = new AtomicLong(0);
+        ShelfManager shelf = new ShelfManager(12, now::get);
+
+        shelf.addOrder(new StoredOrder(new Order("hot-gone", "HotGone", Order.Temperature.HOT, 1, 1.0), StorageType.SHELF, 0));
+        shelf.addOrder(new StoredOrder(new Order("hot-soon", "HotSoon", Order.Temperature.HOT, 5, 1.0), StorageType.SHELF, 0));
+        shelf.addOrder(new StoredOrder(new Order("hot-late", "HotLate", Order.Temperature.HOT, 50, 1.0), StorageType.SHELF, 0));
+        shelf.addOrder(new StoredOrder(new Order("cold-sooner", "ColdSooner", Order.Temperature.COLD, 3, 1.0), StorageType.SHELF, 0));
+
+        // hot-gone has been expired for a while (1s shelf life at 2x shelf decay).
+        long nowMicros = 1_000_000L;
+        assertEquals("hot-soon", shelf.peekMostUrgent(Order.Temperature.HOT, nowMicros).getOrder().getId());
+        assertEquals("cold-sooner", shelf.peekMostUrgent(Order.Temperature.COLD, nowMicros).getOrder().getId());
+        assertNull(shelf.peekMostUrgent(Order.Temperature.FROZEN, nowMicros));
+
+        shelf.removeOrder("hot-soon");
+        assertEquals("hot-late", shelf.peekMostUrgent(Order.Temperature.HOT, nowMicros).getOrder().getId());
+        assertEquals(3, shelf.size());
+    }
+
+    @Test
+    void removal_releasesHandlesTheShelfInterned() {
+        AtomicLong now = new AtomicLong(0);
+        OrderIds orderIds = new OrderIds();
+        ShelfManager shelf = new ShelfManager(12, now::get, orderIds);
+
+        for (int i = 0; i < 1000; i++) {
+            StoredOrder gone = new StoredOrder(new Order("gone-" + i, "Gone", Order.Temperature.HOT, 1, 1.0), StorageType.SHELF, now.get());
+            StoredOrder polled = new StoredOrder(new Order("polled-" + i, "Polled", Order.Temperature.COLD, 100, 1.0), StorageType.SHELF, now.get());
+            StoredOrder removed = new StoredOrder(new Order("removed-" + i, "Removed", Order.Temperature.FROZEN, 100, 1.0), StorageType.SHELF, now.get());
+            shelf.addOrder(gone);
+            shelf.addOrder(polled);
+            shelf.addOrder(removed);
+            shelf.addOrder(removed);
+            shelf.removeOrder("removed-" + i);
+            // gone has expired by now, so polling drops it before returning polled.
+            now.addAndGet(1_000_000L);
+            assertEquals("polled-" + i, shelf.pollNextToExpire().getOrder().getId());
+            assertEquals(0, shelf.size());
+            assertEquals(0, orderIds.size());
+        }
+
+        StoredOrder shared = new StoredOrder(new Order("shared", "Shared", Order.Temperature.HOT, 100, 1.0), StorageType.SHELF, 0);
+        shared.handle = orderIds.intern("shared");
+        shelf.addOrder(shared);
+        shelf.removeOrder(shared);
+        assertEquals(1, orderIds.size());
+    }
+}
@@ -0,0 +1,53 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlotStorageTest {
+    private static StoredOrder stored(String id) {
+        return new StoredOrder(new Order(id, id, Order.Temperature.HOT, 300, 1.0), StorageType.HEATER, 0);
+    }
+
+    @Test
+    void addAndRemove_reuseFreedSlots() {
+        SlotStorage storage = new SlotStorage(3);
+        StoredOrder a = stored("a");
+        StoredOrder b = stored("b");
+        StoredOrder c = stored("c");
+
+        storage.add(a);
+        storage.add(b);
+        storage.add(c);
+        assertTrue(storage.isFull());
+        assertThrows(IllegalStateException.class, () -> storage.add(stored("d")));
+
+        int freed = b.slot;
+        assertTrue(storage.remove(b));
+        assertEquals(-1, b.slot);
+        assertFalse(storage.remove(b));
+        assertEquals(2, storage.size());
+
+        StoredOrder d = stored("d");
+        storage.add(d);
+        assertEquals(freed, d.slot);
+        assertSame(d, storage.get(freed));
+        assertSame(a, storage.get(a.slot));
+    }
+
+    @Test
+    void remove_ignoresOrdersFromAnotherStorage() {
+        SlotStorage heater = new SlotStorage(2);
+        SlotStorage cooler = new SlotStorage(2);
+        StoredOrder a = stored("a");
+        heater.add(a);
+
+        assertFalse(cooler.remove(a));
+        assertEquals(1, heater.size());
+        assertEquals(0, cooler.size());
+    }
+}
@@ -0,0 +1,113 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolutionPublisherTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static Kitchen kitchenWithLedger(int orders) {
+        Kitchen kitchen = new Kitchen(() -> 42L);
+        Order.Temperature[] temps = Order.Temperature.values();
+        for (int i = 0; i < orders; i++) {
+            String id = "o" + i;
+            kitchen.placeOrder(new Order(id, id, temps[i % temps.length], 300, 1.0));
+            kitchen.pickupOrder(id);
+        }
+        return kitchen;
+    }
+
+    // Requests one chunk at a time, like a slow HTTP connection would.
+    private static final class CollectingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private Flow.Subscription subscription;
+        private int chunks;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            chunks++;
+            byte[] b = new byte[item.remaining()];
+            item.get(b);
+            bytes.write(b, 0, b.length);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static void assertMatchesLedger(Kitchen kitchen, JsonNode payload) {
+        List<Action> ledger = kitchen.getLedgerSnapshot();
+        JsonNode actions = payload.get("actions");
+        assertEquals(ledger.size(), actions.size());
+        for (int i = 0; i < ledger.size(); i++) {
+            Action expected = ledger.get(i);
+            JsonNode actual = actions.get(i);
+            assertEquals(expected.getTimestamp(), actual.get("timestamp").asLong());
+            assertEquals(expected.getId(), actual.get("id").asText());
+            assertEquals(expected.getAction(), actual.get("action").asText());
+            assertEquals(expected.getTarget(), actual.get("target").asText());
+        }
+    }
+
+    @Test
+    void streamsLedgerAsJsonInChunks() throws Exception {
+        Kitchen kitchen = kitchenWithLedger(250);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+
+        new SolutionPublisher(kitchen, MAPPER.getFactory(), false, 64).subscribe(subscriber);
+
+        assertTrue(subscriber.completed);
+        assertEquals(8, subscriber.chunks);
+        assertMatchesLedger(kitchen, MAPPER.readTree(subscriber.bytes.toByteArray()));
+    }
+
+    @Test
+    void gzipBodyDecompressesToSamePayload() throws Exception {
+        Kitchen kitchen = kitchenWithLedger(100);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+
+        new SolutionPublisher(kitchen, MAPPER.getFactory(), true, 16).subscribe(subscriber);
+
+        assertTrue(subscriber.completed);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(subscriber.bytes.toByteArray()))) {
+            assertMatchesLedger(kitchen, MAPPER.readTree(in));
+        }
+    }
+
+    @Test
+    void emptyLedger_writesEmptyActions() throws Exception {
+        Kitchen kitchen = new Kitchen(() -> 0L);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+
+        new SolutionPublisher(kitchen, MAPPER.getFactory(), false, 64).subscribe(subscriber);
+
+        assertTrue(subscriber.completed);
+        assertEquals("{\"actions\":[]}", subscriber.bytes.toString("UTF-8"));
+    }
+}
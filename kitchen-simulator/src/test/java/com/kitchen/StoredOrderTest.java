@@ -8,36 +8,58 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class StoredOrderTest {
     @Test
-    void updateFreshness_idealStorage_decays1x() {
+    void remainingFreshness_idealStorage_decays1x() {
         Order order = new Order("o1", "Soup", Order.Temperature.HOT, 10, 1.0);
         StoredOrder stored = new StoredOrder(order, StorageType.HEATER, 0);
 
-        stored.updateFreshness(1_000_000L);
-
-        assertTrue(stored.isActive());
-        assertEquals(9_000_000.0, stored.getRemainingFreshnessMicros(), 0.0001);
+        assertFalse(stored.isExpired(1_000_000L));
+        assertEquals(9_000_000.0, stored.getRemainingFreshnessMicros(1_000_000L), 0.0001);
     }
 
     @Test
-    void updateFreshness_shelf_decays2x() {
+    void remainingFreshness_shelf_decays2x() {
         Order order = new Order("o1", "Soup", Order.Temperature.HOT, 10, 1.0);
         StoredOrder stored = new StoredOrder(order, StorageType.SHELF, 0);
 
-        stored.updateFreshness(1_000_000L);
-
-        assertTrue(stored.isActive());
-        assertEquals(8_000_000.0, stored.getRemainingFreshnessMicros(), 0.0001);
+        assertFalse(stored.isExpired(1_000_000L));
+        assertEquals(8_000_000.0, stored.getRemainingFreshnessMicros(1_000_000L), 0.0001);
     }
 
     @Test
-    void updateFreshness_marksInactive_whenExpired() {
+    void isExpired_whenFreshnessReachesZero() {
         Order order = new Order("o1", "Soup", Order.Temperature.HOT, 1, 10.0);
         StoredOrder stored = new StoredOrder(order, StorageType.HEATER, 0);
 
-        stored.updateFreshness(1_000_000L);
+        assertEquals(100_000L, stored.getExpiresAtMicros());
+        assertFalse(stored.isExpired(99_999L));
+        assertTrue(stored.isExpired(1_000_000L));
+        assertEquals(0.0, stored.getRemainingFreshnessMicros(1_000_000L), 0.0001);
+        // Reads do not change state.
+        assertTrue(stored.isActive());
+        assertEquals(900_000.0, stored.getRemainingFreshnessMicros(10_000L), 0.0001);
+    }
+
+    @Test
+    void moveTo_startsNewSegmentFromRemainingFreshness() {
+        Order order = new Order("o1", "Soup", Order.Temperature.HOT, 10, 1.0);
+        StoredOrder stored = new StoredOrder(order, StorageType.SHELF, 0);
+
+        // 2s on the shelf at 2x leaves 6s; the heater then decays at 1x.
+        stored.moveTo(StorageType.HEATER, 2_000_000L);
+
+        assertEquals(StorageType.HEATER, stored.getStorageType());
+        assertEquals(2_000_000L, stored.getSegmentStartMicros());
+        assertEquals(8_000_000L, stored.getExpiresAtMicros());
+        assertEquals(5_000_000.0, stored.getRemainingFreshnessMicros(3_000_000L), 0.0001);
+    }
+
+    @Test
+    void zeroShelfLife_expiresRightAfterPlacement() {
+        Order order = new Order("o1", "Soup", Order.Temperature.HOT, 0, 1.0);
+        StoredOrder stored = new StoredOrder(order, StorageType.HEATER, 5);
 
-        assertFalse(stored.isActive());
-        assertEquals(0.0, stored.getRemainingFreshnessMicros(), 0.0001);
+        assertFalse(stored.isExpired(5));
+        assertTrue(stored.isExpired(6));
     }
 }
 
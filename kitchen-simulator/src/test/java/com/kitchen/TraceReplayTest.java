@@ -0,0 +1,119 @@
+package com.kitchen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TraceReplayTest {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @TempDir
+    Path dir;
+
+    // Records a seeded run through the recorder. The clock keeps moving while the kitchen works, as a
+    // wall clock would, so the recorded timestamps only line up if the recorder pins them.
+    private static KitchenService record(Path trace, long seed) throws IOException {
+        AtomicLong clock = new AtomicLong();
+        TraceRecorder recorder = new TraceRecorder(trace, JSON, () -> clock.addAndGet(3), 1, 2, "slack", 3_000_000);
+        KitchenService kitchen = recorder.record(new Kitchen(recorder::nowMicros, Kitchen.LockingMode.GLOBAL,
+                new ColumnarLedger(), 1, 2, DiscardPolicy.forName("slack", 3_000_000)));
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Order.Temperature[] temperatures = Order.Temperature.values();
+        List<String> placed = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            clock.addAndGet(random.nextLong(0, 300_000));
+            int op = random.nextInt(10);
+            if (op < 6) {
+                String id = "o" + placed.size();
+                placed.add(id);
+                kitchen.placeOrder(new Order(id, "Order " + id, temperatures[random.nextInt(temperatures.length)],
+                        random.nextInt(1, 6), 0.5 + random.nextDouble()));
+            } else if (op < 9 && !placed.isEmpty()) {
+                kitchen.pickupOrder(placed.get(random.nextInt(placed.size())));
+            } else {
+                kitchen.reapExpired();
+            }
+        }
+        recorder.finish(kitchen);
+        assertEquals(2_000, recorder.getEventCount());
+        return kitchen;
+    }
+
+    @Test
+    void replay_reproducesTheRecordedLedger() throws IOException {
+        Path trace = dir.resolve("run.trace");
+        KitchenService recorded = record(trace, 11);
+
+        TraceReplay replay = TraceReplay.read(trace, JSON);
+        assertEquals(2_000, replay.getEventCount());
+        assertEquals(recorded.getLedgerSnapshot().toString(), replay.getRecordedLedger().toString());
+
+        Kitchen first = replay.run(Kitchen.LockingMode.GLOBAL, new ColumnarLedger());
+        TraceReplay.LedgerDiff diff = replay.diff(first);
+        assertTrue(diff.matches(), diff.toString());
+        assertTrue(first.getMetrics().getMoved() > 0 && first.getMetrics().getDiscarded() > 0);
+
+        Kitchen second = replay.run(Kitchen.LockingMode.STRIPED, new ColumnarLedger());
+        assertEquals(first.getLedgerSnapshot().toString(), second.getLedgerSnapshot().toString());
+    }
+
+    @Test
+    void diff_pointsAtTheFirstDivergingEntry() throws IOException {
+        Path trace = dir.resolve("run.trace");
+        record(trace, 12);
+        List<Action> recorded = TraceReplay.read(trace, JSON).getRecordedLedger();
+
+        // Drop the first pickup that took an order out of the kitchen.
+        List<String> lines = new ArrayList<>(Files.readAllLines(trace));
+        int dropped = -1;
+        int droppedEntry = -1;
+        for (int i = 0; i < lines.size() && dropped < 0; i++) {
+            String line = lines.get(i);
+            if (!line.contains("\"event\":\"pickup\"")) {
+                continue;
+            }
+            long t = Long.parseLong(line.replaceAll(".*\"t\":(\\d+).*", "$1"));
+            String id = line.replaceAll(".*\"id\":\"([^\"]+)\".*", "$1");
+            for (int entry = 0; entry < recorded.size(); entry++) {
+                Action action = recorded.get(entry);
+                if (action.getTimestamp() == t && action.getId().equals(id) && !action.getAction().equals("place")) {
+                    dropped = i;
+                    droppedEntry = entry;
+                    break;
+                }
+            }
+        }
+        assertTrue(dropped > 0);
+        lines.remove(dropped);
+        Path edited = dir.resolve("edited.trace");
+        Files.write(edited, lines);
+
+        TraceReplay replay = TraceReplay.read(edited, JSON);
+        TraceReplay.LedgerDiff diff = replay.diff(replay.run(Kitchen.LockingMode.GLOBAL, new ColumnarLedger()));
+
+        assertFalse(diff.matches());
+        assertEquals(droppedEntry, diff.getFirstDivergence());
+        assertEquals(recorded.get(droppedEntry).toString(), diff.getExpected().toString());
+    }
+
+    @Test
+    void read_rejectsTracesWithoutAConfigLine() throws IOException {
+        Path trace = dir.resolve("bad.trace");
+        Files.writeString(trace, "{\"event\":\"pickup\",\"t\":1,\"id\":\"a\"}\n");
+        assertThrows(IllegalArgumentException.class, () -> TraceReplay.read(trace, JSON));
+    }
+}
@@ -0,0 +1,79 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorkloadGeneratorTest {
+    @Test
+    void sameSeed_givesTheSameOrdersAndArrivals() {
+        WorkloadGenerator a = new WorkloadGenerator(7, 500);
+        WorkloadGenerator b = new WorkloadGenerator(7, 500);
+        while (a.hasNext()) {
+            assertEquals(a.next().toString(), b.next().toString());
+            assertEquals(a.getArrivalMicros(), b.getArrivalMicros());
+        }
+        assertFalse(b.hasNext());
+    }
+
+    @Test
+    void orders_followTheMixAndRanges() {
+        WorkloadGenerator generator = new WorkloadGenerator(3, 40_000, WorkloadGenerator.Arrivals.POISSON, 100, 1,
+                WorkloadGenerator.parseTemperatureWeights("hot=3,cold=1"), 10, 12, 0.5, 0.75);
+        int[] counts = new int[Order.Temperature.values().length];
+        while (generator.hasNext()) {
+            Order order = generator.next();
+            counts[order.getTemperature().ordinal()]++;
+            assertTrue(order.getShelfLifeSeconds() >= 10 && order.getShelfLifeSeconds() <= 12);
+            assertTrue(order.getDecayRate() >= 0.5 && order.getDecayRate() < 0.75);
+        }
+        assertEquals(0, counts[Order.Temperature.ROOM.ordinal()] + counts[Order.Temperature.FROZEN.ordinal()]);
+        assertEquals(3.0, counts[Order.Temperature.HOT.ordinal()] / (double) counts[Order.Temperature.COLD.ordinal()], 0.15);
+        // 40k arrivals at 100/s take about 400 s.
+        assertEquals(400.0, generator.getArrivalMicros() / 1e6, 12.0);
+    }
+
+    @Test
+    void arrivals_areFixedOrComeInBursts() {
+        WorkloadGenerator fixed = new WorkloadGenerator(1, 5, WorkloadGenerator.Arrivals.FIXED, 4, 1,
+                new double[]{1, 1, 1, 1}, 5, 30, 0.25, 1.0);
+        List<Long> times = new ArrayList<>();
+        while (fixed.hasNext()) {
+            fixed.next();
+            times.add(fixed.getArrivalMicros());
+        }
+        assertEquals(List.of(0L, 250_000L, 500_000L, 750_000L, 1_000_000L), times);
+
+        WorkloadGenerator bursty = new WorkloadGenerator(1, 30_000, WorkloadGenerator.Arrivals.BURSTY, 50, 10,
+                new double[]{1, 1, 1, 1}, 5, 30, 0.25, 1.0);
+        long previous = -1;
+        for (int i = 0; bursty.hasNext(); i++) {
+            bursty.next();
+            if (i % 10 == 0) {
+                assertTrue(i == 0 || bursty.getArrivalMicros() > previous);
+            } else {
+                assertEquals(previous, bursty.getArrivalMicros());
+            }
+            previous = bursty.getArrivalMicros();
+        }
+        // Same long-run rate as Poisson: 30k orders at 50/s is about 600 s.
+        assertEquals(600.0, previous / 1e6, 40.0);
+    }
+
+    @Test
+    void invalidSettings_areRejected() {
+        double[] uniform = {1, 1, 1, 1};
+        assertThrows(IllegalArgumentException.class, () -> new WorkloadGenerator(1, 10, WorkloadGenerator.Arrivals.POISSON, 0, 1, uniform, 5, 30, 0.25, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new WorkloadGenerator(1, 10, WorkloadGenerator.Arrivals.BURSTY, 1, 0, uniform, 5, 30, 0.25, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new WorkloadGenerator(1, 10, WorkloadGenerator.Arrivals.POISSON, 1, 1, new double[4], 5, 30, 0.25, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new WorkloadGenerator(1, 10, WorkloadGenerator.Arrivals.POISSON, 1, 1, uniform, 30, 5, 0.25, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadGenerator.Arrivals.forName("steady"));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadGenerator.parseTemperatureWeights("hot"));
+    }
+}
@@ -0,0 +1,224 @@
+package com.kitchen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    // Runs the same seeded operations against any number of kitchens, each with its own clock.
+    private static final class Workload {
+        private final SplittableRandom random;
+        private final List<String> placed = new ArrayList<>();
+        private long nowMicros;
+
+        private Workload(long seed) {
+            this.random = new SplittableRandom(seed);
+        }
+
+        private void run(int operations, List<AtomicLong> clocks, List<Kitchen> kitchens) {
+            Order.Temperature[] temperatures = Order.Temperature.values();
+            for (int i = 0; i < operations; i++) {
+                nowMicros += random.nextLong(0, 400_000);
+                clocks.forEach(clock -> clock.set(nowMicros));
+                int op = random.nextInt(10);
+                if (op < 6) {
+                    String id = "o" + placed.size();
+                    placed.add(id);
+                    Order order = new Order(id, "Order " + id, temperatures[random.nextInt(temperatures.length)],
+                            random.nextInt(1, 6), 0.5 + random.nextDouble());
+                    kitchens.forEach(kitchen -> kitchen.placeOrder(order));
+                } else if (op < 9 && !placed.isEmpty()) {
+                    String id = placed.get(random.nextInt(placed.size()));
+                    kitchens.forEach(kitchen -> kitchen.pickupOrder(id));
+                } else {
+                    kitchens.forEach(Kitchen::reapExpired);
+                }
+            }
+        }
+    }
+
+    private static Kitchen kitchen(AtomicLong clock, Ledger ledger, WriteAheadLog journal) {
+        // Tiny capacities, so moves, discards and shelf drops all happen.
+        return new Kitchen(clock::get, Kitchen.LockingMode.STRIPED, ledger, 1, 2, DiscardPolicy.SOONEST_EXPIRY,
+                Kitchen.DEFAULT_LATENCY_SAMPLE_RATE, journal);
+    }
+
+    @Test
+    void recover_rebuildsTheKitchenFromSnapshotAndLogTail() throws IOException {
+        AtomicLong referenceClock = new AtomicLong();
+        AtomicLong clock = new AtomicLong();
+        Kitchen reference = kitchen(referenceClock, new ColumnarLedger(), null);
+        Path ledgerDir = dir.resolve("ledger");
+        Path walDir = dir.resolve("wal");
+        Kitchen crashed = kitchen(clock, new MappedLedger(ledgerDir, 64), new WriteAheadLog(walDir, 4096));
+
+        Workload workload = new Workload(7);
+        workload.run(400, List.of(referenceClock, clock), List.of(reference, crashed));
+        crashed.snapshot();
+        workload.run(400, List.of(referenceClock, clock), List.of(reference, crashed));
+        crashed.snapshot();
+        workload.run(300, List.of(referenceClock, clock), List.of(reference, crashed));
+        assertTrue(reference.getLedgerSize() > 1000);
+        assertEquals(1, files(walDir, ".snap").size());
+
+        // The process dies without closing anything. The mapped ledger got one more entry whose
+        // operation never reached the log.
+        MappedLedger ledger = new MappedLedger(ledgerDir, 64);
+        ledger.append(clock.get(), "lost", ActionType.PICKUP, StorageType.HEATER);
+        Kitchen recovered = kitchen(clock, ledger, new WriteAheadLog(walDir, 4096));
+
+        assertEquals(reference.getLedgerSnapshot().toString(), recovered.getLedgerSnapshot().toString());
+        assertOccupancy(reference, recovered);
+
+        // From here on the recovered kitchen makes the same decisions the original would have.
+        workload.run(500, List.of(referenceClock, clock), List.of(reference, recovered));
+        assertEquals(reference.getLedgerSnapshot().toString(), recovered.getLedgerSnapshot().toString());
+        assertOccupancy(reference, recovered);
+    }
+
+    @Test
+    void snapshot_leavesOutOrdersThatHaveLeft() throws IOException {
+        AtomicLong referenceClock = new AtomicLong();
+        AtomicLong clock = new AtomicLong();
+        Kitchen reference = kitchen(referenceClock, new ColumnarLedger(), null);
+        Path ledgerDir = dir.resolve("ledger");
+        Path walDir = dir.resolve("wal");
+        MappedLedger ledger = new MappedLedger(ledgerDir, 1024);
+        Kitchen crashed = kitchen(clock, ledger, new WriteAheadLog(walDir));
+
+        // Thousands of orders pass through the kitchen and all of them are gone by the snapshot,
+        // which is then no bigger than an empty one.
+        Workload workload = new Workload(11);
+        workload.run(5000, List.of(referenceClock, clock), List.of(reference, crashed));
+        for (String id : workload.placed) {
+            reference.pickupOrder(id);
+            crashed.pickupOrder(id);
+        }
+        crashed.snapshot();
+        assertEquals(20, Files.size(files(walDir, ".snap").get(0)));
+        crashed.closeJournal();
+        ledger.close();
+
+        Kitchen recovered = kitchen(clock, new MappedLedger(ledgerDir, 1024), new WriteAheadLog(walDir));
+        assertOccupancy(reference, recovered);
+        workload.run(500, List.of(referenceClock, clock), List.of(reference, recovered));
+        assertEquals(reference.getLedgerSnapshot().toString(), recovered.getLedgerSnapshot().toString());
+        assertOccupancy(reference, recovered);
+    }
+
+    @Test
+    void recover_truncatesATornRecordAtTheEndOfTheLog() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        Kitchen crashed = kitchen(clock, new ColumnarLedger(), new WriteAheadLog(dir));
+        new Workload(3).run(200, List.of(clock), List.of(crashed));
+        long size = crashed.getLedgerSize();
+
+        Path log = files(dir, ".log").get(0);
+        long validBytes = Files.size(log);
+        try (FileChannel file = FileChannel.open(log, StandardOpenOption.APPEND)) {
+            // A record header promising more bytes than made it to disk.
+            file.write(ByteBuffer.allocate(12).putInt(0, 40).putInt(4, 0x12345678));
+        }
+
+        // The in-memory ledger is gone with the process; replaying the whole log rebuilds it.
+        Kitchen recovered = kitchen(clock, new ColumnarLedger(), new WriteAheadLog(dir));
+        assertEquals(size, recovered.getLedgerSize());
+        assertEquals(crashed.getLedgerSnapshot().toString(), recovered.getLedgerSnapshot().toString());
+        assertEquals(validBytes, Files.size(log));
+    }
+
+    @Test
+    void place_refusesAnOrderTooLargeToLogAndRecoveryKeepsEverythingAfterIt() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        Kitchen crashed = kitchen(clock, new ColumnarLedger(), new WriteAheadLog(dir));
+        Workload workload = new Workload(13);
+        workload.run(100, List.of(clock), List.of(crashed));
+        long size = crashed.getLedgerSize();
+
+        Order huge = new Order("huge", "x".repeat(1 << 20), Order.Temperature.HOT, 300, 1.0);
+        assertThrows(IllegalArgumentException.class, () -> crashed.placeOrder(huge));
+        assertThrows(IllegalArgumentException.class, () -> crashed.placeOrders(List.of(
+                new Order("fits", "Fits", Order.Temperature.COLD, 300, 1.0), huge)));
+        assertEquals(size, crashed.getLedgerSize());
+        workload.run(100, List.of(clock), List.of(crashed));
+
+        Kitchen recovered = kitchen(clock, new ColumnarLedger(), new WriteAheadLog(dir));
+        assertEquals(crashed.getLedgerSnapshot().toString(), recovered.getLedgerSnapshot().toString());
+        assertOccupancy(crashed, recovered);
+    }
+
+    @Test
+    void recover_refusesALedgerThatIsMissingSnapshottedEntries() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        Kitchen crashed = kitchen(clock, new ColumnarLedger(), new WriteAheadLog(dir));
+        new Workload(5).run(100, List.of(clock), List.of(crashed));
+        crashed.snapshot();
+
+        assertThrows(IllegalStateException.class, () -> kitchen(clock, new ColumnarLedger(), new WriteAheadLog(dir)));
+    }
+
+    @Test
+    void sync_sharesForcesBetweenConcurrentOperations() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        WriteAheadLog journal = new WriteAheadLog(dir);
+        Kitchen kitchen = new Kitchen(clock::get, Kitchen.LockingMode.STRIPED, new ColumnarLedger(), 100, 100,
+                DiscardPolicy.SOONEST_EXPIRY, Kitchen.DEFAULT_LATENCY_SAMPLE_RATE, journal);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    String id = "t" + thread + "-" + i;
+                    kitchen.placeOrder(new Order(id, id, Order.Temperature.values()[thread], 300, 1.0));
+                    kitchen.pickupOrder(id);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1600, journal.getAppendedRecords());
+        assertTrue(journal.getSyncCount() <= journal.getAppendedRecords());
+        journal.close();
+        Kitchen recovered = new Kitchen(clock::get, Kitchen.LockingMode.STRIPED, new ColumnarLedger(), 100, 100,
+                DiscardPolicy.SOONEST_EXPIRY, Kitchen.DEFAULT_LATENCY_SAMPLE_RATE, new WriteAheadLog(dir));
+        assertEquals(kitchen.getLedgerSnapshot().toString(), recovered.getLedgerSnapshot().toString());
+    }
+
+    private static void assertOccupancy(Kitchen expected, Kitchen actual) {
+        KitchenMetrics e = expected.getMetrics();
+        KitchenMetrics a = actual.getMetrics();
+        assertEquals(e.getHeaterOccupancy(), a.getHeaterOccupancy());
+        assertEquals(e.getCoolerOccupancy(), a.getCoolerOccupancy());
+        assertEquals(e.getFreezerOccupancy(), a.getFreezerOccupancy());
+        assertEquals(e.getShelfOccupancy(), a.getShelfOccupancy());
+    }
+
+    private static List<Path> files(Path dir, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+}